@@ -2,7 +2,7 @@ package no.schedule.javazone.v3.io.model;
 
 import com.google.gson.annotations.SerializedName;
 
-import java.util.Random;
+import no.schedule.javazone.v3.util.HashUtils;
 
 public class Session {
   @SerializedName("sessionId")
@@ -63,7 +63,53 @@ public class Session {
     return false;
   }
 
+  /**
+   * Returns a stable hash over every field that ends up in the content provider, so that an
+   * unchanged session produces the same value on every sync and can be skipped on import.
+   */
   public String getImportHashCode() {
-    return (new Random()).nextLong()+"";
+    StringBuilder sb = new StringBuilder();
+    appendField(sb, "id", id);
+    appendField(sb, "title", title);
+    appendField(sb, "description", description);
+    appendField(sb, "intendedAudience", intendedAudience);
+    appendField(sb, "level", level);
+    appendField(sb, "length", length);
+    appendField(sb, "language", language);
+    appendField(sb, "published", published);
+    appendField(sb, "video", video);
+    appendField(sb, "room", room);
+    appendField(sb, "conferenceId", conferenceId);
+    appendField(sb, "startTime", startTime);
+    appendField(sb, "endTime", endTime);
+    appendField(sb, "startTimeZulu", startTimeZulu);
+    appendField(sb, "endTimeZulu", endTimeZulu);
+    appendField(sb, "slug", slug);
+    if (tags != null) {
+      for (String tag : tags) {
+        appendField(sb, "tag", tag);
+      }
+    }
+    if (speakers != null) {
+      // Speaker ids are assigned from their content during import, so hash the content itself.
+      for (Speaker speaker : speakers) {
+        appendField(sb, "speakerName", speaker.name);
+        appendField(sb, "speakerBio", speaker.bio);
+        appendField(sb, "speakerTwitterUrl", speaker.twitterUrl);
+        appendField(sb, "speakerPictureId", speaker.pictureId);
+        appendField(sb, "speakerPictureUrl", speaker.pictureUrl);
+      }
+    }
+    return HashUtils.computeStrongHash(sb.toString());
+  }
+
+  // Length-prefixes each value so that adjacent fields can't be shifted into each other.
+  private static void appendField(StringBuilder sb, String name, String value) {
+    sb.append(name).append(':');
+    if (value == null) {
+      sb.append("-1:");
+    } else {
+      sb.append(value.length()).append(':').append(value);
+    }
   }
 }
@@ -12,11 +12,19 @@ import retrofit2.http.POST;
 import retrofit2.http.Path;
 
 public interface FeedbackApiService {
+  /**
+   * Header carrying a key the client generates once per submission and sends with every retry
+   * of it, so the server can recognise a retry. Only a hint: the feedback API doesn't echo it,
+   * and the client doesn't wait for it to.
+   */
+  String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+
   @Headers( "Content-Type: application/json" )
   @POST("/events/{eventId}/sessions/{sessionId}/feedbacks")
   Call<Object> postSessionFeedback(@Path("eventId") String eventId,
                                    @Path("sessionId") String sessionId,
                                    @Header("Voter-ID") String voterId,
+                                   @Header(HEADER_IDEMPOTENCY_KEY) String idempotencyKey,
                                    @Body Feedback jzFeedbackBody);
 
   @Headers("Content-Type: application/json")
@@ -3,11 +3,35 @@ package no.schedule.javazone.v3.sync;
 import java.util.List;
 
 import no.schedule.javazone.v3.io.model.Session;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.Path;
+import retrofit2.http.Streaming;
 
 public interface SessionApiService {
   @GET("public/allSessions/{sessionSlug}")
   Call<SessionResult> getAllSessions(@Path("sessionSlug") String sessionSlug);
+
+  /**
+   * Same resource as {@link #getAllSessions(String)}, but returns the raw body so that it can be
+   * parsed incrementally instead of being converted to a {@link SessionResult} up front.
+   */
+  @GET("public/allSessions/{sessionSlug}")
+  Call<ResponseBody> getAllSessionsBody(@Path("sessionSlug") String sessionSlug);
+
+  /**
+   * Conditional version of {@link #getAllSessionsBody(String)}. The server answers 304 Not
+   * Modified with an empty body if the data still matches the given validators. Either may be
+   * null, in which case its header isn't sent. The body is streamed rather than buffered, so
+   * it has to be read off the main thread.
+   *
+   * @param etag         the {@code ETag} of the data the app already has
+   * @param lastModified the {@code Last-Modified} date of the data the app already has
+   */
+  @Streaming
+  @GET("public/allSessions/{sessionSlug}")
+  Call<ResponseBody> getAllSessionsBody(@Path("sessionSlug") String sessionSlug,
+      @Header("If-None-Match") String etag, @Header("If-Modified-Since") String lastModified);
 }
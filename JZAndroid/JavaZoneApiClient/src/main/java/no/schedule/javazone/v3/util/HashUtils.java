@@ -16,10 +16,38 @@
 
 package no.schedule.javazone.v3.util;
 
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
 
 public class HashUtils {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     public static String computeWeakHash(String string) {
         return String.format(Locale.US, "%08x%08x", string.hashCode(), string.length());
     }
+
+    /**
+     * Computes a SHA-1 digest of the given string, encoded as lowercase hex. Unlike
+     * {@link #computeWeakHash(String)} this is suitable for detecting changes in large bodies of
+     * imported content, where a collision would cause an update to be silently skipped.
+     */
+    public static String computeStrongHash(String string) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is mandatory on every Java platform, so this can't happen in practice.
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+        byte[] bytes = digest.digest(string.getBytes(UTF_8));
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(hex);
+    }
 }
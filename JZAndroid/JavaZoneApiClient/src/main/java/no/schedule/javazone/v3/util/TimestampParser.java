@@ -0,0 +1,96 @@
+package no.schedule.javazone.v3.util;
+
+import java.util.TimeZone;
+
+/**
+ * Parses the timestamps returned by the sessions API, {@code yyyy-MM-dd'T'HH:mm} optionally
+ * followed by seconds, fractions and an ISO-8601 offset, into milliseconds since the epoch.
+ * <p>
+ * Only the wall-clock date, hour and minute are read; anything after them is ignored and the
+ * result is interpreted in the parser's time zone. This is what the app has always done with
+ * these values (the API writes conference local time), so schedule times don't move when the
+ * offset in the feed is missing or wrong.
+ * <p>
+ * Unlike {@link java.text.SimpleDateFormat} an instance holds no mutable state, so it can be
+ * shared between the import and UI threads, and parsing doesn't allocate.
+ */
+public final class TimestampParser {
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    // length of "yyyy-MM-ddTHH:mm"
+    private static final int MIN_LENGTH = 16;
+
+    private final TimeZone mTimeZone;
+
+    public TimestampParser(TimeZone timeZone) {
+        // Keep a private copy, TimeZone itself is mutable
+        mTimeZone = (TimeZone) timeZone.clone();
+    }
+
+    /**
+     * @return the id of the time zone timestamps are interpreted in
+     */
+    public String getTimeZoneId() {
+        return mTimeZone.getID();
+    }
+
+    /**
+     * @return the parsed time in milliseconds since the epoch, or {@code defaultValue} if
+     *         {@code timestamp} is null or doesn't start with {@code yyyy-MM-dd'T'HH:mm}
+     */
+    public long parse(String timestamp, long defaultValue) {
+        if (timestamp == null || timestamp.length() < MIN_LENGTH
+                || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-'
+                || timestamp.charAt(10) != 'T' || timestamp.charAt(13) != ':') {
+            return defaultValue;
+        }
+        final int year = parseDigits(timestamp, 0, 4);
+        final int month = parseDigits(timestamp, 5, 7);
+        final int day = parseDigits(timestamp, 8, 10);
+        final int hour = parseDigits(timestamp, 11, 13);
+        final int minute = parseDigits(timestamp, 14, 16);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return defaultValue;
+        }
+
+        final long wallTime = daysSinceEpoch(year, month, day) * DAY + hour * HOUR
+                + minute * MINUTE;
+        // Resolve the offset the way java.util.GregorianCalendar does: estimate it from the raw
+        // offset, then look it up again at the resulting instant. The second lookup only matters
+        // for wall times skipped by a DST transition, which then use the offset from before it.
+        final int estimate = mTimeZone.getOffset(wallTime - mTimeZone.getRawOffset());
+        return wallTime - mTimeZone.getOffset(wallTime - estimate);
+    }
+
+    /**
+     * @return the non-negative decimal value of {@code s[start, end)}, or -1 if it contains
+     *         anything but ASCII digits
+     */
+    private static int parseDigits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Days from 1970-01-01 to the given date in the proleptic Gregorian calendar.
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        // Count years from March so the leap day is the last day of the year
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,112 @@
+package no.schedule.javazone.v3.util;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import no.schedule.javazone.v3.io.model.Session;
+import no.schedule.javazone.v3.sync.SessionResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link TimestampParser} against the {@link SimpleDateFormat} parsing it replaced.
+ * <p>
+ * The timestamps come from the {@code all_sessions.json} sessions fixture, as the bundled
+ * {@code bootstrap_data.json} has none. The fixture includes sessions that start in the spring
+ * DST gap and end in the autumn DST overlap of Europe/Oslo.
+ */
+public class TimestampParserTest {
+    private static final String FIXTURE = "/all_sessions.json";
+
+    private static final String[] TIME_ZONES = {
+            "Europe/Oslo",
+            "UTC",
+            "America/Los_Angeles",
+            "Asia/Kolkata",
+            "Australia/Lord_Howe",
+            "Pacific/Chatham",
+    };
+
+    @Test
+    public void fixtureTimestamps_matchSimpleDateFormat() throws Exception {
+        List<String> timestamps = fixtureTimestamps();
+        assertTrue(timestamps.size() > 80);
+
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            TimestampParser parser = new TimestampParser(timeZone);
+            SimpleDateFormat format = simpleDateFormat(timeZone);
+            for (String timestamp : timestamps) {
+                assertEquals(id + " " + timestamp, format.parse(timestamp).getTime(),
+                        parser.parse(timestamp, Long.MIN_VALUE));
+            }
+        }
+    }
+
+    @Test
+    public void trailingSecondsAndOffset_areIgnored() throws Exception {
+        TimeZone timeZone = TimeZone.getTimeZone("Europe/Oslo");
+        TimestampParser parser = new TimestampParser(timeZone);
+
+        assertEquals(simpleDateFormat(timeZone).parse("2018-09-12T09:40").getTime(),
+                parser.parse("2018-09-12T09:40:59.123-07:00", Long.MIN_VALUE));
+    }
+
+    @Test
+    public void malformedTimestamps_returnDefault() {
+        TimestampParser parser = new TimestampParser(TimeZone.getTimeZone("UTC"));
+
+        assertEquals(-1L, parser.parse(null, -1L));
+        assertEquals(-1L, parser.parse("2018-09-12", -1L));
+        assertEquals(-1L, parser.parse("2018-09-12 09:40", -1L));
+        assertEquals(-1L, parser.parse("2018-13-12T09:40", -1L));
+        assertEquals(-1L, parser.parse("2018-09-12T24:40", -1L));
+        assertEquals(-1L, parser.parse("2018-09-1xT09:40", -1L));
+    }
+
+    @Test
+    public void timeZone_isCopied() {
+        TimeZone timeZone = TimeZone.getTimeZone("Europe/Oslo");
+        TimestampParser parser = new TimestampParser(timeZone);
+        long before = parser.parse("2018-09-12T09:40", Long.MIN_VALUE);
+
+        timeZone.setRawOffset(0);
+        timeZone.setID("UTC");
+
+        assertEquals("Europe/Oslo", parser.getTimeZoneId());
+        assertEquals(before, parser.parse("2018-09-12T09:40", Long.MIN_VALUE));
+    }
+
+    private static SimpleDateFormat simpleDateFormat(TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm", Locale.US);
+        format.setTimeZone(timeZone);
+        return format;
+    }
+
+    private static List<String> fixtureTimestamps() throws Exception {
+        Reader reader = new InputStreamReader(
+                TimestampParserTest.class.getResourceAsStream(FIXTURE), "UTF-8");
+        SessionResult result;
+        try {
+            result = new Gson().fromJson(reader, SessionResult.class);
+        } finally {
+            reader.close();
+        }
+        List<String> timestamps = new ArrayList<>();
+        for (Session session : result.sessions) {
+            timestamps.add(session.startTime);
+            timestamps.add(session.endTime);
+        }
+        return timestamps;
+    }
+}
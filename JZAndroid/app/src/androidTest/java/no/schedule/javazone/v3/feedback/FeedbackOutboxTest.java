@@ -0,0 +1,199 @@
+package no.schedule.javazone.v3.feedback;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.io.model.Feedback;
+import no.schedule.javazone.v3.sync.FeedbackApiService;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link FeedbackOutbox} against a stand-in feedback server that stores a submission once
+ * per idempotency key, and that can lose or delay its responses. Like the feedback API, it
+ * doesn't echo the key back.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FeedbackOutboxTest {
+    private static final String PREFS_NAME = "test.feedback_outbox";
+    private static final String EVENT_ID = "javazone_2018";
+    private static final String SESSION_ID = "session-1";
+    private static final String VOTER_ID = "voter-1";
+    private static final long BACKOFF_MS = 20;
+    private static final long TIMEOUT_MS = 10000;
+
+    private SharedPreferences mPrefs;
+    private StandInServer mServer;
+    private MockWebServer mWebServer;
+    private FeedbackOutbox mOutbox;
+
+    @Before
+    public void setUp() throws Exception {
+        mPrefs = InstrumentationRegistry.getTargetContext().getSharedPreferences(PREFS_NAME,
+                Context.MODE_PRIVATE);
+        mPrefs.edit().clear().commit();
+
+        mServer = new StandInServer();
+        mWebServer = new MockWebServer();
+        mWebServer.setDispatcher(mServer);
+        mWebServer.start();
+
+        FeedbackApiService service = new Retrofit.Builder()
+                .baseUrl(mWebServer.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(FeedbackApiService.class);
+        mOutbox = new FeedbackOutbox(mPrefs, service, BACKOFF_MS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.release.countDown();
+        mWebServer.shutdown();
+        mPrefs.edit().clear().commit();
+    }
+
+    @Test
+    public void enqueue_storesBeforeReturning() throws Exception {
+        mServer.holdFirstRequest();
+
+        assertTrue(mOutbox.enqueue(EVENT_ID, SESSION_ID, VOTER_ID, feedback("stored")));
+
+        assertEquals(1, mPrefs.getAll().size());
+        mServer.release.countDown();
+        awaitEmptyOutbox();
+        assertEquals(1, mServer.stored.size());
+    }
+
+    @Test
+    public void lostResponses_storeFeedbackOnce() throws Exception {
+        mServer.lostResponses = 2;
+
+        mOutbox.enqueue(EVENT_ID, SESSION_ID, VOTER_ID, feedback("lost"));
+        awaitEmptyOutbox();
+
+        // okhttp may retry a dropped connection itself, with the same headers
+        assertTrue(mServer.keys.size() >= 3);
+        assertEquals(Collections.singleton(mServer.keys.get(0)), new HashSet<>(mServer.keys));
+        assertEquals(1, mServer.stored.size());
+    }
+
+    @Test
+    public void successWithoutKey_removesEntry() throws Exception {
+        mOutbox.enqueue(EVENT_ID, SESSION_ID, VOTER_ID, feedback("delivered"));
+        awaitEmptyOutbox();
+        // Give a wrongly scheduled retry the time to reach the server
+        SystemClock.sleep(BACKOFF_MS * 10);
+
+        assertEquals(1, mServer.keys.size());
+        assertEquals(1, mServer.stored.size());
+        assertTrue(mPrefs.getAll().isEmpty());
+    }
+
+    @Test
+    public void replacementWhilePosting_isDeliveredToo() throws Exception {
+        mServer.holdFirstRequest();
+
+        mOutbox.enqueue(EVENT_ID, SESSION_ID, VOTER_ID, feedback("first"));
+        assertTrue(mServer.received.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        mOutbox.enqueue(EVENT_ID, SESSION_ID, VOTER_ID, feedback("second"));
+        mServer.release.countDown();
+        awaitEmptyOutbox();
+
+        assertEquals(2, mServer.stored.size());
+        assertNotEquals(mServer.keys.get(0), mServer.keys.get(1));
+        List<String> bodies = new ArrayList<>(mServer.stored.values());
+        assertTrue(bodies.get(1), bodies.get(1).contains("second"));
+    }
+
+    @Test
+    public void permanentRejection_isDropped() throws Exception {
+        mServer.rejectWith = 400;
+
+        mOutbox.enqueue(EVENT_ID, SESSION_ID, VOTER_ID, feedback("rejected"));
+        awaitEmptyOutbox();
+
+        assertEquals(1, mServer.keys.size());
+        assertEquals(0, mServer.stored.size());
+    }
+
+    private void awaitEmptyOutbox() {
+        final long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while (!mPrefs.getAll().isEmpty()) {
+            assertTrue("Outbox still holds " + mPrefs.getAll().keySet(),
+                    SystemClock.uptimeMillis() < deadline);
+            SystemClock.sleep(10);
+        }
+    }
+
+    private static Feedback feedback(String comment) {
+        return new Feedback(5, 4, 4, 5, comment);
+    }
+
+    /**
+     * Stores each submission once per idempotency key, the way the feedback API does.
+     */
+    private static class StandInServer extends Dispatcher {
+        final Map<String, String> stored = Collections.synchronizedMap(
+                new LinkedHashMap<String, String>());
+        final List<String> keys = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch received = new CountDownLatch(1);
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        volatile int lostResponses;
+        volatile int rejectWith;
+
+        void holdFirstRequest() {
+            release = new CountDownLatch(1);
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            final String key = request.getHeader(FeedbackApiService.HEADER_IDEMPOTENCY_KEY);
+            keys.add(key);
+            received.countDown();
+            release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+            if (rejectWith != 0) {
+                return new MockResponse().setResponseCode(rejectWith);
+            }
+            final String body = request.getBody().readUtf8();
+            synchronized (stored) {
+                if (!stored.containsKey(key)) {
+                    stored.put(key, body);
+                }
+            }
+            if (lostResponses > 0) {
+                lostResponses--;
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+            return new MockResponse().setResponseCode(201).setBody("{}");
+        }
+    }
+}
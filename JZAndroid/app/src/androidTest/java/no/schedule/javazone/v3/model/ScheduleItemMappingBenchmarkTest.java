@@ -0,0 +1,145 @@
+package no.schedule.javazone.v3.model;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.ui.UIUtils;
+
+import static no.schedule.javazone.v3.model.ScheduleItem.detectSessionType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares mapping a sessions cursor with {@link ScheduleItemCursorMapper} to the per-row mapping
+ * it replaced, which looked up every column index for every row and formatted each session's
+ * subtitle. Both must give equal items. The median timings are reported as instrumentation
+ * status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScheduleItemMappingBenchmarkTest {
+    private static final int SESSIONS = 2000;
+    private static final int RUNS = 9;
+
+    private Context mContext;
+    private MatrixCursor mCursor;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mCursor = new MatrixCursor(ScheduleItemHelper.REQUIRED_SESSION_COLUMNS, SESSIONS);
+        for (int i = 0; i < SESSIONS; i++) {
+            MatrixCursor.RowBuilder row = mCursor.newRow();
+            for (String column : ScheduleItemHelper.REQUIRED_SESSION_COLUMNS) {
+                row.add(value(column, i));
+            }
+        }
+    }
+
+    @Test
+    public void mapper_mapsSameItemsAsPerRowLookups() {
+        List<ScheduleItem> mapped = null;
+        List<ScheduleItem> perRow = null;
+        long[] mapperNanos = new long[RUNS];
+        long[] perRowNanos = new long[RUNS];
+        // Alternate the two so neither always runs on a warmer process
+        for (int run = 0; run < RUNS; run++) {
+            mCursor.moveToPosition(-1);
+            long start = System.nanoTime();
+            mapped = ScheduleItemHelper.cursorToItems(mCursor);
+            mapperNanos[run] = System.nanoTime() - start;
+
+            mCursor.moveToPosition(-1);
+            start = System.nanoTime();
+            perRow = mapPerRow(mCursor, mContext);
+            perRowNanos[run] = System.nanoTime() - start;
+        }
+
+        assertEquals(SESSIONS, mapped.size());
+        assertEquals(perRow, mapped);
+
+        Bundle results = new Bundle();
+        results.putInt("rows", SESSIONS);
+        results.putLong("mapper_us", median(mapperNanos) / 1000);
+        results.putLong("per_row_lookups_us", median(perRowNanos) / 1000);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        assertTrue(results.toString(), median(mapperNanos) < median(perRowNanos));
+    }
+
+    /**
+     * The mapping cursorToItems did before it used {@link ScheduleItemCursorMapper}.
+     */
+    @SuppressWarnings("WrongConstant")
+    private static List<ScheduleItem> mapPerRow(Cursor cursor, Context context) {
+        List<ScheduleItem> list = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            ScheduleItem item = new ScheduleItem();
+            item.type = ScheduleItem.SESSION;
+            item.sessionId = cursor.getString(cursor.getColumnIndex(Sessions.SESSION_ID));
+            item.title = cursor.getString(cursor.getColumnIndex(Sessions.SESSION_TITLE));
+            item.startTime = cursor.getLong(cursor.getColumnIndex(Sessions.SESSION_START));
+            item.endTime = cursor.getLong(cursor.getColumnIndex(Sessions.SESSION_END));
+            item.speakerNames = cursor.getString(
+                    cursor.getColumnIndex(Sessions.SESSION_SPEAKER_NAMES));
+            item.subtitle = UIUtils.formatSessionSubtitle(
+                    cursor.getString(cursor.getColumnIndex(Sessions.ROOM_ID)),
+                    cursor.getString(cursor.getColumnIndex(Sessions.SESSION_SPEAKER_NAMES)),
+                    context);
+            item.room = cursor.getString(cursor.getColumnIndex(Sessions.ROOM_ID));
+            item.sessionType = detectSessionType(
+                    cursor.getString(cursor.getColumnIndex(Sessions.SESSION_TAGS)));
+            item.conferenceId = cursor.getString(
+                    cursor.getColumnIndex(Sessions.SESSION_CONFERENCE));
+            item.inSchedule =
+                    cursor.getInt(cursor.getColumnIndex(Sessions.SESSION_IN_MY_SCHEDULE)) != 0;
+            list.add(item);
+        }
+        return list;
+    }
+
+    private static Object value(String column, int i) {
+        final long start = 1504684800000L + (i / 8) * 6 * 60000L;
+        switch (column) {
+            case Sessions.SESSION_ID:
+                return String.format(Locale.US, "session-%05d", i);
+            case Sessions.SESSION_TITLE:
+                return "Session " + i;
+            case Sessions.SESSION_START:
+                return start;
+            case Sessions.SESSION_END:
+                return start + 40 * 60000L;
+            case Sessions.ROOM_ID:
+                return "room-" + (i % 8);
+            case Sessions.SESSION_IN_MY_SCHEDULE:
+                return i % 10 == 0 ? 1 : 0;
+            case Sessions.SESSION_SPEAKER_NAMES:
+                return "Speaker " + (i % 300) + ", Speaker " + ((i + 1) % 300);
+            case Sessions.SESSION_TAGS:
+                return "TOPIC_" + (i % 10) + ",TYPE_SESSIONS";
+            case Sessions.SESSION_CONFERENCE:
+                return "javazone_2017";
+            default:
+                throw new IllegalArgumentException(column);
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
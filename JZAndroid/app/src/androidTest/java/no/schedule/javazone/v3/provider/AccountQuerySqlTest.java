@@ -0,0 +1,125 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.MySchedule;
+import no.schedule.javazone.v3.provider.ScheduleContract.Rooms;
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.provider.ScheduleContract.Speakers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that the account name the session queries join {@link MySchedule} on is bound rather
+ * than written into the SQL, so that each query compiles to the same statement for every
+ * account, and that the bound name still selects the sessions starred by that account.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AccountQuerySqlTest {
+    private static final long TIME = IsolatedScheduleProvider.DAY_START + 60 * 60 * 1000L;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final String SESSION_ID = IsolatedScheduleProvider.sessionId(1);
+
+    // The quote used to be escaped when the name was written into the SQL
+    private static final List<String> ACCOUNTS = Arrays.asList("ann@example.com",
+            "bob@example.com", "o'brien@example.com", "\"quoted\"@example.com", "");
+
+    // The queries that join the sessions with the starred sessions of the account
+    private static final List<Uri> ACCOUNT_QUERIES = Arrays.asList(
+            Rooms.buildSessionsDirUri("room-1"),
+            Sessions.CONTENT_URI,
+            Sessions.CONTENT_SCHEDULE_URI,
+            Sessions.CONTENT_MY_SCHEDULE_URI,
+            Sessions.buildUnscheduledSessionsInInterval(TIME, TIME + DAY),
+            Sessions.buildSearchUri("kotlin"),
+            Sessions.CONTENT_URI.buildUpon().appendPath("at")
+                    .appendPath(String.valueOf(TIME)).build(),
+            Sessions.buildSessionUri(SESSION_ID),
+            Sessions.buildSessionsInRoomAfterUri("room-1", TIME),
+            Sessions.buildSessionsAfterUri(TIME),
+            Speakers.CONTENT_URI.buildUpon().appendPath("speaker-1").appendPath("sessions")
+                    .build(),
+            MySchedule.CONTENT_URI);
+
+    private IsolatedScheduleProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mProvider = new IsolatedScheduleProvider();
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.close();
+    }
+
+    @Test
+    public void accountQueries_compileOneStatementForAllAccounts() {
+        Set<String> compiled = new HashSet<>();
+        for (Uri uri : ACCOUNT_QUERIES) {
+            Set<String> sqlForUri = new HashSet<>();
+            for (String account : ACCOUNTS) {
+                String sql = mProvider.provider.buildQuerySql(
+                        ScheduleContractHelper.addOverrideAccountName(uri, account), null, null,
+                        null, null);
+                if (!account.isEmpty()) {
+                    assertFalse(uri + " writes the account into " + sql,
+                            sql.contains(account.substring(0, account.indexOf('@'))));
+                }
+                sqlForUri.add(sql);
+            }
+            assertEquals(uri + " compiles to " + sqlForUri, 1, sqlForUri.size());
+            compiled.addAll(sqlForUri);
+        }
+        // One statement per query, however many accounts there are
+        assertEquals(ACCOUNT_QUERIES.size(), compiled.size());
+    }
+
+    @Test
+    public void boundAccount_selectsItsStarredSessions() {
+        mProvider.resolver.insert(Sessions.CONTENT_URI, IsolatedScheduleProvider.sessionValues(1));
+        star("o'brien@example.com");
+        star("bob@example.com");
+
+        assertEquals(0, inMySchedule("ann@example.com"));
+        assertEquals(1, inMySchedule("bob@example.com"));
+        assertEquals(1, inMySchedule("o'brien@example.com"));
+        assertEquals(0, inMySchedule(""));
+    }
+
+    private void star(String account) {
+        ContentValues values = new ContentValues();
+        values.put(MySchedule.SESSION_ID, SESSION_ID);
+        values.put(MySchedule.MY_SCHEDULE_IN_SCHEDULE, 1);
+        mProvider.resolver.insert(
+                ScheduleContractHelper.addOverrideAccountName(MySchedule.CONTENT_URI, account),
+                values);
+    }
+
+    private int inMySchedule(String account) {
+        Cursor cursor = mProvider.resolver.query(ScheduleContractHelper.addOverrideAccountName(
+                Sessions.buildSessionUri(SESSION_ID), account),
+                new String[]{Sessions.SESSION_IN_MY_SCHEDULE}, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares importing a synthetic program as one {@link ContentProviderOperation} per row with
+ * importing it through {@link ScheduleProvider#bulkInsert}, the way the import stages its
+ * records. The timings are reported as instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmarkTest {
+    private static final int SESSIONS = 3000;
+    private static final int RUNS = 3;
+
+    @Test
+    public void bulkInsert_isNotSlowerThanOperations() throws Exception {
+        long operationsNanos = Long.MAX_VALUE;
+        long bulkNanos = Long.MAX_VALUE;
+        // Alternate the two so neither always runs on a warmer process
+        for (int run = 0; run < RUNS; run++) {
+            operationsNanos = Math.min(operationsNanos, timeOperations());
+            bulkNanos = Math.min(bulkNanos, timeBulkInsert());
+        }
+
+        Bundle results = new Bundle();
+        results.putInt("sessions", SESSIONS);
+        results.putLong("apply_batch_ms", operationsNanos / 1000000);
+        results.putLong("bulk_insert_ms", bulkNanos / 1000000);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        assertTrue("bulkInsert took " + bulkNanos / 1000000 + "ms, applyBatch "
+                + operationsNanos / 1000000 + "ms", bulkNanos <= operationsNanos);
+    }
+
+    private static long timeOperations() throws Exception {
+        IsolatedScheduleProvider provider = new IsolatedScheduleProvider();
+        try {
+            ArrayList<ContentProviderOperation> batch = new ArrayList<>(SESSIONS);
+            for (int i = 0; i < SESSIONS; i++) {
+                batch.add(ContentProviderOperation.newInsert(ScheduleContract.Sessions.CONTENT_URI)
+                        .withValues(IsolatedScheduleProvider.sessionValues(i))
+                        .build());
+            }
+            long start = System.nanoTime();
+            provider.resolver.applyBatch(ScheduleContract.CONTENT_AUTHORITY, batch);
+            long nanos = System.nanoTime() - start;
+            assertEquals(SESSIONS, countSessions(provider));
+            return nanos;
+        } finally {
+            provider.close();
+        }
+    }
+
+    private static long timeBulkInsert() {
+        IsolatedScheduleProvider provider = new IsolatedScheduleProvider();
+        try {
+            ContentValues[] values = new ContentValues[SESSIONS];
+            for (int i = 0; i < SESSIONS; i++) {
+                values[i] = IsolatedScheduleProvider.sessionValues(i);
+            }
+            long start = System.nanoTime();
+            provider.resolver.bulkInsert(ScheduleContract.Sessions.CONTENT_URI, values);
+            long nanos = System.nanoTime() - start;
+            assertEquals(SESSIONS, countSessions(provider));
+            return nanos;
+        } finally {
+            provider.close();
+        }
+    }
+
+    private static int countSessions(IsolatedScheduleProvider provider) {
+        Cursor cursor = provider.resolver.query(ScheduleContract.Sessions.CONTENT_URI,
+                new String[]{ScheduleContract.Sessions.SESSION_ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.SessionsSpeakers;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.SessionsTags;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.Tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link ScheduleDatabase#applyImportStaging} leaves the speaker and tag mappings of
+ * re-imported sessions alone when they didn't change, and only writes the ones that did, and that
+ * it stamps the sessions it writes with the import's update time.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImportMappingsTest {
+    private static final int SESSIONS = 50;
+    private static final int SPEAKERS_PER_SESSION = 2;
+    private static final int TAGS_PER_SESSION = 3;
+
+    private Context mContext;
+    private ScheduleDatabase mHelper;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                "test.");
+        ScheduleDatabase.deleteDatabase(mContext);
+        mHelper = new ScheduleDatabase(mContext);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        ScheduleDatabase.deleteDatabase(mContext);
+    }
+
+    @Test
+    public void unchangedReimport_writesNoMappings() {
+        stageSessions("Session ");
+        assertEquals(SESSIONS * (1 + SPEAKERS_PER_SESSION + TAGS_PER_SESSION),
+                ScheduleDatabase.applyImportStaging(mDb, 1L));
+        List<String> speakers = readSpeakers();
+        List<String> tags = readTags();
+        assertEquals(SESSIONS * SPEAKERS_PER_SESSION, speakers.size());
+        assertEquals(SESSIONS * TAGS_PER_SESSION, tags.size());
+
+        // The sessions changed, so they are staged again with the same speakers and tags
+        stageSessions("Renamed session ");
+
+        // Only the sessions are written; the mapping rows, and their ids, stay as they were
+        assertEquals(SESSIONS, ScheduleDatabase.applyImportStaging(mDb, 2L));
+        assertEquals(speakers, readSpeakers());
+        assertEquals(tags, readTags());
+    }
+
+    @Test
+    public void changedMapping_writesOnlyThatMapping() {
+        stageSessions("Session ");
+        ScheduleDatabase.applyImportStaging(mDb, 1L);
+        List<String> speakers = readSpeakers();
+        List<String> tags = readTags();
+
+        // The first session replaces its first speaker with a new one
+        stageSessions("Session ");
+        final String sessionId = IsolatedScheduleProvider.sessionId(0);
+        mDb.delete(Tables.IMPORT_SESSIONS_SPEAKERS, SessionsSpeakers.SESSION_ID + "=? AND "
+                + SessionsSpeakers.SPEAKER_ID + "=?", new String[]{sessionId, speakerId(0, 0)});
+        stageMapping(Tables.IMPORT_SESSIONS_SPEAKERS, sessionId, SessionsSpeakers.SPEAKER_ID,
+                "speaker-new");
+
+        // One mapping deleted and one inserted, besides the sessions
+        assertEquals(SESSIONS + 2, ScheduleDatabase.applyImportStaging(mDb, 2L));
+        List<String> changed = readSpeakers();
+        assertEquals(speakers.size(), changed.size());
+        // The mappings are read in _id order, so the new one comes last
+        assertEquals(speakers.subList(1, speakers.size()), changed.subList(0, changed.size() - 1));
+        final String added = changed.get(changed.size() - 1);
+        assertTrue(added, added.endsWith("|" + sessionId + "|speaker-new"));
+        assertEquals(tags, readTags());
+    }
+
+    @Test
+    public void writtenSessions_getTheCommitsUpdatedTime() {
+        stageSessions("Session ");
+        ScheduleDatabase.applyImportStaging(mDb, 1L);
+        assertEquals(SESSIONS, countUpdated(1L));
+
+        stageSessions("Renamed session ");
+        mDb.delete(Tables.IMPORT_SESSIONS, Sessions.SESSION_ID + "=?",
+                new String[]{IsolatedScheduleProvider.sessionId(0)});
+        ScheduleDatabase.applyImportStaging(mDb, 2L);
+
+        // The session that wasn't staged again keeps the time of the import that wrote it
+        assertEquals(1, countUpdated(1L));
+        assertEquals(SESSIONS - 1, countUpdated(2L));
+    }
+
+    private void stageSessions(String titlePrefix) {
+        for (int i = 0; i < SESSIONS; i++) {
+            final ContentValues values = IsolatedScheduleProvider.sessionValues(i);
+            // The staging table only has the columns the import writes
+            values.remove(ScheduleContract.SyncColumns.UPDATED);
+            values.put(Sessions.SESSION_TITLE, titlePrefix + i);
+            mDb.insertOrThrow(Tables.IMPORT_SESSIONS, null, values);
+
+            final String sessionId = IsolatedScheduleProvider.sessionId(i);
+            for (int j = 0; j < SPEAKERS_PER_SESSION; j++) {
+                stageMapping(Tables.IMPORT_SESSIONS_SPEAKERS, sessionId,
+                        SessionsSpeakers.SPEAKER_ID, speakerId(i, j));
+            }
+            for (int j = 0; j < TAGS_PER_SESSION; j++) {
+                stageMapping(Tables.IMPORT_SESSIONS_TAGS, sessionId, SessionsTags.TAG_ID,
+                        "TOPIC_" + ((i + j) % 10));
+            }
+        }
+    }
+
+    private void stageMapping(String table, String sessionId, String idColumn, String id) {
+        ContentValues values = new ContentValues();
+        values.put(SessionsSpeakers.SESSION_ID, sessionId);
+        values.put(idColumn, id);
+        mDb.insertOrThrow(table, null, values);
+    }
+
+    private static String speakerId(int session, int index) {
+        return "speaker-" + ((session + index) % 40);
+    }
+
+    private int countUpdated(long updated) {
+        Cursor cursor = mDb.rawQuery("SELECT COUNT(*) FROM " + Tables.SESSIONS + " WHERE "
+                + ScheduleContract.SyncColumns.UPDATED + "=?",
+                new String[]{String.valueOf(updated)});
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private List<String> readSpeakers() {
+        return readMappings(Tables.SESSIONS_SPEAKERS, SessionsSpeakers.SPEAKER_ID);
+    }
+
+    private List<String> readTags() {
+        return readMappings(Tables.SESSIONS_TAGS, SessionsTags.TAG_ID);
+    }
+
+    /**
+     * @return the rows of a mapping table as "_id|session_id|id", in _id order
+     */
+    private List<String> readMappings(String table, String idColumn) {
+        List<String> rows = new ArrayList<>();
+        Cursor cursor = mDb.rawQuery("SELECT " + BaseColumns._ID + ","
+                + SessionsSpeakers.SESSION_ID + "," + idColumn + " FROM " + table
+                + " ORDER BY " + BaseColumns._ID, null);
+        try {
+            while (cursor.moveToNext()) {
+                rows.add(cursor.getLong(0) + "|" + cursor.getString(1) + "|"
+                        + cursor.getString(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,152 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import no.schedule.javazone.v3.io.ImportStagingWriter;
+import no.schedule.javazone.v3.io.handler.SessionsHandler;
+import no.schedule.javazone.v3.io.model.Session;
+import no.schedule.javazone.v3.io.model.Speaker;
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.Tables;
+import no.schedule.javazone.v3.util.SelectionBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the parts of the import and query path that need Android types and so can't run in
+ * the JMH benchmark module: the operation list {@link SessionsHandler} builds for an import, and
+ * assembling queries with {@link SelectionBuilder}. The timings for each program size are
+ * reported as instrumentation status.
+ * <p>
+ * The largest program the JMH module uses, 50k sessions, is left out; storing it first would
+ * take most of the instrumentation timeout.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImportOperationsBenchmarkTest {
+    private static final int[] SIZES = {500, 5000};
+    private static final int RUNS = 5;
+
+    @Test
+    public void sessionsHandler_buildsOperations() {
+        Bundle results = new Bundle();
+        for (int size : SIZES) {
+            long[] nanos = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                nanos[run] = timeSessionsImport(size);
+            }
+            results.putLong("sessions_handler_" + size + "_us", median(nanos) / 1000);
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    @Test
+    public void selectionBuilder_assemblesQueries() {
+        Bundle results = new Bundle();
+        SelectionBuilder builder = new SelectionBuilder();
+        for (int size : SIZES) {
+            long[] nanos = new long[RUNS];
+            String sql = null;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                // One lookup per session, and the schedule query the sessions list runs
+                for (int i = 0; i < size; i++) {
+                    sql = builder.reset()
+                            .table(Tables.SESSIONS)
+                            .where(Sessions.SESSION_ID + "=?",
+                                    IsolatedScheduleProvider.sessionId(i))
+                            .buildQuery(false, null, null, null);
+                    sql = builder.reset()
+                            .table(Tables.SESSIONS_JOIN_ROOMS_TAGS, "ann@example.com")
+                            .mapToTable(Sessions._ID, Tables.SESSIONS)
+                            .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
+                            .mapToTable(Sessions.SESSION_ID, Tables.SESSIONS)
+                            .map(Sessions.SESSION_IN_MY_SCHEDULE, "IFNULL(in_schedule, 0)")
+                            .groupBy(Tables.SESSIONS + "." + Sessions.SESSION_ID)
+                            .where(Sessions.STARTING_AT_TIME_INTERVAL_SELECTION,
+                                    String.valueOf(i), String.valueOf(i + 1))
+                            .buildQuery(false, new String[]{Sessions.SESSION_ID,
+                                    Sessions.ROOM_ID, Sessions.SESSION_IN_MY_SCHEDULE},
+                                    Sessions.SESSION_START, null);
+                }
+                nanos[run] = System.nanoTime() - start;
+            }
+            assertTrue(sql, sql.contains("GROUP BY sessions.session_id"));
+            results.putLong("selection_builder_" + size + "_us", median(nanos) / 1000);
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    /**
+     * Imports a program of {@code size} sessions over a stored one of the same size, in which
+     * every fourth session was removed and the others changed.
+     */
+    private static long timeSessionsImport(int size) {
+        IsolatedScheduleProvider provider = new IsolatedScheduleProvider();
+        try {
+            ContentValues[] stored = new ContentValues[size];
+            for (int i = 0; i < size; i++) {
+                stored[i] = IsolatedScheduleProvider.sessionValues(i);
+            }
+            provider.resolver.bulkInsert(Sessions.CONTENT_URI, stored);
+            List<Session> sessions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                if (i % 4 != 0) {
+                    sessions.add(session(i));
+                }
+            }
+
+            long start = System.nanoTime();
+            ImportStagingWriter writer = new ImportStagingWriter(provider.resolver);
+            writer.clear();
+            SessionsHandler handler = new SessionsHandler(provider.context);
+            handler.setStagingWriter(writer);
+            handler.process(sessions);
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+            handler.makeContentProviderOperations(operations);
+            writer.flush();
+            long nanos = System.nanoTime() - start;
+
+            assertEquals(size / 4, operations.size());
+            assertTrue(writer.getRowCount() >= sessions.size());
+            return nanos;
+        } finally {
+            provider.close();
+        }
+    }
+
+    private static Session session(int index) {
+        Session session = new Session();
+        session.id = IsolatedScheduleProvider.sessionId(index);
+        session.title = "Session " + index + " revisited";
+        session.description = "What we learned running thing " + index + " in production";
+        session.room = "room-" + (index % 8);
+        session.startTime = String.format(Locale.US, "2017-09-13T%02d:00", 9 + index % 9);
+        session.endTime = String.format(Locale.US, "2017-09-13T%02d:40", 9 + index % 9);
+        session.tags = new String[]{"TOPIC_" + (index % 10), "TYPE_SESSIONS"};
+        Speaker speaker = new Speaker();
+        speaker.name = "Speaker " + (index % 300);
+        speaker.bio = "Writes software for a living.";
+        speaker.id = speaker.getImportHashcode();
+        session.speakers = new Speaker[]{speaker};
+        return session;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,164 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that schedule reads don't wait for a large import batch, and that they only ever see
+ * the data from before or after it. Also reports the read latency percentiles during the batch
+ * with and without WAL as instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImportReaderStallTest {
+    private static final int OLD_SESSIONS = 100;
+    private static final int NEW_SESSIONS = 3000;
+
+    private IsolatedScheduleProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = new IsolatedScheduleProvider();
+        ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+        for (int i = 0; i < OLD_SESSIONS; i++) {
+            batch.add(ContentProviderOperation.newInsert(ScheduleContract.Sessions.CONTENT_URI)
+                    .withValues(IsolatedScheduleProvider.sessionValues(i))
+                    .build());
+        }
+        mProvider.resolver.applyBatch(ScheduleContract.CONTENT_AUTHORITY, batch);
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.close();
+    }
+
+    @Test
+    public void readsDuringImport_neitherStallNorSeePartialData() throws Exception {
+        List<Long> readNanos = new ArrayList<>();
+        long importNanos = importWhileReading(readNanos);
+
+        assertEquals(NEW_SESSIONS, countSessions(mProvider.resolver));
+        assertTrue("No reads ran during the import", readNanos.size() > 1);
+        // Reads that waited for the batch would take about as long as the batch itself
+        long maxReadNanos = Collections.max(readNanos);
+        assertTrue("Slowest read took " + maxReadNanos / 1000000 + "ms during a "
+                        + importNanos / 1000000 + "ms import",
+                maxReadNanos < importNanos / 4);
+    }
+
+    @Test
+    public void readLatencyDuringImport_withAndWithoutWal() throws Exception {
+        final ScheduleDatabase helper = mProvider.provider.getOpenHelper();
+        Bundle results = new Bundle();
+
+        // Without WAL, reads share the connection of the import and wait for its transaction
+        helper.setWriteAheadLoggingEnabled(false);
+        List<Long> withoutWal = new ArrayList<>();
+        results.putLong("wal_off_import_ms", importWhileReading(withoutWal) / 1000000);
+        putPercentiles(results, "wal_off", withoutWal);
+
+        helper.setWriteAheadLoggingEnabled(true);
+        List<Long> withWal = new ArrayList<>();
+        results.putLong("wal_on_import_ms", importWhileReading(withWal) / 1000000);
+        putPercentiles(results, "wal_on", withWal);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        assertTrue(results.toString(), percentile(withWal, 99) < percentile(withoutWal, 99));
+    }
+
+    /**
+     * Replaces the sessions with {@link #NEW_SESSIONS} new ones in one batch on another thread,
+     * reading the sessions in a loop until it is done. Each read must see the sessions from
+     * before or after the batch.
+     *
+     * @param readNanos gets the time each read took
+     * @return the time the batch took
+     */
+    private long importWhileReading(List<Long> readNanos) throws Exception {
+        final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+        batch.add(ContentProviderOperation.newDelete(ScheduleContract.Sessions.CONTENT_URI)
+                .build());
+        for (int i = 0; i < NEW_SESSIONS; i++) {
+            batch.add(ContentProviderOperation.newInsert(ScheduleContract.Sessions.CONTENT_URI)
+                    .withValues(IsolatedScheduleProvider.sessionValues(i))
+                    .build());
+        }
+
+        final ContentResolver resolver = mProvider.resolver;
+        final AtomicReference<Throwable> importError = new AtomicReference<>();
+        final long[] importNanos = new long[1];
+        Thread importer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long start = System.nanoTime();
+                    resolver.applyBatch(ScheduleContract.CONTENT_AUTHORITY, batch);
+                    importNanos[0] = System.nanoTime() - start;
+                } catch (Throwable t) {
+                    importError.set(t);
+                }
+            }
+        });
+
+        importer.start();
+        while (importer.isAlive()) {
+            long start = System.nanoTime();
+            int count = countSessions(resolver);
+            readNanos.add(System.nanoTime() - start);
+            assertTrue("Read saw " + count + " sessions",
+                    count == OLD_SESSIONS || count == NEW_SESSIONS);
+            SystemClock.sleep(5);
+        }
+        importer.join();
+
+        assertNull(importError.get());
+        return importNanos[0];
+    }
+
+    private static void putPercentiles(Bundle results, String prefix, List<Long> readNanos) {
+        results.putInt(prefix + "_reads", readNanos.size());
+        for (int percentile : new int[]{50, 95, 99}) {
+            results.putLong(prefix + "_p" + percentile + "_us",
+                    percentile(readNanos, percentile) / 1000);
+        }
+    }
+
+    /**
+     * @return the smallest value that at least {@code percentile}% of the values are at most
+     */
+    private static long percentile(List<Long> values, int percentile) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private static int countSessions(ContentResolver resolver) {
+        Cursor cursor = resolver.query(ScheduleContract.Sessions.CONTENT_URI,
+                new String[]{ScheduleContract.Sessions.SESSION_ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.support.test.InstrumentationRegistry;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import java.util.Locale;
+
+/**
+ * A {@link ScheduleProvider} with a database of its own, reachable through a
+ * {@link MockContentResolver}, so tests don't touch the app's data.
+ */
+class IsolatedScheduleProvider {
+    private static final String DATABASE_PREFIX = "test.";
+
+    static final long DAY_START = 1536732000000L; // 2018-09-12T08:00+02:00
+
+    final Context context;
+    final MockContentResolver resolver;
+    final ScheduleProvider provider;
+
+    IsolatedScheduleProvider() {
+        this(new MockContentResolver());
+    }
+
+    IsolatedScheduleProvider(MockContentResolver resolver) {
+        Context renaming = new RenamingDelegatingContext(
+                InstrumentationRegistry.getTargetContext(), DATABASE_PREFIX);
+        ScheduleDatabase.deleteDatabase(renaming);
+        this.resolver = resolver;
+        context = new IsolatedContext(resolver, renaming);
+        provider = new ScheduleProvider();
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ScheduleContract.CONTENT_AUTHORITY;
+        provider.attachInfo(context, info);
+        resolver.addProvider(ScheduleContract.CONTENT_AUTHORITY, provider);
+    }
+
+    void close() {
+        provider.shutdown();
+        ScheduleDatabase.deleteDatabase(context);
+    }
+
+    static String sessionId(int index) {
+        return String.format(Locale.US, "session-%05d", index);
+    }
+
+    /**
+     * @return the values of a 40 minute session, six of them per hour and room
+     */
+    static ContentValues sessionValues(int index) {
+        final long start = DAY_START + (index / 6) * 60 * 60 * 1000L + (index % 6) * 10 * 60000L;
+        ContentValues values = new ContentValues();
+        values.put(ScheduleContract.SyncColumns.UPDATED, 0L);
+        values.put(ScheduleContract.Sessions.SESSION_ID, sessionId(index));
+        values.put(ScheduleContract.Sessions.SESSION_TITLE, "Session " + index);
+        values.put(ScheduleContract.Sessions.SESSION_ABSTRACT,
+                "What we learned running thing " + index + " in production");
+        values.put(ScheduleContract.Sessions.SESSION_START, start);
+        values.put(ScheduleContract.Sessions.SESSION_END, start + 40 * 60000L);
+        values.put(ScheduleContract.Sessions.ROOM_ID, "room-" + (index % 8));
+        values.put(ScheduleContract.Sessions.SESSION_IMPORT_HASHCODE, "hash-" + index);
+        return values;
+    }
+}
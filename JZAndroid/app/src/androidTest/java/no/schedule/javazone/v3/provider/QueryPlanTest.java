@@ -0,0 +1,181 @@
+package no.schedule.javazone.v3.provider;
+
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Blocks;
+import no.schedule.javazone.v3.provider.ScheduleContract.MapTiles;
+import no.schedule.javazone.v3.provider.ScheduleContract.MySchedule;
+import no.schedule.javazone.v3.provider.ScheduleContract.Rooms;
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.provider.ScheduleContract.Speakers;
+import no.schedule.javazone.v3.provider.ScheduleContract.Tags;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.Tables;
+import no.schedule.javazone.v3.sync.ScheduleUriEnum;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@code EXPLAIN QUERY PLAN} on the query {@link ScheduleProvider#query} makes for each
+ * {@link ScheduleUriEnum} it handles with a {@link no.schedule.javazone.v3.util.SelectionBuilder},
+ * and fails if a table is read in full where an index should be used.
+ * <p>
+ * Only the table a listing query returns every row of may be scanned, directly or by walking one
+ * of its indexes in full. Tables joined to it, and the tables of lookups by id, room, speaker or
+ * time, must be searched through an index. An automatic index means SQLite had to build the
+ * missing index itself, which also fails.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+    private static final String SESSION_ID = IsolatedScheduleProvider.sessionId(1);
+    private static final long TIME = IsolatedScheduleProvider.DAY_START + 60 * 60 * 1000L;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    // "SCAN TABLE sessions" before SQLite 3.36, "SCAN sessions" after, and so on
+    private static final Pattern STEP = Pattern.compile(
+            "^(SCAN|SEARCH)( TABLE)? (\\w+)(?: AS \\w+)?(.*)$");
+
+    // "SCAN CONSTANT ROW" and "SCAN SUBQUERY 1" read no table
+    private static final Set<String> NOT_TABLES = new HashSet<>(
+            Arrays.asList("CONSTANT", "SUBQUERY"));
+
+    private IsolatedScheduleProvider mProvider;
+    private final List<ScheduleUriEnum> mCovered = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mProvider = new IsolatedScheduleProvider();
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.close();
+    }
+
+    @Test
+    public void queries_useIndexes() {
+        // Listings of a whole table
+        assertPlan(ScheduleUriEnum.BLOCKS, Blocks.CONTENT_URI, null, Blocks.BLOCK_START,
+                Tables.BLOCKS);
+        assertPlan(ScheduleUriEnum.CARDS, ScheduleContract.Cards.CONTENT_URI, null, null,
+                Tables.CARDS);
+        assertPlan(ScheduleUriEnum.TAGS, Tags.CONTENT_URI, null, Tags.TAG_ORDER_IN_CATEGORY,
+                Tables.TAGS);
+        assertPlan(ScheduleUriEnum.ROOMS, Rooms.CONTENT_URI, null, Rooms.ROOM_NAME,
+                Tables.ROOMS);
+        assertPlan(ScheduleUriEnum.SPEAKERS, Speakers.CONTENT_URI, null, Speakers.DEFAULT_SORT,
+                Tables.SPEAKERS);
+        assertPlan(ScheduleUriEnum.MAPTILES, MapTiles.CONTENT_URI, null, null, Tables.MAPTILES);
+        assertPlan(ScheduleUriEnum.SESSIONS, Sessions.CONTENT_URI, null, Sessions.SORT_BY_TIME,
+                Tables.SESSIONS);
+        assertPlan(ScheduleUriEnum.SESSIONS, Sessions.buildCategoryTagFilterUri(
+                Sessions.CONTENT_URI, new String[]{"TOPIC_1", "TYPE_1"}, 2), null,
+                Sessions.SORT_BY_TIME, Tables.SESSIONS);
+        assertPlan(ScheduleUriEnum.SESSIONS_SCHEDULE, Sessions.CONTENT_SCHEDULE_URI, null,
+                Sessions.SORT_BY_TIME, Tables.SCHEDULE_SESSIONS);
+        // Starred or keynote, which no index can answer
+        assertPlan(ScheduleUriEnum.SESSIONS_MY_SCHEDULE, Sessions.CONTENT_MY_SCHEDULE_URI, null,
+                Sessions.SORT_BY_TIME, Tables.SESSIONS);
+        // Running or starting later, an OR that is most of the program during the conference
+        assertPlan(ScheduleUriEnum.SESSIONS_AFTER, Sessions.buildSessionsAfterUri(TIME), null,
+                Sessions.SORT_BY_TIME, Tables.SESSIONS);
+        // The full text index drives the search
+        assertPlan(ScheduleUriEnum.SESSIONS_SEARCH, Sessions.buildSearchUri("kotlin"), null,
+                null);
+
+        // Lookups
+        assertPlan(ScheduleUriEnum.BLOCKS_BETWEEN, Blocks.CONTENT_URI.buildUpon()
+                .appendPath("between").appendPath(String.valueOf(TIME))
+                .appendPath(String.valueOf(TIME + DAY)).build(), null, Blocks.BLOCK_START);
+        assertPlan(ScheduleUriEnum.BLOCKS_ID, Blocks.buildBlockUri("block-1"), null, null);
+        assertPlan(ScheduleUriEnum.TAGS_ID, Tags.buildTagUri("TOPIC_1"), null, null);
+        assertPlan(ScheduleUriEnum.ROOMS_ID, Rooms.buildRoomUri("room-1"), null, null);
+        assertPlan(ScheduleUriEnum.ROOMS_ID_SESSIONS, Rooms.buildSessionsDirUri("room-1"), null,
+                Sessions.SORT_BY_TIME);
+        assertPlan(ScheduleUriEnum.SESSIONS_UNSCHEDULED,
+                Sessions.buildUnscheduledSessionsInInterval(TIME, TIME + DAY), null,
+                Sessions.SORT_BY_TIME);
+        assertPlan(ScheduleUriEnum.SESSIONS_AT, Sessions.CONTENT_URI.buildUpon()
+                .appendPath("at").appendPath(String.valueOf(TIME)).build(), null, null);
+        assertPlan(ScheduleUriEnum.SESSIONS_ID, Sessions.buildSessionUri(SESSION_ID), null,
+                null);
+        assertPlan(ScheduleUriEnum.SESSIONS_ID_SPEAKERS, Sessions.buildSpeakersDirUri(SESSION_ID),
+                null, Speakers.DEFAULT_SORT);
+        assertPlan(ScheduleUriEnum.SESSIONS_ID_TAGS, Sessions.buildTagsDirUri(SESSION_ID), null,
+                Tags.TAG_ORDER_IN_CATEGORY);
+        assertPlan(ScheduleUriEnum.SESSIONS_ROOM_AFTER,
+                Sessions.buildSessionsInRoomAfterUri("room-1", TIME), null,
+                Sessions.SORT_BY_TIME);
+        assertPlan(ScheduleUriEnum.SPEAKERS_ID, Speakers.buildSpeakerUri("speaker-1"), null,
+                null);
+        assertPlan(ScheduleUriEnum.SPEAKERS_ID_SESSIONS, Speakers.CONTENT_URI.buildUpon()
+                .appendPath("speaker-1").appendPath("sessions").build(), null,
+                Sessions.SORT_BY_TIME);
+        assertPlan(ScheduleUriEnum.MY_SCHEDULE, MySchedule.CONTENT_URI, null, null);
+
+        // The time range of a conference day, as the schedule loads it
+        String day = Sessions.SESSION_START + ">=" + TIME + " AND " + Sessions.SESSION_START
+                + "<" + (TIME + DAY);
+        assertPlan(ScheduleUriEnum.SESSIONS_SCHEDULE, Sessions.CONTENT_SCHEDULE_URI, day,
+                Sessions.SORT_BY_TIME);
+
+        // Fail when a query path is added without a plan check here
+        Set<ScheduleUriEnum> missing = new HashSet<>(Arrays.asList(ScheduleUriEnum.values()));
+        missing.removeAll(mCovered);
+        missing.removeAll(Arrays.asList(
+                // Queried with a selection of their own
+                ScheduleUriEnum.SEARCH_SUGGEST, ScheduleUriEnum.SEARCH_TOPICS_SESSIONS,
+                // Not queryable
+                ScheduleUriEnum.SESSIONS_ID_RELATED, ScheduleUriEnum.SESSIONS_COUNTER,
+                ScheduleUriEnum.MAPTILES_FLOOR,
+                // Written, never queried
+                ScheduleUriEnum.SEARCH_INDEX, ScheduleUriEnum.IMPORT,
+                ScheduleUriEnum.IMPORT_SESSIONS, ScheduleUriEnum.IMPORT_SPEAKERS,
+                ScheduleUriEnum.IMPORT_SESSIONS_SPEAKERS, ScheduleUriEnum.IMPORT_SESSIONS_TAGS,
+                ScheduleUriEnum.IMPORT_COMMIT));
+        assertTrue("No query plan checked for " + missing, missing.isEmpty());
+    }
+
+    /**
+     * @param scannedTables the tables the query may read in full
+     */
+    private void assertPlan(ScheduleUriEnum expectedUri, Uri uri, String selection,
+            String sortOrder, String... scannedTables) {
+        mCovered.add(expectedUri);
+        final String plan = mProvider.provider.explainQueryPlan(uri, null, selection, null,
+                sortOrder);
+        final Set<String> allowed = new HashSet<>(Arrays.asList(scannedTables));
+        for (String step : plan.split("\n")) {
+            if (step.contains("AUTOMATIC")) {
+                fail(expectedUri + " builds an automatic index:\n" + plan);
+            }
+            Matcher matcher = STEP.matcher(step.trim());
+            if (!matcher.matches() || !"SCAN".equals(matcher.group(1))) {
+                continue;
+            }
+            final String table = matcher.group(3);
+            // Walking a whole index reads every row as well, but the full text index answers
+            // MATCH through its own index
+            if (matcher.group(4).contains("VIRTUAL TABLE") || NOT_TABLES.contains(table)) {
+                continue;
+            }
+            if (!allowed.contains(table)) {
+                fail(expectedUri + " scans " + table + ":\n" + plan);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Speakers;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.Tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares reading all speakers through {@link ScheduleProvider} with query stats enabled and
+ * disabled, and straight from the database as a baseline. The median timings of a round of
+ * queries are reported as instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryStatsBenchmarkTest {
+    private static final int SPEAKERS = 1000;
+    private static final int QUERIES = 50;
+    private static final int RUNS = 9;
+    private static final String[] PROJECTION = {Speakers.SPEAKER_ID, Speakers.SPEAKER_NAME,
+            Speakers.SPEAKER_COMPANY, Speakers.SPEAKER_ABSTRACT};
+
+    private IsolatedScheduleProvider mProvider;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mProvider = new IsolatedScheduleProvider();
+        ContentValues[] speakers = new ContentValues[SPEAKERS];
+        for (int i = 0; i < SPEAKERS; i++) {
+            speakers[i] = new ContentValues();
+            speakers[i].put(ScheduleContract.SyncColumns.UPDATED, 0L);
+            speakers[i].put(Speakers.SPEAKER_ID, "speaker-" + i);
+            speakers[i].put(Speakers.SPEAKER_NAME, "Speaker " + i);
+            speakers[i].put(Speakers.SPEAKER_COMPANY, "Company " + (i % 50));
+            speakers[i].put(Speakers.SPEAKER_ABSTRACT, "Speaker " + i
+                    + " writes software for a living and talks about it at conferences.");
+        }
+        mProvider.resolver.bulkInsert(Speakers.CONTENT_URI, speakers);
+        mDb = mProvider.provider.getOpenHelper().getReadableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.close();
+    }
+
+    @Test
+    public void statsOverhead() {
+        long[] baselineNanos = new long[RUNS];
+        long[] disabledNanos = new long[RUNS];
+        long[] enabledNanos = new long[RUNS];
+        // Only the bookkeeping is measured, not explaining slow queries
+        dump("--slow-query-ms", "60000");
+        // Alternate the three so none always runs on a warmer process
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                read(mDb.query(Tables.SPEAKERS, PROJECTION, null, null, null, null, null));
+            }
+            baselineNanos[run] = System.nanoTime() - start;
+
+            dump("--query-stats", "off");
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                read(mProvider.resolver.query(Speakers.CONTENT_URI, PROJECTION, null, null,
+                        null));
+            }
+            disabledNanos[run] = System.nanoTime() - start;
+
+            dump("--query-stats", "on");
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                read(mProvider.resolver.query(Speakers.CONTENT_URI, PROJECTION, null, null,
+                        null));
+            }
+            enabledNanos[run] = System.nanoTime() - start;
+        }
+
+        String stats = dump();
+        assertTrue(stats, stats.contains("  SPEAKERS: count=" + RUNS * QUERIES + " "));
+
+        Bundle results = new Bundle();
+        results.putInt("queries", QUERIES);
+        results.putInt("rows", SPEAKERS);
+        results.putLong("baseline_us", median(baselineNanos) / 1000);
+        results.putLong("stats_disabled_us", median(disabledNanos) / 1000);
+        results.putLong("stats_enabled_us", median(enabledNanos) / 1000);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        // Recording a query is a few counters next to running it and reading its rows
+        assertTrue(results.toString(),
+                median(enabledNanos) < median(disabledNanos) + median(disabledNanos) / 4);
+    }
+
+    private static void read(Cursor cursor) {
+        try {
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                cursor.getString(0);
+                cursor.getString(3);
+                rows++;
+            }
+            assertEquals(SPEAKERS, rows);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private String dump(String... args) {
+        StringWriter dump = new StringWriter();
+        PrintWriter writer = new PrintWriter(dump);
+        mProvider.provider.dump(null, writer, args);
+        writer.flush();
+        return dump.toString();
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
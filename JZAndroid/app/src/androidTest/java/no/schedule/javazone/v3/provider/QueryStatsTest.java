@@ -0,0 +1,145 @@
+package no.schedule.javazone.v3.provider;
+
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.sync.ScheduleUriEnum;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the histograms and slow queries {@link QueryStats} keeps, and how
+ * {@link ScheduleProvider} records its queries and is switched with the dump arguments.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryStatsTest {
+    private static final String[] PROJECTION = {Sessions.SESSION_ID, Sessions.SESSION_TITLE};
+
+    private IsolatedScheduleProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mProvider = new IsolatedScheduleProvider();
+        mProvider.resolver.insert(Sessions.CONTENT_URI, IsolatedScheduleProvider.sessionValues(1));
+        dump("--query-stats", "reset");
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.close();
+    }
+
+    @Test
+    public void histogram_bucketsByPowerOfTwoMillis() {
+        QueryStats stats = new QueryStats(true);
+        stats.record(ScheduleUriEnum.SESSIONS, TimeUnit.MICROSECONDS.toNanos(500));
+        stats.record(ScheduleUriEnum.SESSIONS, TimeUnit.MILLISECONDS.toNanos(1));
+        stats.record(ScheduleUriEnum.SESSIONS, TimeUnit.MILLISECONDS.toNanos(3));
+        stats.record(ScheduleUriEnum.SESSIONS, TimeUnit.MILLISECONDS.toNanos(1023));
+        stats.record(ScheduleUriEnum.SESSIONS, TimeUnit.MILLISECONDS.toNanos(1024));
+        stats.record(ScheduleUriEnum.SESSIONS, TimeUnit.SECONDS.toNanos(60));
+        stats.record(ScheduleUriEnum.ROOMS, TimeUnit.MILLISECONDS.toNanos(7));
+
+        String dump = dump(stats);
+        assertTrue(dump, dump.contains("  SESSIONS: count=6 mean=10341.92ms max=60000.00ms"
+                + " <1ms:1 <2ms:1 <4ms:1 <1024ms:1 >=1024ms:2\n"));
+        assertTrue(dump, dump.contains("  ROOMS: count=1 mean=7.00ms max=7.00ms <8ms:1\n"));
+    }
+
+    @Test
+    public void slowQueries_keepTheLastTenWithTheirPlans() {
+        QueryStats stats = new QueryStats(true);
+        final long threshold = TimeUnit.MILLISECONDS.toNanos(
+                QueryStats.DEFAULT_SLOW_QUERY_THRESHOLD_MS);
+        assertFalse(stats.isSlow(threshold - 1));
+        assertTrue(stats.isSlow(threshold));
+
+        for (int i = 0; i < 12; i++) {
+            stats.recordSlowQuery(ScheduleUriEnum.SESSIONS, threshold + i, "plan " + i, 0);
+        }
+
+        String dump = dump(stats);
+        assertTrue(dump, dump.contains("Slow queries, oldest first:\n"));
+        assertFalse(dump, dump.contains("plan 0\n"));
+        assertFalse(dump, dump.contains("plan 1\n"));
+        assertTrue(dump, dump.indexOf("    plan 2\n") < dump.indexOf("    plan 11\n"));
+    }
+
+    @Test
+    public void dumpArgs_switchStatsAndSlowQueryThreshold() {
+        String dump = dump("--query-stats", "off");
+        assertTrue(dump, dump.contains("Query stats enabled: false\n"));
+        querySessions();
+        assertFalse(dump(), dump().contains("SESSIONS:"));
+
+        dump = dump("--query-stats", "on", "--slow-query-ms", "0");
+        assertTrue(dump, dump.contains("Query stats enabled: true\n"));
+        assertTrue(dump, dump.contains("Slow query threshold: 0ms\n"));
+        querySessions();
+        dump = dump();
+        assertTrue(dump, dump.contains("  SESSIONS: count=1 "));
+        // Every query is slow, so its plan is kept
+        assertTrue(dump, dump.contains("Slow queries, oldest first:\n  SESSIONS took "));
+        assertTrue(dump, dump.contains("SCAN") || dump.contains("SEARCH"));
+
+        dump = dump("--slow-query-ms", "soon");
+        assertTrue(dump, dump.contains("Slow query threshold: 0ms\n"));
+
+        dump = dump("--query-stats", "reset");
+        assertTrue(dump, dump.contains("Query stats enabled: true\n"));
+        assertFalse(dump, dump.contains("SESSIONS"));
+    }
+
+    @Test
+    public void query_isRecordedWhenFirstRead() {
+        dump("--query-stats", "on");
+        Cursor cursor = mProvider.provider.query(Sessions.CONTENT_URI, PROJECTION, null, null,
+                null);
+        try {
+            // The provider leaves running the query to whoever reads the cursor
+            assertFalse(dump(), dump().contains("SESSIONS:"));
+
+            assertTrue(cursor.moveToFirst());
+            assertTrue(dump(), dump().contains("  SESSIONS: count=1 "));
+            cursor.getCount();
+            cursor.moveToPosition(-1);
+            assertTrue(cursor.moveToNext());
+            assertTrue(dump(), dump().contains("  SESSIONS: count=1 "));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void querySessions() {
+        Cursor cursor = mProvider.resolver.query(Sessions.CONTENT_URI, PROJECTION, null, null,
+                null);
+        cursor.close();
+    }
+
+    private String dump(String... args) {
+        StringWriter dump = new StringWriter();
+        PrintWriter writer = new PrintWriter(dump);
+        mProvider.provider.dump(null, writer, args);
+        writer.flush();
+        return dump.toString();
+    }
+
+    private static String dump(QueryStats stats) {
+        StringWriter dump = new StringWriter();
+        PrintWriter writer = new PrintWriter(dump);
+        stats.dump(writer);
+        writer.flush();
+        return dump.toString();
+    }
+}
@@ -0,0 +1,161 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import no.schedule.javazone.v3.model.ScheduleHelper;
+import no.schedule.javazone.v3.model.ScheduleItem;
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares loading the conference days with one sessions query, as the schedule does, with
+ * loading each day with a query of its own. Both must give the same days. The rows each way
+ * reads and the timings are reported as instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScheduleDaysQueryBenchmarkTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final int DAYS = 3;
+    private static final int HOURS_PER_DAY = 10;
+    private static final int ROOMS = 8;
+    private static final int RUNS = 5;
+
+    private IsolatedScheduleProvider mProvider;
+    private ScheduleHelper mHelper;
+    private long[][] mDays;
+
+    @Before
+    public void setUp() {
+        mProvider = new IsolatedScheduleProvider();
+        mHelper = new ScheduleHelper(mProvider.context);
+
+        mDays = new long[DAYS][];
+        List<ContentValues> sessions = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            final long dayStart = IsolatedScheduleProvider.DAY_START + day * 24 * HOUR;
+            mDays[day] = new long[]{dayStart, dayStart + HOURS_PER_DAY * HOUR};
+            for (int slot = 0; slot < HOURS_PER_DAY * ROOMS; slot++) {
+                sessions.add(session(sessions.size(), dayStart + (slot / ROOMS) * HOUR));
+            }
+            // A late night session after each day, which belongs to no day
+            sessions.add(session(sessions.size(), dayStart + 14 * HOUR));
+        }
+        mProvider.resolver.bulkInsert(Sessions.CONTENT_URI,
+                sessions.toArray(new ContentValues[sessions.size()]));
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.close();
+    }
+
+    @Test
+    public void singleQuery_loadsSameDaysAsQueryPerDay() {
+        long singleNanos = Long.MAX_VALUE;
+        long perDayNanos = Long.MAX_VALUE;
+        List<List<String>> single = null;
+        List<List<String>> perDay = null;
+        // Alternate the two so neither always runs on a warmer process
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            single = loadWithSingleQuery();
+            singleNanos = Math.min(singleNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            perDay = loadWithQueryPerDay();
+            perDayNanos = Math.min(perDayNanos, System.nanoTime() - start);
+        }
+
+        assertEquals(DAYS, single.size());
+        for (int day = 0; day < DAYS; day++) {
+            assertEquals("day " + day, HOURS_PER_DAY * ROOMS, single.get(day).size());
+        }
+        assertEquals(perDay, single);
+
+        int perDayRows = 0;
+        for (long[] day : mDays) {
+            perDayRows += countRows(day[0], day[1]);
+        }
+        int singleRows = countRows(mDays[0][0], mDays[DAYS - 1][1]);
+
+        Bundle results = new Bundle();
+        results.putInt("days", DAYS);
+        results.putInt("single_query_rows", singleRows);
+        results.putInt("per_day_rows", perDayRows);
+        results.putLong("single_query_us", singleNanos / 1000);
+        results.putLong("per_day_us", perDayNanos / 1000);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        // The single query also reads the sessions between the days, which are dropped
+        assertEquals(perDayRows + DAYS - 1, singleRows);
+        assertTrue("One query took " + singleNanos / 1000 + "us, one per day "
+                + perDayNanos / 1000 + "us", singleNanos <= perDayNanos);
+    }
+
+    private List<List<String>> loadWithSingleQuery() {
+        final List<List<String>> days = new ArrayList<>();
+        mHelper.getScheduleData(mDays, new ScheduleHelper.DayLoadedCallback() {
+            @Override
+            public void onDayLoaded(int dayIndex, ArrayList<ScheduleItem> scheduleItems) {
+                assertEquals(days.size(), dayIndex);
+                days.add(describe(scheduleItems));
+            }
+        });
+        return days;
+    }
+
+    private List<List<String>> loadWithQueryPerDay() {
+        List<List<String>> days = new ArrayList<>();
+        for (long[] day : mDays) {
+            days.add(describe(mHelper.getScheduleData(day[0], day[1])));
+        }
+        return days;
+    }
+
+    private int countRows(long start, long end) {
+        Cursor cursor = mProvider.resolver.query(Sessions.CONTENT_SCHEDULE_URI,
+                new String[]{Sessions.SESSION_ID}, Sessions.STARTING_AT_TIME_INTERVAL_SELECTION,
+                new String[]{String.valueOf(start), String.valueOf(end)}, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Sessions starting at the same time may come in either order, so they are compared sorted.
+     */
+    private static List<String> describe(List<ScheduleItem> items) {
+        List<String> described = new ArrayList<>(items.size());
+        for (ScheduleItem item : items) {
+            described.add(item.sessionId + "|" + item.startTime + "|" + item.endTime + "|"
+                    + item.flags);
+        }
+        Collections.sort(described);
+        return described;
+    }
+
+    private static ContentValues session(int index, long start) {
+        ContentValues values = IsolatedScheduleProvider.sessionValues(index);
+        values.put(Sessions.SESSION_START, start);
+        values.put(Sessions.SESSION_END, start + 40 * 60000L);
+        values.put(Sessions.ROOM_ID, "room-" + (index % ROOMS));
+        return values;
+    }
+}
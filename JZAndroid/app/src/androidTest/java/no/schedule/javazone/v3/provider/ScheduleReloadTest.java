@@ -0,0 +1,160 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.mock.MockContentResolver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Blocks;
+import no.schedule.javazone.v3.provider.ScheduleContract.MapTiles;
+import no.schedule.javazone.v3.provider.ScheduleContract.MySchedule;
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.provider.ScheduleContract.Speakers;
+import no.schedule.javazone.v3.provider.ScheduleContract.Tags;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.SessionsTags;
+import no.schedule.javazone.v3.util.CoalescingContentObserver;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counts the schedule reloads a {@link CoalescingContentObserver} watching the same URIs as
+ * {@link no.schedule.javazone.v3.schedule.ScheduleModel} triggers for provider writes: one for a
+ * whole import batch, none for writes to data the schedule doesn't show.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScheduleReloadTest {
+    private static final int IMPORT_SESSIONS = 400;
+    private static final int IMPORT_SPEAKERS = 400;
+    private static final int IMPORT_TAGS = 200;
+    // Long enough for any straggling notification to have been coalesced and delivered
+    private static final long SETTLE_MS = CoalescingContentObserver.DEFAULT_MAX_LATENCY_MS + 1000;
+
+    private IsolatedScheduleProvider mProvider;
+    private HandlerThread mThread;
+    private CoalescingContentObserver mObserver;
+    private ContentResolver mSystemResolver;
+    private final List<Set<Uri>> mReloads = Collections.synchronizedList(
+            new ArrayList<Set<Uri>>());
+
+    @Before
+    public void setUp() {
+        // MockContentResolver drops notifications; hand them to the system instead, where the
+        // observer is registered
+        mSystemResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        mProvider = new IsolatedScheduleProvider(new MockContentResolver() {
+            @Override
+            public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+                mSystemResolver.notifyChange(uri, observer, false);
+            }
+        });
+
+        mThread = new HandlerThread("ScheduleReloadTest");
+        mThread.start();
+        mObserver = new CoalescingContentObserver(new Handler(mThread.getLooper()),
+                new CoalescingContentObserver.Callbacks() {
+                    @Override
+                    public void onContentChanged(Set<Uri> changedUris) {
+                        mReloads.add(changedUris);
+                    }
+                }, Sessions.CONTENT_URI, MySchedule.CONTENT_URI);
+        mObserver.register(mSystemResolver);
+    }
+
+    @After
+    public void tearDown() {
+        mObserver.unregister(mSystemResolver);
+        mThread.quit();
+        mProvider.close();
+    }
+
+    @Test
+    public void importBatch_reloadsOnce() throws Exception {
+        ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+        for (int i = 0; i < IMPORT_SPEAKERS; i++) {
+            ContentValues speaker = new ContentValues();
+            speaker.put(ScheduleContract.SyncColumns.UPDATED, 0L);
+            speaker.put(Speakers.SPEAKER_ID, "speaker-" + i);
+            speaker.put(Speakers.SPEAKER_NAME, "Speaker " + i);
+            batch.add(ContentProviderOperation.newInsert(serviceApi(Speakers.CONTENT_URI))
+                    .withValues(speaker)
+                    .build());
+        }
+        for (int i = 0; i < IMPORT_SESSIONS; i++) {
+            batch.add(ContentProviderOperation.newInsert(serviceApi(Sessions.CONTENT_URI))
+                    .withValues(IsolatedScheduleProvider.sessionValues(i))
+                    .build());
+        }
+        for (int i = 0; i < IMPORT_TAGS; i++) {
+            String sessionId = IsolatedScheduleProvider.sessionId(i);
+            ContentValues tag = new ContentValues();
+            tag.put(SessionsTags.SESSION_ID, sessionId);
+            tag.put(SessionsTags.TAG_ID, "TOPIC_" + (i % 5));
+            batch.add(ContentProviderOperation.newInsert(
+                    serviceApi(Sessions.buildTagsDirUri(sessionId)))
+                    .withValues(tag)
+                    .build());
+        }
+        assertEquals(1000, batch.size());
+
+        mProvider.resolver.applyBatch(ScheduleContract.CONTENT_AUTHORITY, batch);
+        SystemClock.sleep(SETTLE_MS);
+
+        assertEquals(mReloads.toString(), 1, mReloads.size());
+    }
+
+    @Test
+    public void unrelatedWrites_reloadNever() {
+        ContentValues block = new ContentValues();
+        block.put(Blocks.BLOCK_ID, "block-1");
+        block.put(Blocks.BLOCK_TITLE, "Lunch");
+        block.put(Blocks.BLOCK_START, IsolatedScheduleProvider.DAY_START);
+        block.put(Blocks.BLOCK_END, IsolatedScheduleProvider.DAY_START + 3600000L);
+        mProvider.resolver.insert(Blocks.CONTENT_URI, block);
+
+        ContentValues speaker = new ContentValues();
+        speaker.put(ScheduleContract.SyncColumns.UPDATED, 0L);
+        speaker.put(Speakers.SPEAKER_ID, "speaker-1");
+        speaker.put(Speakers.SPEAKER_NAME, "Speaker 1");
+        mProvider.resolver.insert(Speakers.CONTENT_URI, speaker);
+
+        ContentValues tag = new ContentValues();
+        tag.put(Tags.TAG_ID, "TOPIC_1");
+        tag.put(Tags.TAG_CATEGORY, "TOPIC");
+        tag.put(Tags.TAG_NAME, "Topic 1");
+        tag.put(Tags.TAG_COLOR, "#000000");
+        tag.put(Tags.TAG_ABSTRACT, "");
+        mProvider.resolver.insert(Tags.CONTENT_URI, tag);
+
+        ContentValues tile = new ContentValues();
+        tile.put(MapTiles.TILE_FLOOR, 1);
+        tile.put(MapTiles.TILE_FILE, "floor1.svg");
+        tile.put(MapTiles.TILE_URL, "https://example.com/floor1.svg");
+        mProvider.resolver.insert(MapTiles.CONTENT_URI, tile);
+
+        mProvider.resolver.delete(Speakers.CONTENT_URI, null, null);
+        SystemClock.sleep(SETTLE_MS);
+
+        assertEquals(mReloads.toString(), 0, mReloads.size());
+    }
+
+    private static Uri serviceApi(Uri uri) {
+        return ScheduleContractHelper.setUriAsCalledFromServiceApi(uri);
+    }
+}
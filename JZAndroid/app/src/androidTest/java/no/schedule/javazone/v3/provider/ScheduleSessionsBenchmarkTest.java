@@ -0,0 +1,166 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import no.schedule.javazone.v3.model.ScheduleItemHelper;
+import no.schedule.javazone.v3.provider.ScheduleContract.MySchedule;
+import no.schedule.javazone.v3.provider.ScheduleContract.Rooms;
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.SessionsTags;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares loading a schedule day from {@link Sessions#CONTENT_SCHEDULE_URI}, as the schedule
+ * does, with the join of the sessions with their rooms, tags and starred state grouped per
+ * session, which it read before. Both must give the same rows. The median timings are reported
+ * as instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScheduleSessionsBenchmarkTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final int DAYS = 3;
+    private static final int SESSIONS_PER_DAY = 800;
+    private static final int ROOMS = 8;
+    private static final int TAGS_PER_SESSION = 3;
+    private static final int RUNS = 9;
+
+    private IsolatedScheduleProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mProvider = new IsolatedScheduleProvider();
+
+        List<ContentValues> rooms = new ArrayList<>();
+        for (int room = 0; room < ROOMS; room++) {
+            ContentValues values = new ContentValues();
+            values.put(Rooms.ROOM_ID, "room-" + room);
+            values.put(Rooms.ROOM_NAME, "Room " + room);
+            rooms.add(values);
+        }
+        mProvider.resolver.bulkInsert(Rooms.CONTENT_URI,
+                rooms.toArray(new ContentValues[rooms.size()]));
+
+        List<ContentValues> sessions = new ArrayList<>();
+        List<ContentValues> tags = new ArrayList<>();
+        for (int i = 0; i < DAYS * SESSIONS_PER_DAY; i++) {
+            // Ten hours a day, with a new session in each room every six minutes
+            final int slot = (i % SESSIONS_PER_DAY) / ROOMS;
+            final long start = dayStart(i / SESSIONS_PER_DAY) + slot * HOUR / 10;
+            ContentValues values = IsolatedScheduleProvider.sessionValues(i);
+            values.put(Sessions.SESSION_START, start);
+            values.put(Sessions.SESSION_END, start + 40 * 60000L);
+            values.put(Sessions.ROOM_ID, "room-" + (i % ROOMS));
+            values.put(Sessions.SESSION_SPEAKER_NAMES, "Speaker " + (i % 300));
+            values.put(Sessions.SESSION_TAGS, "TOPIC_" + (i % 10) + ",TYPE_SESSIONS");
+            sessions.add(values);
+            for (int tag = 0; tag < TAGS_PER_SESSION; tag++) {
+                ContentValues mapping = new ContentValues();
+                mapping.put(SessionsTags.SESSION_ID, IsolatedScheduleProvider.sessionId(i));
+                mapping.put(SessionsTags.TAG_ID, "TOPIC_" + ((i + tag) % 10));
+                tags.add(mapping);
+            }
+        }
+        mProvider.resolver.bulkInsert(Sessions.CONTENT_URI,
+                sessions.toArray(new ContentValues[sessions.size()]));
+        mProvider.resolver.bulkInsert(
+                Sessions.buildTagsDirUri(IsolatedScheduleProvider.sessionId(0)),
+                tags.toArray(new ContentValues[tags.size()]));
+
+        for (int i = 0; i < DAYS * SESSIONS_PER_DAY; i += 10) {
+            ContentValues starred = new ContentValues();
+            starred.put(MySchedule.SESSION_ID, IsolatedScheduleProvider.sessionId(i));
+            starred.put(MySchedule.MY_SCHEDULE_IN_SCHEDULE, 1);
+            mProvider.resolver.insert(MySchedule.CONTENT_URI, starred);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.close();
+    }
+
+    @Test
+    public void scheduleTable_loadsSameDayAsJoin() {
+        final long start = dayStart(1);
+        final long end = start + 24 * HOUR;
+        List<String> fromTable = null;
+        List<String> fromJoin = null;
+        long[] tableNanos = new long[RUNS];
+        long[] joinNanos = new long[RUNS];
+        // Alternate the two so neither always runs on a warmer process
+        for (int run = 0; run < RUNS; run++) {
+            long startNanos = System.nanoTime();
+            fromTable = loadDay(Sessions.CONTENT_SCHEDULE_URI, start, end);
+            tableNanos[run] = System.nanoTime() - startNanos;
+
+            startNanos = System.nanoTime();
+            fromJoin = loadDay(Sessions.CONTENT_URI, start, end);
+            joinNanos[run] = System.nanoTime() - startNanos;
+        }
+
+        assertEquals(SESSIONS_PER_DAY, fromTable.size());
+        assertEquals(fromJoin, fromTable);
+
+        Bundle results = new Bundle();
+        results.putInt("sessions", DAYS * SESSIONS_PER_DAY);
+        results.putInt("day_rows", fromTable.size());
+        results.putLong("schedule_table_us", median(tableNanos) / 1000);
+        results.putLong("join_group_by_us", median(joinNanos) / 1000);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        assertTrue(results.toString(), median(tableNanos) < median(joinNanos));
+    }
+
+    /**
+     * Reads every column of a day the way the schedule's cursor mapper does. Sessions starting
+     * at the same time may come in either order, so the rows are sorted.
+     */
+    private List<String> loadDay(Uri uri, long start, long end) {
+        Cursor cursor = mProvider.resolver.query(uri, ScheduleItemHelper.REQUIRED_SESSION_COLUMNS,
+                Sessions.STARTING_AT_TIME_INTERVAL_SELECTION,
+                new String[]{String.valueOf(start), String.valueOf(end)},
+                Sessions.SESSION_START);
+        try {
+            List<String> rows = new ArrayList<>(cursor.getCount());
+            final int columns = cursor.getColumnCount();
+            while (cursor.moveToNext()) {
+                String[] row = new String[columns];
+                for (int column = 0; column < columns; column++) {
+                    row[column] = cursor.getString(column);
+                }
+                rows.add(Arrays.toString(row));
+            }
+            Collections.sort(rows);
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long dayStart(int day) {
+        return IsolatedScheduleProvider.DAY_START + day * 24 * HOUR;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
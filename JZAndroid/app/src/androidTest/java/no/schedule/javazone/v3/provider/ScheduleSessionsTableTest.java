@@ -0,0 +1,148 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Rooms;
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.Tables;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the trigger maintained {@link Tables#SCHEDULE_SESSIONS} always matches the join
+ * of the sessions with their rooms it replaces, under random edits of both.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScheduleSessionsTableTest {
+    private static final int STEPS = 2000;
+    private static final int SESSION_IDS = 60;
+    private static final int ROOM_IDS = 6;
+
+    private static final String COLUMNS = Sessions.SESSION_ID + "," + Sessions.SESSION_START
+            + "," + Sessions.SESSION_END + "," + Sessions.SESSION_TITLE + ","
+            + Sessions.SESSION_SPEAKER_NAMES + "," + Sessions.SESSION_TAGS + ","
+            + Sessions.SESSION_CONFERENCE + "," + Sessions.ROOM_ID + "," + Sessions.ROOM_NAME;
+
+    private Context mContext;
+    private ScheduleDatabase mHelper;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                "test.");
+        ScheduleDatabase.deleteDatabase(mContext);
+        mHelper = new ScheduleDatabase(mContext);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        ScheduleDatabase.deleteDatabase(mContext);
+    }
+
+    @Test
+    public void randomEdits_keepTableEqualToJoin() {
+        Random random = new Random(22);
+        for (int step = 0; step < STEPS; step++) {
+            String sessionId = "session-" + random.nextInt(SESSION_IDS);
+            String roomId = "room-" + random.nextInt(ROOM_IDS);
+            switch (random.nextInt(6)) {
+                case 0:
+                    // Insert or replace a room, as the rooms import does
+                    ContentValues room = new ContentValues();
+                    room.put(Rooms.ROOM_ID, roomId);
+                    room.put(Rooms.ROOM_NAME, "Room " + random.nextInt(3));
+                    mDb.insertOrThrow(Tables.ROOMS, null, room);
+                    break;
+                case 1:
+                    mDb.delete(Tables.ROOMS, Rooms.ROOM_ID + "=?", new String[]{roomId});
+                    break;
+                case 2:
+                case 3:
+                    // Insert or replace a session, as a full import does
+                    mDb.insertOrThrow(Tables.SESSIONS, null,
+                            sessionValues(sessionId, roomId, random));
+                    break;
+                case 4:
+                    // Update a session in place, as an incremental import does
+                    mDb.update(Tables.SESSIONS, sessionValues(sessionId, roomId, random),
+                            Sessions.SESSION_ID + "=?", new String[]{sessionId});
+                    break;
+                default:
+                    mDb.delete(Tables.SESSIONS, Sessions.SESSION_ID + "=?",
+                            new String[]{sessionId});
+                    break;
+            }
+            if (step % 50 == 49) {
+                assertTableMatchesJoin("step " + step);
+            }
+        }
+        assertTableMatchesJoin("end");
+    }
+
+    private void assertTableMatchesJoin(String message) {
+        List<String> table = readRows("SELECT " + COLUMNS + " FROM " + Tables.SCHEDULE_SESSIONS
+                + " ORDER BY " + Sessions.SESSION_ID);
+        List<String> join = readRows("SELECT s." + Sessions.SESSION_ID
+                + ",s." + Sessions.SESSION_START + ",s." + Sessions.SESSION_END
+                + ",s." + Sessions.SESSION_TITLE + ",s." + Sessions.SESSION_SPEAKER_NAMES
+                + ",s." + Sessions.SESSION_TAGS + ",s." + Sessions.SESSION_CONFERENCE
+                + ",s." + Sessions.ROOM_ID + ",r." + Rooms.ROOM_NAME
+                + " FROM " + Tables.SESSIONS + " s LEFT OUTER JOIN " + Tables.ROOMS + " r"
+                + " ON s." + Sessions.ROOM_ID + "=r." + Rooms.ROOM_ID
+                + " ORDER BY s." + Sessions.SESSION_ID);
+        assertEquals(message, join, table);
+    }
+
+    private List<String> readRows(String sql) {
+        List<String> rows = new ArrayList<>();
+        Cursor cursor = mDb.rawQuery(sql, null);
+        try {
+            while (cursor.moveToNext()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    row.append(cursor.isNull(i) ? "NULL" : cursor.getString(i)).append('|');
+                }
+                rows.add(row.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    private static ContentValues sessionValues(String sessionId, String roomId, Random random) {
+        long start = IsolatedScheduleProvider.DAY_START + random.nextInt(20) * 30 * 60000L;
+        ContentValues values = new ContentValues();
+        values.put(ScheduleContract.SyncColumns.UPDATED, 0L);
+        values.put(Sessions.SESSION_ID, sessionId);
+        values.put(Sessions.SESSION_START, start);
+        values.put(Sessions.SESSION_END, start + 40 * 60000L);
+        values.put(Sessions.SESSION_TITLE, "Title " + random.nextInt(100));
+        values.put(Sessions.SESSION_ABSTRACT, "Abstract " + random.nextInt(100));
+        values.put(Sessions.SESSION_SPEAKER_NAMES, "Speaker " + random.nextInt(10));
+        values.put(Sessions.SESSION_TAGS, random.nextBoolean() ? "Java" : "Java,Cloud");
+        values.put(Sessions.SESSION_CONFERENCE, "javazone_2018");
+        if (random.nextInt(10) > 0) {
+            values.put(Sessions.ROOM_ID, roomId);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,192 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.provider.ScheduleContract.Speakers;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.SessionsSearchColumns;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.SessionsSpeakers;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.Tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the trigger maintained {@link Tables#SESSIONS_SEARCH} index always matches a full
+ * rebuild with {@link ScheduleDatabase#updateSessionSearchIndex}, under random edits of the
+ * sessions, their speaker mappings and the speakers.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionsSearchIndexTest {
+    private static final int STEPS = 3000;
+    private static final int SESSION_IDS = 60;
+    private static final int SPEAKER_IDS = 30;
+
+    private Context mContext;
+    private ScheduleDatabase mHelper;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(),
+                "test.");
+        ScheduleDatabase.deleteDatabase(mContext);
+        mHelper = new ScheduleDatabase(mContext);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        ScheduleDatabase.deleteDatabase(mContext);
+    }
+
+    @Test
+    public void randomEdits_keepIndexEqualToRebuild() {
+        Random random = new Random(6);
+        int indexed = 0;
+        for (int step = 0; step < STEPS; step++) {
+            String sessionId = "session-" + random.nextInt(SESSION_IDS);
+            String speakerId = "speaker-" + random.nextInt(SPEAKER_IDS);
+            switch (random.nextInt(9)) {
+                case 0:
+                case 1:
+                    // Insert or replace a session, as a full import does
+                    mDb.insertOrThrow(Tables.SESSIONS, null, sessionValues(sessionId, random));
+                    break;
+                case 2:
+                    // Update a session in place, as an incremental import does
+                    mDb.update(Tables.SESSIONS, sessionValues(sessionId, random),
+                            Sessions.SESSION_ID + "=?", new String[]{sessionId});
+                    break;
+                case 3:
+                    mDb.delete(Tables.SESSIONS, Sessions.SESSION_ID + "=?",
+                            new String[]{sessionId});
+                    break;
+                case 4:
+                    ContentValues mapping = new ContentValues();
+                    mapping.put(SessionsSpeakers.SESSION_ID, sessionId);
+                    mapping.put(SessionsSpeakers.SPEAKER_ID, speakerId);
+                    mDb.insertOrThrow(Tables.SESSIONS_SPEAKERS, null, mapping);
+                    break;
+                case 5:
+                    mDb.delete(Tables.SESSIONS_SPEAKERS, SessionsSpeakers.SESSION_ID + "=? AND "
+                            + SessionsSpeakers.SPEAKER_ID + "=?",
+                            new String[]{sessionId, speakerId});
+                    break;
+                case 6:
+                    // Insert or replace a speaker, as the speakers import does
+                    mDb.insertOrThrow(Tables.SPEAKERS, null, speakerValues(speakerId, random));
+                    break;
+                case 7:
+                    ContentValues name = new ContentValues();
+                    name.put(Speakers.SPEAKER_NAME, speakerName(random));
+                    mDb.update(Tables.SPEAKERS, name, Speakers.SPEAKER_ID + "=?",
+                            new String[]{speakerId});
+                    break;
+                default:
+                    mDb.delete(Tables.SPEAKERS, Speakers.SPEAKER_ID + "=?",
+                            new String[]{speakerId});
+                    break;
+            }
+            if (step % 50 == 49) {
+                indexed = Math.max(indexed, assertIndexMatchesRebuild("step " + step));
+            }
+        }
+        assertIndexMatchesRebuild("end");
+        assertTrue(indexed > SESSION_IDS / 2);
+    }
+
+    /**
+     * @return the number of documents in the index
+     */
+    private int assertIndexMatchesRebuild(String message) {
+        List<String> index = readDocuments();
+        List<String> rebuilt;
+        // Rebuild in a transaction that is rolled back, so the edits continue on the index
+        // the triggers maintain
+        mDb.beginTransaction();
+        try {
+            ScheduleDatabase.updateSessionSearchIndex(mDb);
+            rebuilt = readDocuments();
+        } finally {
+            mDb.endTransaction();
+        }
+        assertEquals(message, rebuilt, index);
+        return index.size();
+    }
+
+    private List<String> readDocuments() {
+        List<String> documents = new ArrayList<>();
+        Cursor cursor = mDb.rawQuery("SELECT docid," + SessionsSearchColumns.SESSION_ID + ","
+                + SessionsSearchColumns.BODY + " FROM " + Tables.SESSIONS_SEARCH
+                + " ORDER BY docid", null);
+        try {
+            while (cursor.moveToNext()) {
+                documents.add(cursor.getLong(0) + "|" + cursor.getString(1) + "|"
+                        + normalizeBody(cursor.getString(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return documents;
+    }
+
+    /**
+     * Sorts the speaker names of a document body, as GROUP_CONCAT doesn't define their order.
+     */
+    private static String normalizeBody(String body) {
+        if (body == null) {
+            return "NULL";
+        }
+        String[] parts = body.split("; ", -1);
+        if (parts.length > 2) {
+            String[] names = parts[2].split(" ");
+            Arrays.sort(names);
+            parts[2] = Arrays.toString(names);
+        }
+        return Arrays.toString(parts);
+    }
+
+    private static ContentValues sessionValues(String sessionId, Random random) {
+        long start = IsolatedScheduleProvider.DAY_START + random.nextInt(20) * 30 * 60000L;
+        ContentValues values = new ContentValues();
+        values.put(ScheduleContract.SyncColumns.UPDATED, 0L);
+        values.put(Sessions.SESSION_ID, sessionId);
+        values.put(Sessions.SESSION_START, start);
+        values.put(Sessions.SESSION_END, start + 40 * 60000L);
+        values.put(Sessions.SESSION_TITLE, "Title" + random.nextInt(100));
+        if (random.nextInt(10) > 0) {
+            values.put(Sessions.SESSION_ABSTRACT, "Abstract" + random.nextInt(100));
+        }
+        return values;
+    }
+
+    private static ContentValues speakerValues(String speakerId, Random random) {
+        ContentValues values = new ContentValues();
+        values.put(ScheduleContract.SyncColumns.UPDATED, 0L);
+        values.put(Speakers.SPEAKER_ID, speakerId);
+        values.put(Speakers.SPEAKER_NAME, speakerName(random));
+        return values;
+    }
+
+    private static String speakerName(Random random) {
+        return "Speaker" + random.nextInt(50);
+    }
+}
@@ -0,0 +1,166 @@
+package no.schedule.javazone.v3.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+import no.schedule.javazone.v3.provider.ScheduleContract.Tags;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.SessionsTags;
+import no.schedule.javazone.v3.provider.ScheduleDatabase.Tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that filtering sessions by tags with per-session subqueries returns the same sessions
+ * as the {@code GROUP BY}/{@code HAVING} query over the sessions_tags join it replaced, for
+ * random tag filters.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TagsFilterTest {
+    private static final int FILTERS = 2000;
+    private static final int SESSIONS = 200;
+    private static final String[] CATEGORIES = {"TOPIC", "TYPE", "THEME"};
+    private static final int TAGS_PER_CATEGORY = 4;
+
+    private IsolatedScheduleProvider mProvider;
+    private ScheduleDatabase mHelper;
+    private List<String> mTagIds;
+
+    @Before
+    public void setUp() {
+        mProvider = new IsolatedScheduleProvider();
+        mHelper = new ScheduleDatabase(mProvider.context);
+        mTagIds = new ArrayList<>();
+
+        List<ContentValues> tags = new ArrayList<>();
+        for (String category : CATEGORIES) {
+            for (int i = 0; i < TAGS_PER_CATEGORY; i++) {
+                String tagId = category + "_" + i;
+                mTagIds.add(tagId);
+                ContentValues values = new ContentValues();
+                values.put(Tags.TAG_ID, tagId);
+                values.put(Tags.TAG_CATEGORY, category);
+                values.put(Tags.TAG_NAME, tagId);
+                values.put(Tags.TAG_ORDER_IN_CATEGORY, i);
+                values.put(Tags.TAG_COLOR, "#000000");
+                values.put(Tags.TAG_ABSTRACT, "");
+                tags.add(values);
+            }
+        }
+        mProvider.resolver.bulkInsert(Tags.CONTENT_URI,
+                tags.toArray(new ContentValues[tags.size()]));
+
+        ContentValues[] sessions = new ContentValues[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessions[i] = IsolatedScheduleProvider.sessionValues(i);
+        }
+        mProvider.resolver.bulkInsert(Sessions.CONTENT_URI, sessions);
+
+        // Up to five tags per session, some sessions without any
+        Random random = new Random(24);
+        for (int i = 0; i < SESSIONS; i++) {
+            String sessionId = IsolatedScheduleProvider.sessionId(i);
+            int count = random.nextInt(6);
+            ContentValues[] sessionTags = new ContentValues[count];
+            for (int t = 0; t < count; t++) {
+                sessionTags[t] = new ContentValues();
+                sessionTags[t].put(SessionsTags.SESSION_ID, sessionId);
+                sessionTags[t].put(SessionsTags.TAG_ID,
+                        mTagIds.get(random.nextInt(mTagIds.size())));
+            }
+            mProvider.resolver.bulkInsert(Sessions.buildTagsDirUri(sessionId), sessionTags);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mProvider.close();
+    }
+
+    @Test
+    public void randomFilters_matchGroupByQuery() {
+        Random random = new Random(240);
+        int nonEmpty = 0;
+        for (int filter = 0; filter < FILTERS; filter++) {
+            String[] requiredTags = new String[1 + random.nextInt(5)];
+            for (int t = 0; t < requiredTags.length; t++) {
+                // Now and then a tag no session has
+                requiredTags[t] = random.nextInt(20) == 0 ? "UNKNOWN_" + t
+                        : mTagIds.get(random.nextInt(mTagIds.size()));
+            }
+            int categories = random.nextInt(CATEGORIES.length + 2);
+            String message = Arrays.toString(requiredTags) + " in " + categories;
+
+            List<String> expected = groupByQuery(requiredTags, categories);
+            assertEquals(message, expected, query(Sessions.CONTENT_URI, requiredTags, categories));
+            assertEquals(message, expected,
+                    query(Sessions.CONTENT_SCHEDULE_URI, requiredTags, categories));
+            if (!expected.isEmpty()) {
+                nonEmpty++;
+            }
+        }
+        // The filters must not be so narrow that everything compares empty lists
+        assertTrue(nonEmpty > FILTERS / 4);
+    }
+
+    private List<String> query(Uri contentUri, String[] requiredTags, int categories) {
+        Uri uri = Sessions.buildCategoryTagFilterUri(contentUri, requiredTags, categories);
+        return sessionIds(mProvider.resolver.query(uri, new String[]{Sessions.SESSION_ID},
+                null, null, Sessions.SESSION_ID));
+    }
+
+    /**
+     * The tag filter as the provider applied it before, on the sessions_tags join grouped by
+     * session.
+     */
+    private List<String> groupByQuery(String[] requiredTags, int categories) {
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+        String sql = "SELECT " + Tables.SESSIONS + "." + Sessions.SESSION_ID
+                + " FROM " + Tables.SESSIONS
+                + " LEFT OUTER JOIN " + Tables.SESSIONS_TAGS + " ON " + Tables.SESSIONS + "."
+                + Sessions.SESSION_ID + "=" + Tables.SESSIONS_TAGS + "." + SessionsTags.SESSION_ID;
+        if (requiredTags.length == 1) {
+            sql += " WHERE " + Tags.TAG_ID + "=?"
+                    + " GROUP BY " + Tables.SESSIONS + "." + Sessions.SESSION_ID;
+        } else {
+            StringBuilder questionMarks = new StringBuilder("(?");
+            for (int i = 1; i < requiredTags.length; i++) {
+                questionMarks.append(",?");
+            }
+            questionMarks.append(")");
+            sql += " WHERE " + Tags.TAG_ID + " IN " + questionMarks
+                    + " GROUP BY " + Tables.SESSIONS + "." + Sessions.SESSION_ID
+                    + " HAVING COUNT(" + Tables.SESSIONS + "." + Sessions.SESSION_ID + ") >= "
+                    + categories;
+        }
+        sql += " ORDER BY " + Tables.SESSIONS + "." + Sessions.SESSION_ID;
+        return sessionIds(db.rawQuery(sql, requiredTags));
+    }
+
+    private static List<String> sessionIds(Cursor cursor) {
+        List<String> ids = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+}
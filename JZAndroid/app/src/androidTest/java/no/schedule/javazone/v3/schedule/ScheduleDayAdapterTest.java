@@ -0,0 +1,234 @@
+package no.schedule.javazone.v3.schedule;
+
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import no.schedule.javazone.v3.model.ScheduleItem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the change events {@link ScheduleDayAdapter#updateItems} dispatches after diffing on its
+ * background thread, and what the adapter serves while a diff is in flight.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScheduleDayAdapterTest {
+    private static final long SLOT = 60 * 60 * 1000L;
+    private static final long DAY_START = 1536732000000L;
+    private static final int SESSIONS = 6;
+    private static final int SESSIONS_PER_SLOT = 2;
+    // A time header before each slot
+    private static final int ROWS = SESSIONS + SESSIONS / SESSIONS_PER_SLOT;
+    private static final long TIMEOUT_MS = 5000;
+    // Long enough for a diff the adapter should have dropped to have been dispatched
+    private static final long SETTLE_MS = 200;
+
+    private ScheduleDayAdapter mAdapter;
+    private final List<String> mEvents = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter = new ScheduleDayAdapter(InstrumentationRegistry.getTargetContext(),
+                        new NoCallbacks(), true);
+                mAdapter.updateItems(sessions());
+                mAdapter.registerAdapterDataObserver(new RecordingObserver());
+            }
+        });
+        assertEquals(ROWS, itemCount());
+    }
+
+    @Test
+    public void starAndFeedbackChanges_rebindWithPayloadOnly() {
+        final List<ScheduleItem> items = sessions();
+        items.get(2).inSchedule = true;
+        items.get(5).hasGivenFeedback = true;
+        // A room change is a full rebind
+        items.get(0).room = "Room 9";
+        update(items);
+
+        awaitEvents(3);
+        List<String> events = sortedEvents();
+        // Rows: header, 0, 1, header, 2, 3, header, 4, 5
+        assertEquals(Arrays.asList(
+                "changed 1+1 null",
+                "changed 4+1 " + ScheduleDayAdapter.PAYLOAD_TAG_META,
+                "changed 8+1 " + ScheduleDayAdapter.PAYLOAD_TAG_META), events);
+    }
+
+    @Test
+    public void supersededUpdate_isDropped() {
+        final List<ScheduleItem> removed = sessions().subList(0, 2);
+        final List<ScheduleItem> starred = sessions();
+        starred.get(3).inSchedule = true;
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                // Both diffs run against the items shown now, only the newer one may apply
+                mAdapter.updateItems(removed);
+                mAdapter.updateItems(starred);
+            }
+        });
+
+        awaitEvents(1);
+        SystemClock.sleep(SETTLE_MS);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertEquals(Collections.singletonList(
+                "changed 5+1 " + ScheduleDayAdapter.PAYLOAD_TAG_META), sortedEvents());
+        assertEquals(ROWS, itemCount());
+    }
+
+    @Test
+    public void timeHeaderPosition_followsItemsShownDuringDiff() {
+        // Drop the first slot, moving the second slot's header to the top
+        final List<ScheduleItem> later = sessions().subList(SESSIONS_PER_SLOT, SESSIONS);
+        final long inSecondSlot = DAY_START + SLOT + 1;
+        final int[] during = new int[2];
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.updateItems(later);
+                // The result can't be dispatched before this returns, so the diff is in flight
+                during[0] = mAdapter.findTimeHeaderPositionForTime(inSecondSlot);
+                during[1] = mAdapter.getItemCount();
+            }
+        });
+        assertEquals(ROWS, during[1]);
+        assertEquals(SESSIONS_PER_SLOT + 1, during[0]);
+
+        awaitEvents(1);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        final int[] after = new int[2];
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                after[0] = mAdapter.findTimeHeaderPositionForTime(inSecondSlot);
+                after[1] = mAdapter.getItemCount();
+            }
+        });
+        assertEquals(ROWS - SESSIONS_PER_SLOT - 1, after[1]);
+        assertEquals(0, after[0]);
+    }
+
+    private void update(final List<ScheduleItem> items) {
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.updateItems(items);
+            }
+        });
+    }
+
+    private int itemCount() {
+        final int[] count = new int[1];
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                count[0] = mAdapter.getItemCount();
+            }
+        });
+        return count[0];
+    }
+
+    private void awaitEvents(int count) {
+        final long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while (mEvents.size() < count) {
+            assertTrue("Got " + mEvents, SystemClock.uptimeMillis() < deadline);
+            SystemClock.sleep(10);
+        }
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+
+    /**
+     * DiffUtil dispatches the changes of one diff from the end of the list.
+     */
+    private List<String> sortedEvents() {
+        List<String> events = new ArrayList<>(mEvents);
+        Collections.sort(events);
+        return events;
+    }
+
+    private static void runOnMain(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+
+    private static List<ScheduleItem> sessions() {
+        List<ScheduleItem> items = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            ScheduleItem item = new ScheduleItem();
+            item.type = ScheduleItem.SESSION;
+            item.sessionId = "session-" + i;
+            item.title = "Session " + i;
+            item.startTime = DAY_START + (i / SESSIONS_PER_SLOT) * SLOT;
+            item.endTime = item.startTime + 40 * 60000L;
+            item.room = "Room " + (i % SESSIONS_PER_SLOT);
+            items.add(item);
+        }
+        return items;
+    }
+
+    private class RecordingObserver extends RecyclerView.AdapterDataObserver {
+        @Override
+        public void onChanged() {
+            mEvents.add("changed all");
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            mEvents.add("changed " + positionStart + "+" + itemCount + " " + payload);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mEvents.add("inserted " + positionStart + "+" + itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mEvents.add("removed " + positionStart + "+" + itemCount);
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            mEvents.add("moved " + fromPosition + ">" + toPosition + "+" + itemCount);
+        }
+    }
+
+    private static class NoCallbacks implements SessionItemViewHolder.Callbacks {
+        @Override
+        public void onSessionClicked(String sessionId) {
+        }
+
+        @Override
+        public boolean bookmarkingEnabled() {
+            return true;
+        }
+
+        @Override
+        public void onBookmarkClicked(String sessionId, boolean isInSchedule) {
+        }
+
+        @Override
+        public boolean feedbackEnabled() {
+            return true;
+        }
+
+        @Override
+        public void onFeedbackClicked(String sessionId, String sessionTitle) {
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package no.schedule.javazone.v3.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.BuildConfig;
+import no.schedule.javazone.v3.provider.ScheduleContract;
+import no.schedule.javazone.v3.provider.ScheduleDatabase;
+import no.schedule.javazone.v3.provider.ScheduleProvider;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link ConferenceImporter} against a stand-in sessions server, importing into a
+ * {@link ScheduleProvider} with a database and preferences of its own. The server answers
+ * conditional requests for data the app has with 304 Not Modified, as the sessions API does.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConferenceImporterTest {
+    private static final String PREFIX = "test.";
+    private static final String SLUG = "javazone_2018";
+    private static final int SESSIONS = 20;
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Wed, 12 Sep 2018 08:00:00 GMT";
+    private static final long TIMEOUT_MS = 10000;
+    // Long enough for an import the importer should have dropped to have reached the server
+    private static final long SETTLE_MS = 500;
+
+    private static final String DOWNLOADING = "progress " + ConferenceImporter.STAGE_DOWNLOADING;
+    private static final String IMPORTING = "progress " + ConferenceImporter.STAGE_IMPORTING;
+
+    private Context mContext;
+    private ScheduleProvider mProvider;
+    private StandInServer mServer;
+    private MockWebServer mWebServer;
+    private ConferenceImporter mImporter;
+    private final List<String> mEvents = Collections.synchronizedList(new ArrayList<String>());
+    private final Semaphore mFinished = new Semaphore(0);
+
+    @Before
+    public void setUp() throws Exception {
+        Context renaming = new RenamingDelegatingContext(
+                InstrumentationRegistry.getTargetContext(), PREFIX);
+        ScheduleDatabase.deleteDatabase(renaming);
+        MockContentResolver resolver = new MockContentResolver();
+        mContext = new ImporterContext(resolver, renaming);
+        prefs().edit().clear().commit();
+        mProvider = new ScheduleProvider();
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ScheduleContract.CONTENT_AUTHORITY;
+        mProvider.attachInfo(mContext, info);
+        resolver.addProvider(ScheduleContract.CONTENT_AUTHORITY, mProvider);
+
+        mServer = new StandInServer();
+        mWebServer = new MockWebServer();
+        mWebServer.setDispatcher(mServer);
+        mWebServer.start();
+
+        SessionApiService service = new Retrofit.Builder()
+                .baseUrl(mWebServer.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(SessionApiService.class);
+        mImporter = new ConferenceImporter(mContext, service);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mImporter.addListener(new RecordingListener());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mImporter.cancel();
+        mServer.release.countDown();
+        mWebServer.shutdown();
+        mProvider.shutdown();
+        ScheduleDatabase.deleteDatabase(mContext);
+        prefs().edit().clear().commit();
+    }
+
+    @Test
+    public void import_reportsProgressAndResult() throws Exception {
+        mImporter.requestImport(SLUG, 0);
+
+        awaitFinished(1);
+        assertEquals(Arrays.asList(DOWNLOADING, IMPORTING,
+                finished(ConferenceImporter.RESULT_IMPORTED)), mEvents);
+        assertEquals(SESSIONS, countSessions());
+        assertFalse(mImporter.isImporting());
+    }
+
+    @Test
+    public void queuedRequests_runOneImport() throws Exception {
+        mImporter.requestImport(SLUG, 200);
+        mImporter.requestImport(SLUG, 1000);
+        mImporter.requestImport(SLUG, 100);
+        assertTrue(mImporter.isImporting());
+
+        awaitFinished(1);
+        SystemClock.sleep(SETTLE_MS);
+        assertEquals(1, mServer.requests.size());
+        assertEquals(Arrays.asList(DOWNLOADING, IMPORTING,
+                finished(ConferenceImporter.RESULT_IMPORTED)), mEvents);
+    }
+
+    @Test
+    public void requestDuringDownload_runsAnotherImportAfterIt() throws Exception {
+        mServer.holdFirstRequest();
+        mImporter.requestImport(SLUG, 0);
+        assertTrue(mServer.received.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        // The data may have changed after the server started answering, so neither joins
+        mImporter.requestImport(SLUG, 0);
+        mImporter.requestImport(SLUG, 0);
+        mServer.release.countDown();
+
+        awaitFinished(2);
+        SystemClock.sleep(SETTLE_MS);
+        assertEquals(2, mServer.requests.size());
+        // The second import asks for changes since the first one
+        assertEquals(ETAG, mServer.requests.get(1).getHeader("If-None-Match"));
+        assertEquals(Arrays.asList(DOWNLOADING, IMPORTING,
+                finished(ConferenceImporter.RESULT_IMPORTED), DOWNLOADING,
+                finished(ConferenceImporter.RESULT_NOT_MODIFIED)), mEvents);
+    }
+
+    @Test
+    public void cancelDuringDownload_importsNothing() throws Exception {
+        mServer.holdFirstRequest();
+        mImporter.requestImport(SLUG, 0);
+        assertTrue(mServer.received.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        // Dropped together with the import it would have followed
+        mImporter.requestImport(SLUG, 0);
+
+        mImporter.cancel();
+
+        awaitFinished(1);
+        SystemClock.sleep(SETTLE_MS);
+        assertEquals(Arrays.asList(DOWNLOADING,
+                finished(ConferenceImporter.RESULT_CANCELLED)), mEvents);
+        assertEquals(1, mServer.requests.size());
+        assertEquals(0, countSessions());
+        assertNull(new ConferenceDataHandler(mContext).getDataEtag());
+        assertFalse(isBootstrapDone());
+    }
+
+    @Test
+    public void cancelQueuedImport_dropsIt() throws Exception {
+        mImporter.requestImport(SLUG, 200);
+
+        mImporter.cancel();
+
+        assertFalse(mImporter.isImporting());
+        SystemClock.sleep(SETTLE_MS);
+        assertEquals(0, mServer.requests.size());
+        assertTrue(mEvents.isEmpty());
+    }
+
+    @Test
+    public void truncatedBody_failsWithoutMarkingBootstrapDone() throws Exception {
+        String json = sessionsJson(SESSIONS);
+        mServer.body = json.substring(0, json.length() / 2);
+        mImporter.requestImport(SLUG, 0);
+
+        awaitFinished(1);
+        assertEquals(finished(ConferenceImporter.RESULT_FAILED), mEvents.get(mEvents.size() - 1));
+        assertEquals(0, countSessions());
+        assertFalse(isBootstrapDone());
+    }
+
+    @Test
+    public void secondSync_sendsValidatorsOfFirstImport() throws Exception {
+        mImporter.requestImport(SLUG, 0);
+        awaitFinished(1);
+        mImporter.requestImport(SLUG, 0);
+        awaitFinished(1);
+
+        assertEquals(2, mServer.requests.size());
+        RecordedRequest first = mServer.requests.get(0);
+        assertNull(first.getHeader("If-None-Match"));
+        assertNotEquals(LAST_MODIFIED, first.getHeader("If-Modified-Since"));
+        RecordedRequest second = mServer.requests.get(1);
+        assertEquals(ETAG, second.getHeader("If-None-Match"));
+        assertEquals(LAST_MODIFIED, second.getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void notModified_skipsParsingAndImport() throws Exception {
+        mImporter.requestImport(SLUG, 0);
+        awaitFinished(1);
+        mEvents.clear();
+        // An import would bring the session back
+        mContext.getContentResolver().delete(
+                ScheduleContract.Sessions.buildSessionUri("session-00000"), null, null);
+
+        mImporter.requestImport(SLUG, 0);
+
+        awaitFinished(1);
+        assertEquals(Arrays.asList(DOWNLOADING,
+                finished(ConferenceImporter.RESULT_NOT_MODIFIED)), mEvents);
+        assertEquals(SESSIONS - 1, countSessions());
+    }
+
+    @Test
+    public void failedImport_keepsPreviousValidators() throws Exception {
+        // Nothing is remembered of a response whose data couldn't be imported
+        String json = sessionsJson(SESSIONS);
+        mServer.etag = "\"v0\"";
+        mServer.body = json.substring(0, json.length() / 2);
+        mImporter.requestImport(SLUG, 0);
+        awaitFinished(1);
+        ConferenceDataHandler handler = new ConferenceDataHandler(mContext);
+        assertNull(handler.getDataEtag());
+        assertNotEquals(LAST_MODIFIED, handler.getDataTimestamp());
+
+        mServer.etag = ETAG;
+        mServer.body = json;
+        mImporter.requestImport(SLUG, 0);
+        awaitFinished(1);
+        assertEquals(ETAG, handler.getDataEtag());
+        assertEquals(LAST_MODIFIED, handler.getDataTimestamp());
+
+        mServer.etag = "\"v2\"";
+        mServer.body = json.substring(0, json.length() / 2);
+        mImporter.requestImport(SLUG, 0);
+        awaitFinished(1);
+        assertEquals(finished(ConferenceImporter.RESULT_FAILED), mEvents.get(mEvents.size() - 1));
+        assertEquals(ETAG, handler.getDataEtag());
+        assertEquals(LAST_MODIFIED, handler.getDataTimestamp());
+        assertEquals(SESSIONS, countSessions());
+    }
+
+    private void awaitFinished(int count) throws InterruptedException {
+        assertTrue("Got " + mEvents,
+                mFinished.tryAcquire(count, TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    private int countSessions() {
+        Cursor cursor = mContext.getContentResolver().query(
+                ScheduleContract.Sessions.CONTENT_URI,
+                new String[]{ScheduleContract.Sessions.SESSION_ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private SharedPreferences prefs() {
+        return PreferenceManager.getDefaultSharedPreferences(mContext);
+    }
+
+    private boolean isBootstrapDone() {
+        return prefs().getBoolean(BuildConfig.PREF_DATA_BOOTSTRAP_DONE, false);
+    }
+
+    private static String finished(int result) {
+        return "finished " + result;
+    }
+
+    /**
+     * @return the sessions in the format of the sessions API, four per hour
+     */
+    private static String sessionsJson(int sessions) {
+        StringBuilder json = new StringBuilder("{\"sessions\":[");
+        for (int i = 0; i < sessions; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            final int hour = 9 + i / 4;
+            final int minute = (i % 4) * 15;
+            json.append(String.format(Locale.US, "{\"sessionId\":\"session-%05d\","
+                            + "\"title\":\"Session %d\",\"abstract\":\"Abstract %d\","
+                            + "\"format\":\"presentation\",\"room\":\"Room %d\","
+                            + "\"startTime\":\"2018-09-12T%02d:%02d\","
+                            + "\"endTime\":\"2018-09-12T%02d:%02d\","
+                            + "\"speakers\":[{\"name\":\"Speaker %d\",\"bio\":\"Bio %d\"}]}",
+                    i, i, i, i % 4, hour, minute, hour, minute + 10, i % 7, i % 7));
+        }
+        return json.append("]}").toString();
+    }
+
+    private class RecordingListener implements ConferenceImporter.ImportListener {
+        @Override
+        public void onImportProgress(int stage) {
+            mEvents.add("progress " + stage);
+        }
+
+        @Override
+        public void onImportFinished(int result) {
+            mEvents.add(finished(result));
+            mFinished.release();
+        }
+    }
+
+    /**
+     * Keeps the importer's preferences apart from the app's, as it does with its database.
+     */
+    private static class ImporterContext extends IsolatedContext {
+        ImporterContext(MockContentResolver resolver, Context targetContext) {
+            super(resolver, targetContext);
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            return super.getSharedPreferences(PREFIX + name, mode);
+        }
+    }
+
+    /**
+     * Serves the sessions with validators, answering 304 to a request that has them, and can
+     * hold its first response until released.
+     */
+    private static class StandInServer extends Dispatcher {
+        final List<RecordedRequest> requests =
+                Collections.synchronizedList(new ArrayList<RecordedRequest>());
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile String etag = ETAG;
+        volatile String body = sessionsJson(SESSIONS);
+        private volatile boolean mHoldFirstRequest;
+
+        void holdFirstRequest() {
+            mHoldFirstRequest = true;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            requests.add(request);
+            received.countDown();
+            if (mHoldFirstRequest && requests.size() == 1) {
+                release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            if (etag.equals(request.getHeader("If-None-Match"))) {
+                return new MockResponse().setResponseCode(304);
+            }
+            return new MockResponse()
+                    .setHeader("ETag", etag)
+                    .setHeader("Last-Modified", LAST_MODIFIED)
+                    .setBody(body);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package no.schedule.javazone.v3.util;
+
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.Html;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares parsing long session abstracts with heavy markup on every bind, as the views did,
+ * with looking them up in {@link HtmlRenderCache} once a loader has rendered them. The median
+ * timings are reported as instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HtmlRenderBenchmarkTest {
+    private static final int ABSTRACTS = 50;
+    private static final int PARAGRAPHS = 30;
+    private static final int RUNS = 9;
+
+    private String[] mAbstracts;
+    private String[] mEscapedAbstracts;
+
+    @Before
+    public void setUp() {
+        HtmlRenderCache.clear();
+        mAbstracts = new String[ABSTRACTS];
+        mEscapedAbstracts = new String[ABSTRACTS];
+        for (int i = 0; i < ABSTRACTS; i++) {
+            mAbstracts[i] = heavyAbstract(i);
+            // The API escapes the markup of the abstracts it serves
+            mEscapedAbstracts[i] = StringEscapeUtils.escapeHtml4(mAbstracts[i]);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        HtmlRenderCache.clear();
+    }
+
+    @Test
+    public void cachedRendering_isFasterThanParsing() {
+        // What the loaders leave in the cache is what parsing gives
+        for (int i = 0; i < ABSTRACTS; i++) {
+            assertEquals(parse(mAbstracts[i]).toString(),
+                    HtmlRenderCache.renderMaybeHtml(mAbstracts[i]).toString());
+            assertEquals(parseEscaped(mEscapedAbstracts[i]).toString(),
+                    HtmlRenderCache.renderEscapedHtml(mEscapedAbstracts[i]).toString());
+        }
+        // A lookup returns the cached text without rendering it again
+        assertSame(HtmlRenderCache.renderMaybeHtml(mAbstracts[0]),
+                HtmlRenderCache.renderMaybeHtml(mAbstracts[0]));
+
+        long[] parseNanos = new long[RUNS];
+        long[] parseEscapedNanos = new long[RUNS];
+        long[] cachedNanos = new long[RUNS];
+        long[] cachedEscapedNanos = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (String text : mAbstracts) {
+                parse(text);
+            }
+            parseNanos[run] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String text : mEscapedAbstracts) {
+                parseEscaped(text);
+            }
+            parseEscapedNanos[run] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String text : mAbstracts) {
+                HtmlRenderCache.renderMaybeHtml(text);
+            }
+            cachedNanos[run] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String text : mEscapedAbstracts) {
+                HtmlRenderCache.renderEscapedHtml(text);
+            }
+            cachedEscapedNanos[run] = System.nanoTime() - start;
+        }
+
+        Bundle results = new Bundle();
+        results.putInt("abstracts", ABSTRACTS);
+        results.putInt("abstract_chars", mEscapedAbstracts[0].length());
+        results.putLong("parse_us", median(parseNanos) / 1000);
+        results.putLong("parse_escaped_us", median(parseEscapedNanos) / 1000);
+        results.putLong("cached_us", median(cachedNanos) / 1000);
+        results.putLong("cached_escaped_us", median(cachedEscapedNanos) / 1000);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        assertTrue(results.toString(), median(cachedNanos) < median(parseNanos));
+        assertTrue(results.toString(), median(cachedEscapedNanos) < median(parseEscapedNanos));
+    }
+
+    private static CharSequence parse(String text) {
+        return Html.fromHtml(text);
+    }
+
+    private static CharSequence parseEscaped(String text) {
+        return Html.fromHtml(StringEscapeUtils.unescapeJava(StringEscapeUtils.unescapeHtml4(text)));
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * @return an abstract of {@link #PARAGRAPHS} paragraphs, each with links, emphasis, a list
+     *         and entities, unique per {@code index} so no two share a cache entry
+     */
+    private static String heavyAbstract(int index) {
+        StringBuilder html = new StringBuilder();
+        for (int p = 0; p < PARAGRAPHS; p++) {
+            html.append("<p>In part ").append(p).append(" of talk ").append(index)
+                    .append(" we look at <b>reactive streams</b> &amp; <i>back-pressure</i>, ")
+                    .append("see <a href=\"https://example.com/talks/").append(index).append('/')
+                    .append(p).append("\">the slides</a> &mdash; and <tt>Flow.Publisher</tt>.")
+                    .append("</p><ul><li><em>Why</em> it matters</li>")
+                    .append("<li><strong>How</strong> to &lt;measure&gt; it</li>")
+                    .append("<li>What &quot;fast enough&quot; means</li></ul>");
+        }
+        return html.toString();
+    }
+}
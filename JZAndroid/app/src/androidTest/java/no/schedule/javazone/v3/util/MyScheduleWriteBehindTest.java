@@ -0,0 +1,197 @@
+package no.schedule.javazone.v3.util;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.schedule.javazone.v3.provider.ScheduleContract;
+import no.schedule.javazone.v3.provider.ScheduleContract.MySchedule;
+import no.schedule.javazone.v3.provider.ScheduleDatabase;
+import no.schedule.javazone.v3.provider.ScheduleProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link MyScheduleWriteBehind} against a {@link ScheduleProvider} with a database of its
+ * own, checking the {@link MySchedule} rows it leaves behind.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MyScheduleWriteBehindTest {
+    private static final String ACCOUNT = "ann@example.com";
+    private static final int SESSIONS = 8;
+    private static final int TOGGLES = 400;
+    private static final long FLUSH_DELAY_MS = 5;
+    private static final long RETRY_DELAY_MS = 20;
+    private static final long TIMEOUT_MS = 10000;
+
+    private Context mContext;
+    private FailingProvider mProvider;
+    private MockContentResolver mResolver;
+    private MyScheduleWriteBehind mWriteBehind;
+
+    @Before
+    public void setUp() {
+        Context renaming = new RenamingDelegatingContext(
+                InstrumentationRegistry.getTargetContext(), "test.");
+        ScheduleDatabase.deleteDatabase(renaming);
+        mResolver = new MockContentResolver();
+        mContext = new IsolatedContext(mResolver, renaming);
+        mProvider = new FailingProvider();
+        ProviderInfo info = new ProviderInfo();
+        info.authority = ScheduleContract.CONTENT_AUTHORITY;
+        mProvider.attachInfo(mContext, info);
+        mResolver.addProvider(ScheduleContract.CONTENT_AUTHORITY, mProvider);
+        mWriteBehind = new MyScheduleWriteBehind(mResolver, FLUSH_DELAY_MS, RETRY_DELAY_MS);
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.shutdown();
+        ScheduleDatabase.deleteDatabase(mContext);
+    }
+
+    @Test
+    public void rapidToggles_leaveLastStateOfEachSession() {
+        // Toggled while earlier batches are being written
+        Random random = new Random(12);
+        Map<String, Boolean> expected = new HashMap<>();
+        for (int i = 0; i < TOGGLES; i++) {
+            String sessionId = sessionId(random.nextInt(SESSIONS));
+            boolean starred = random.nextBoolean();
+            mWriteBehind.setStarred(ACCOUNT, sessionId, starred, i);
+            expected.put(sessionId, starred);
+            assertEquals(starred, isStarred(sessionId));
+            if (i % 10 == 0) {
+                SystemClock.sleep(FLUSH_DELAY_MS);
+            }
+        }
+
+        awaitWritten(expected);
+        assertEquals(expected, readMySchedule());
+        assertTrue(mProvider.batches.get() > 1);
+    }
+
+    @Test
+    public void runtimeExceptionFromProvider_retriesTheToggles() {
+        mProvider.failures.set(1);
+        mWriteBehind.setStarred(ACCOUNT, sessionId(0), true, 1);
+        mWriteBehind.setStarred(ACCOUNT, sessionId(1), true, 2);
+
+        Map<String, Boolean> expected = new HashMap<>();
+        expected.put(sessionId(0), true);
+        expected.put(sessionId(1), true);
+        awaitWritten(expected);
+        assertEquals(0, mProvider.failures.get());
+        assertEquals(expected, readMySchedule());
+    }
+
+    @Test
+    public void toggleDuringFailedWrite_isNotOverwritten() {
+        mProvider.failures.set(1);
+        mProvider.stallMs = 100;
+        mWriteBehind.setStarred(ACCOUNT, sessionId(0), true, 1);
+        // Wait for the failing write to take the toggle, then toggle the session back
+        final long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while (mProvider.batches.get() == 0) {
+            assertTrue(SystemClock.uptimeMillis() < deadline);
+            SystemClock.sleep(1);
+        }
+        mWriteBehind.setStarred(ACCOUNT, sessionId(0), false, 2);
+
+        Map<String, Boolean> expected = new HashMap<>();
+        expected.put(sessionId(0), false);
+        awaitWritten(expected);
+        assertEquals(expected, readMySchedule());
+    }
+
+    /**
+     * Waits until nothing is pending anymore, checking what is reported meanwhile.
+     */
+    private void awaitWritten(Map<String, Boolean> expected) {
+        final long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        for (Map.Entry<String, Boolean> session : expected.entrySet()) {
+            Boolean pending;
+            while ((pending = mWriteBehind.getPendingStarred(ACCOUNT, session.getKey()))
+                    != null) {
+                assertEquals(session.getValue(), pending);
+                assertTrue("Still pending: " + session.getKey(),
+                        SystemClock.uptimeMillis() < deadline);
+                SystemClock.sleep(5);
+            }
+        }
+    }
+
+    private boolean isStarred(String sessionId) {
+        Boolean pending = mWriteBehind.getPendingStarred(ACCOUNT, sessionId);
+        if (pending != null) {
+            return pending;
+        }
+        Boolean stored = readMySchedule().get(sessionId);
+        return stored != null && stored;
+    }
+
+    private Map<String, Boolean> readMySchedule() {
+        Map<String, Boolean> rows = new HashMap<>();
+        Cursor cursor = mResolver.query(MySchedule.buildMyScheduleUri(ACCOUNT),
+                new String[]{MySchedule.SESSION_ID, MySchedule.MY_SCHEDULE_IN_SCHEDULE},
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                // One row per session
+                assertNull(rows.put(cursor.getString(0), cursor.getInt(1) != 0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    private static String sessionId(int index) {
+        return "session-" + index;
+    }
+
+    /**
+     * Fails the given number of batches the way a database error would, optionally after a
+     * delay.
+     */
+    private static class FailingProvider extends ScheduleProvider {
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger batches = new AtomicInteger();
+        volatile long stallMs;
+
+        @Override
+        public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+                throws OperationApplicationException {
+            batches.incrementAndGet();
+            if (failures.get() > 0) {
+                SystemClock.sleep(stallMs);
+                failures.decrementAndGet();
+                throw new SQLiteException("database is locked");
+            }
+            return super.applyBatch(operations);
+        }
+    }
+}
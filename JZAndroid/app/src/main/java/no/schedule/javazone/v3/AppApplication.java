@@ -26,8 +26,10 @@ import com.google.android.gms.security.ProviderInstaller;
 import com.google.firebase.remoteconfig.FirebaseRemoteConfig;
 import com.google.firebase.remoteconfig.FirebaseRemoteConfigSettings;
 
+import no.schedule.javazone.v3.feedback.FeedbackApiHelper;
 import no.schedule.javazone.v3.sync.SessionApiWebService;
 import no.schedule.javazone.v3.util.AnalyticsHelper;
+import no.schedule.javazone.v3.util.MyScheduleWriteBehind;
 import no.schedule.javazone.v3.util.SettingsUtils;
 import no.schedule.javazone.v3.util.TimeUtils;
 
@@ -96,6 +98,12 @@ public class AppApplication extends MultiDexApplication {
         if(!SettingsUtils.isMarkSessionLoadedDone(this)) {
             SessionApiWebService.getInstance(this).getAllSessions(BuildConfig.SLEEPING_PILL_SLUG_URL);
         }
+
+        // Write star toggles as soon as the app goes to the background
+        MyScheduleWriteBehind.getInstance(this).flushWhenAppStops(this);
+
+        // Send any session feedback that couldn't be delivered before the app was last killed
+        FeedbackApiHelper.getInstance(this).retryPendingFeedback();
     }
 
 }
@@ -15,17 +15,16 @@
  */
 package no.schedule.javazone.v3.fcm.command;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.content.Context;
-import android.content.Intent;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 
 import java.util.Random;
 
+import no.schedule.javazone.v3.BuildConfig;
 import no.schedule.javazone.v3.fcm.FcmCommand;
+import no.schedule.javazone.v3.sync.SessionApiWebService;
 
 import static no.schedule.javazone.v3.util.LogUtils.LOGI;
 import static no.schedule.javazone.v3.util.LogUtils.makeLogTag;
@@ -59,22 +58,12 @@ public class SyncCommand extends FcmCommand {
     }
 
     private void scheduleSync(Context context, int syncJitter) {
-        /*
         int jitterMillis = (int) (RANDOM.nextFloat() * syncJitter);
-        final String debugMessage = "Scheduling next sync for " + jitterMillis + "ms";
-        LOGI(TAG, debugMessage);
-
-        ((AlarmManager) context.getSystemService(Context.ALARM_SERVICE))
-                .set(
-                        AlarmManager.RTC,
-                        System.currentTimeMillis() + jitterMillis,
-                        PendingIntent.getBroadcast(
-                                context,
-                                0,
-                                new Intent(context, TriggerSyncReceiver.class),
-                                PendingIntent.FLAG_CANCEL_CURRENT));
-        */
-
+        LOGI(TAG, "Scheduling next sync for " + jitterMillis + "ms");
+        // Joins an import already queued, or runs after one already downloading, see
+        // ConferenceImporter
+        SessionApiWebService.getInstance(context)
+                .getAllSessions(BuildConfig.SLEEPING_PILL_SLUG_URL, jitterMillis);
     }
 
     class SyncData {
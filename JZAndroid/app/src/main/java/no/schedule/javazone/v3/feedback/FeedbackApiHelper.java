@@ -8,9 +8,6 @@ import no.schedule.javazone.v3.BuildConfig;
 import no.schedule.javazone.v3.io.model.Feedback;
 import no.schedule.javazone.v3.sync.FeedbackApiService;
 import no.schedule.javazone.v3.util.ToStringConverterFactory;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
@@ -23,10 +20,11 @@ public class FeedbackApiHelper
   private static FeedbackApiHelper INSTANCE;
   private static Context context;
   private FeedbackApiService service;
+  private final FeedbackOutbox outbox;
 
   public static FeedbackApiHelper getInstance(Context context) {
     if (INSTANCE == null) {
-      INSTANCE = new FeedbackApiHelper(context);
+      INSTANCE = new FeedbackApiHelper(context.getApplicationContext());
     }
     return INSTANCE;
   }
@@ -51,7 +49,7 @@ public class FeedbackApiHelper
 
     this.context = context;
     service = retrofit.create(FeedbackApiService.class);
-
+    outbox = new FeedbackOutbox(context, service);
   }
 
   public void setActivity(Context context) {
@@ -59,32 +57,27 @@ public class FeedbackApiHelper
   }
 
 
+  /**
+   * Queues the feedback in the {@link FeedbackOutbox}, which posts it as soon as the network
+   * allows. Submitting again for the same session replaces feedback that hasn't been sent yet.
+   * The user is only thanked once the feedback is safely stored.
+   */
   public void submitFeedbackToDevNull(String eventId, String sessionId, String voterId, Feedback feedbackBody) {
-    service.postSessionFeedback(eventId, sessionId, voterId, feedbackBody).
-        enqueue(retrofitCallBack);
-  }
-
-  public Callback retrofitCallBack = new Callback() {
-    @Override
-    public void onResponse(Call call, Response response) {
-
-      if(response.isSuccessful()) {
-        Toast.makeText(context,
-                "Thank you for the feedback!",
-                Toast.LENGTH_SHORT).show();
-      } else {
-        Toast.makeText(context,
-                "Vote failed! Please try again",
-                Toast.LENGTH_SHORT).show();
-      }
-
-    }
-
-    @Override
-    public void onFailure(Call call, Throwable t) {
+    if (outbox.enqueue(eventId, sessionId, voterId, feedbackBody)) {
+      Toast.makeText(context,
+              "Thank you for the feedback!",
+              Toast.LENGTH_SHORT).show();
+    } else {
       Toast.makeText(context,
-          "Vote failed please try again",
-          Toast.LENGTH_SHORT).show();
+              "Your feedback couldn't be saved, please try again",
+              Toast.LENGTH_LONG).show();
     }
-  };
+  }
+
+  /**
+   * Retries delivery of any feedback left over from earlier sessions of the app.
+   */
+  public void retryPendingFeedback() {
+    outbox.drainSoon();
+  }
 }
@@ -0,0 +1,254 @@
+package no.schedule.javazone.v3.feedback;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.io.model.Feedback;
+import no.schedule.javazone.v3.sync.FeedbackApiService;
+import no.schedule.javazone.v3.util.TimeUtils;
+import retrofit2.Response;
+
+import static no.schedule.javazone.v3.util.LogUtils.LOGD;
+import static no.schedule.javazone.v3.util.LogUtils.LOGW;
+import static no.schedule.javazone.v3.util.LogUtils.makeLogTag;
+
+/**
+ * Persistent queue of session feedback waiting to be posted to the feedback API.
+ * <p>
+ * {@link #enqueue} writes a submission to its own {@link SharedPreferences} file before it
+ * returns, keyed by event, session and voter, so a newer submission for the same session
+ * replaces one that hasn't been delivered yet. Each submission gets an idempotency key when it
+ * is queued, which is sent with every attempt to post it as a hint, so a server that honours it
+ * can store a retried submission once. The queue is drained on a single background thread;
+ * failed posts are retried with exponential backoff, and an entry is removed as soon as the
+ * server answers, accepting it or rejecting it for good. Anything still queued when the process
+ * dies is sent the next time {@link #drainSoon()} runs, which the app does at startup.
+ * <p>
+ * Entries are written by the caller of {@link #enqueue} and by the outbox thread. Both hold
+ * {@link #mLock}, and the outbox thread only changes an entry that still has the key it posted,
+ * so a submission queued while an older one is being posted is never lost.
+ */
+public class FeedbackOutbox {
+  private static final String TAG = makeLogTag(FeedbackOutbox.class);
+
+  private static final String PREFS_NAME = "feedback_outbox";
+
+  private static final long INITIAL_BACKOFF_MS = 30 * TimeUtils.SECOND;
+  private static final long MAX_BACKOFF_MS = TimeUtils.HOUR;
+
+  private final SharedPreferences mPrefs;
+  private final FeedbackApiService mService;
+  private final long mInitialBackoffMs;
+  private final Gson mGson = new Gson();
+  private final Random mRandom = new Random();
+  private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+
+  // Guards every write of mPrefs
+  private final Object mLock = new Object();
+
+  // Only accessed on the outbox thread
+  private ScheduledFuture<?> mScheduledDrain;
+
+  private final Runnable mDrainRunnable = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  public FeedbackOutbox(Context context, FeedbackApiService service) {
+    this(context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+        service, INITIAL_BACKOFF_MS);
+  }
+
+  @VisibleForTesting
+  FeedbackOutbox(SharedPreferences prefs, FeedbackApiService service, long initialBackoffMs) {
+    mPrefs = prefs;
+    mService = service;
+    mInitialBackoffMs = initialBackoffMs;
+  }
+
+  /**
+   * Queues {@code feedback} for delivery, replacing any undelivered feedback from the same
+   * voter for the same session, and starts draining the queue. The feedback is on disk when
+   * this returns true.
+   *
+   * @return false if the feedback couldn't be stored, in which case it won't be sent
+   */
+  public boolean enqueue(String eventId, String sessionId, String voterId, Feedback feedback) {
+    final PendingFeedback pending = new PendingFeedback(eventId, sessionId, voterId,
+        UUID.randomUUID().toString(), feedback);
+    final boolean stored;
+    synchronized (mLock) {
+      stored = mPrefs.edit().putString(pending.key(), mGson.toJson(pending)).commit();
+    }
+    if (!stored) {
+      LOGW(TAG, "Couldn't store feedback for " + sessionId);
+      return false;
+    }
+    drainSoon();
+    return true;
+  }
+
+  /**
+   * Tries to deliver everything in the queue that isn't waiting out a backoff.
+   */
+  public void drainSoon() {
+    mExecutor.execute(mDrainRunnable);
+  }
+
+  private void drain() {
+    if (mScheduledDrain != null) {
+      mScheduledDrain.cancel(false);
+      mScheduledDrain = null;
+    }
+
+    long nextAttemptAt = Long.MAX_VALUE;
+    for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+      final PendingFeedback pending = parse(entry.getValue());
+      if (pending == null || pending.idempotencyKey == null) {
+        LOGW(TAG, "Dropping unreadable feedback entry " + entry.getKey());
+        synchronized (mLock) {
+          if (entry.getValue().equals(mPrefs.getAll().get(entry.getKey()))) {
+            mPrefs.edit().remove(entry.getKey()).commit();
+          }
+        }
+        continue;
+      }
+
+      final long now = System.currentTimeMillis();
+      if (pending.nextAttemptAt > now) {
+        nextAttemptAt = Math.min(nextAttemptAt, pending.nextAttemptAt);
+        continue;
+      }
+
+      if (post(pending)) {
+        removeIfCurrent(pending);
+      } else {
+        pending.attempts++;
+        pending.nextAttemptAt = now + backoff(pending.attempts);
+        // an entry replaced while it was posted is left to the drain its enqueue started
+        if (updateIfCurrent(pending)) {
+          nextAttemptAt = Math.min(nextAttemptAt, pending.nextAttemptAt);
+        }
+      }
+    }
+
+    if (nextAttemptAt != Long.MAX_VALUE) {
+      final long delay = Math.max(0, nextAttemptAt - System.currentTimeMillis());
+      LOGD(TAG, "Retrying feedback delivery in " + delay + "ms");
+      mScheduledDrain = mExecutor.schedule(mDrainRunnable, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * @return true if the server either stored the entry or rejected it in a way retrying won't
+   *         fix
+   */
+  private boolean post(PendingFeedback pending) {
+    final Response<Object> response;
+    try {
+      response = mService.postSessionFeedback(pending.eventId, pending.sessionId,
+          pending.voterId, pending.idempotencyKey, pending.feedback).execute();
+    } catch (IOException | RuntimeException e) {
+      LOGD(TAG, "Feedback for " + pending.sessionId + " not delivered: " + e.getMessage());
+      return false;
+    }
+
+    final int code = response.code();
+    if (response.isSuccessful()) {
+      LOGD(TAG, "Delivered feedback for " + pending.sessionId);
+      return true;
+    } else if (code >= 400 && code < 500 && code != 408 && code != 429) {
+      LOGW(TAG, "Feedback for " + pending.sessionId + " rejected with " + code + ", dropping");
+      return true;
+    }
+    LOGD(TAG, "Feedback for " + pending.sessionId + " failed with " + code);
+    return false;
+  }
+
+  /**
+   * Exponential backoff with up to 50% jitter, so that devices that lost the venue network
+   * together don't all retry at the same moment.
+   */
+  private long backoff(int attempts) {
+    final long base = Math.min(MAX_BACKOFF_MS,
+        mInitialBackoffMs << Math.min(attempts - 1, 16));
+    return base + (long) (mRandom.nextDouble() * base / 2);
+  }
+
+  private void removeIfCurrent(PendingFeedback pending) {
+    synchronized (mLock) {
+      if (isCurrent(pending)) {
+        mPrefs.edit().remove(pending.key()).commit();
+      }
+    }
+  }
+
+  /**
+   * @return false if the entry was replaced by a newer submission, which is left as it is
+   */
+  private boolean updateIfCurrent(PendingFeedback pending) {
+    synchronized (mLock) {
+      if (!isCurrent(pending)) {
+        return false;
+      }
+      mPrefs.edit().putString(pending.key(), mGson.toJson(pending)).commit();
+      return true;
+    }
+  }
+
+  private boolean isCurrent(PendingFeedback pending) {
+    final PendingFeedback stored = parse(mPrefs.getString(pending.key(), null));
+    return stored != null && pending.idempotencyKey.equals(stored.idempotencyKey);
+  }
+
+  @Nullable
+  private PendingFeedback parse(Object value) {
+    if (!(value instanceof String)) {
+      return null;
+    }
+    try {
+      return mGson.fromJson((String) value, PendingFeedback.class);
+    } catch (JsonParseException e) {
+      return null;
+    }
+  }
+
+  private static class PendingFeedback {
+    String eventId;
+    String sessionId;
+    String voterId;
+    String idempotencyKey;
+    Feedback feedback;
+    int attempts;
+    long nextAttemptAt;
+
+    PendingFeedback(String eventId, String sessionId, String voterId, String idempotencyKey,
+        Feedback feedback) {
+      this.eventId = eventId;
+      this.sessionId = sessionId;
+      this.voterId = voterId;
+      this.idempotencyKey = idempotencyKey;
+      this.feedback = feedback;
+    }
+
+    String key() {
+      return eventId + "/" + sessionId + "/" + voterId;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package no.schedule.javazone.v3.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Works out which records of an import have to be written, by comparing their import hash codes
+ * with the ones stored by the previous import. Only ids and hash codes are kept, so records can
+ * be diffed as they are parsed and dropped right after.
+ * <p>
+ * When the import contains an id more than once, the first record is the one written. The
+ * handlers kept the last one while they held the whole import in memory, but a streamed record
+ * may be staged before its duplicate is parsed.
+ */
+public class ImportDiff {
+    private final Map<String, String> mStoredHashCodes;
+    private final HashSet<String> mSeenIds = new HashSet<>();
+    private int mChangedCount;
+
+    /**
+     * @param storedHashCodes the hash code stored for every record id, or null if nothing is
+     *                        stored yet
+     */
+    public ImportDiff(Map<String, String> storedHashCodes) {
+        mStoredHashCodes = storedHashCodes != null ? storedHashCodes
+                : Collections.<String, String>emptyMap();
+    }
+
+    /**
+     * Records that the import contains {@code id}. Only the first record with a given id counts,
+     * later ones are ignored, even if their hash code differs.
+     *
+     * @return true if the record is new or its hash code differs from the stored one, so it has
+     *         to be written
+     */
+    public boolean add(String id, String hashCode) {
+        if (!mSeenIds.add(id)) {
+            return false;
+        }
+        if (hashCode.equals(mStoredHashCodes.get(id))) {
+            return false;
+        }
+        ++mChangedCount;
+        return true;
+    }
+
+    /**
+     * @return whether a record with {@code id} is stored, so writing it is an update rather than
+     *         an insert
+     */
+    public boolean isStored(String id) {
+        return mStoredHashCodes.containsKey(id);
+    }
+
+    public boolean isIncremental() {
+        return !mStoredHashCodes.isEmpty();
+    }
+
+    /**
+     * @return the ids of the stored records the import didn't contain
+     */
+    public List<String> getRemovedIds() {
+        final ArrayList<String> removed = new ArrayList<>();
+        for (String id : mStoredHashCodes.keySet()) {
+            if (!mSeenIds.contains(id)) {
+                removed.add(id);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of records {@link #add} asked to write
+     */
+    public int getChangedCount() {
+        return mChangedCount;
+    }
+
+    /**
+     * @return the number of distinct records in the import
+     */
+    public int getCount() {
+        return mSeenIds.size();
+    }
+}
@@ -0,0 +1,79 @@
+package no.schedule.javazone.v3.io;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import no.schedule.javazone.v3.provider.ScheduleContract;
+import no.schedule.javazone.v3.provider.ScheduleContractHelper;
+
+/**
+ * Writes the records an import has to change into the
+ * {@link ScheduleContract.ImportStaging} tables as they are parsed, a chunk at a time, so
+ * neither the parsed records nor their content provider operations pile up in memory.
+ */
+public class ImportStagingWriter {
+    static final int CHUNK_SIZE = 200;
+
+    private final ContentResolver mResolver;
+    private final Map<Uri, ArrayList<ContentValues>> mPending = new LinkedHashMap<>();
+    private int mRowCount;
+
+    public ImportStagingWriter(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * Drops whatever an unfinished import left staged. Call before staging the first record.
+     */
+    public void clear() {
+        mPending.clear();
+        mResolver.delete(ScheduleContractHelper.setUriAsCalledFromServiceApi(
+                ScheduleContract.ImportStaging.CONTENT_URI), null, null);
+    }
+
+    /**
+     * Stages a row for one of the {@link ScheduleContract.ImportStaging} uris.
+     */
+    public void add(Uri uri, ContentValues values) {
+        ArrayList<ContentValues> pending = mPending.get(uri);
+        if (pending == null) {
+            pending = new ArrayList<>(CHUNK_SIZE);
+            mPending.put(uri, pending);
+        }
+        pending.add(values);
+        if (pending.size() >= CHUNK_SIZE) {
+            write(uri, pending);
+        }
+    }
+
+    /**
+     * Writes the rows that are still buffered. Call before committing the import.
+     */
+    public void flush() {
+        for (Map.Entry<Uri, ArrayList<ContentValues>> entry : mPending.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return the number of rows staged so far
+     */
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    private void write(Uri uri, ArrayList<ContentValues> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        mResolver.bulkInsert(ScheduleContractHelper.setUriAsCalledFromServiceApi(uri),
+                rows.toArray(new ContentValues[rows.size()]));
+        mRowCount += rows.size();
+        rows.clear();
+    }
+}
@@ -32,6 +32,7 @@ import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import no.schedule.javazone.v3.io.model.Session;
@@ -49,6 +50,14 @@ public abstract class JSONHandler {
 
     public abstract void process(@NonNull List<Session> sessions);
 
+    /**
+     * Processes a single session, as used by the streaming import path. Handlers that
+     * accumulate per-session state should override this to avoid the list allocation.
+     */
+    public void process(@NonNull Session session) {
+        process(Collections.singletonList(session));
+    }
+
     public abstract void process(@NonNull Gson gson, @NonNull JsonElement element);
 
     /**
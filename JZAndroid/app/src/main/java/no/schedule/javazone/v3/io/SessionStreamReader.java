@@ -0,0 +1,71 @@
+package no.schedule.javazone.v3.io;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import no.schedule.javazone.v3.io.model.Session;
+
+import static no.schedule.javazone.v3.util.LogUtils.LOGW;
+import static no.schedule.javazone.v3.util.LogUtils.makeLogTag;
+
+/**
+ * Reads the sessions of an {@code allSessions} response one at a time with a
+ * {@link JsonReader}, so neither the raw body nor the complete list of sessions has to be held
+ * in memory.
+ */
+public class SessionStreamReader {
+    private static final String TAG = makeLogTag(SessionStreamReader.class);
+
+    private static final String KEY_SESSIONS = "sessions";
+
+    public interface Listener {
+        /**
+         * Called for each session in the order of the response. The session isn't referenced
+         * by the reader afterwards.
+         */
+        void onSession(Session session);
+    }
+
+    private final Gson mGson;
+
+    public SessionStreamReader(Gson gson) {
+        mGson = gson;
+    }
+
+    /**
+     * Reads {@code body} to the end and closes it.
+     *
+     * @return the number of sessions read
+     * @throws IOException If there is a problem reading or parsing the data.
+     */
+    public int read(Reader body, Listener listener) throws IOException {
+        int sessionCount = 0;
+        JsonReader reader = new JsonReader(body);
+        try {
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String key = reader.nextName();
+                if (KEY_SESSIONS.equals(key)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        Session session = mGson.fromJson(reader, Session.class);
+                        listener.onSession(session);
+                        ++sessionCount;
+                    }
+                    reader.endArray();
+                } else {
+                    LOGW(TAG, "Skipping unknown key in sessions json: " + key);
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+        return sessionCount;
+    }
+}
@@ -45,8 +45,19 @@ public class RoomsHandler extends JSONHandler {
     Uri uri = ScheduleContractHelper.setUriAsCalledFromServiceApi(
         ScheduleContract.Rooms.CONTENT_URI);
 
-    // The list of rooms is not large, so for simplicity we delete all of them and repopulate
-    list.add(ContentProviderOperation.newDelete(uri).build());
+    // The list of rooms is not large, so for simplicity we repopulate all of them. Only the
+    // rooms that are gone are deleted, as deleting a room clears its name from the schedule.
+    ContentProviderOperation.Builder delete = ContentProviderOperation.newDelete(uri);
+    if (!mRooms.isEmpty()) {
+      StringBuilder selection = new StringBuilder(ScheduleContract.Rooms.ROOM_ID)
+          .append(" NOT IN (?");
+      for (int i = 1; i < mRooms.size(); i++) {
+        selection.append(",?");
+      }
+      delete.withSelection(selection.append(')').toString(),
+          mRooms.keySet().toArray(new String[mRooms.size()]));
+    }
+    list.add(delete.build());
     for (Room room : mRooms.values()) {
       ContentProviderOperation.Builder builder = ContentProviderOperation.newInsert(uri);
       builder.withValue(ScheduleContract.Rooms.ROOM_ID, room.id);
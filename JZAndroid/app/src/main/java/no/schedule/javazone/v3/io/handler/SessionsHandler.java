@@ -1,6 +1,7 @@
 package no.schedule.javazone.v3.io.handler;
 
 import android.content.ContentProviderOperation;
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -17,24 +18,27 @@ import java.util.HashSet;
 import java.util.List;
 
 import no.schedule.javazone.v3.R;
+import no.schedule.javazone.v3.io.ImportDiff;
+import no.schedule.javazone.v3.io.ImportStagingWriter;
 import no.schedule.javazone.v3.io.JSONHandler;
 import no.schedule.javazone.v3.io.model.Session;
 import no.schedule.javazone.v3.io.model.Speaker;
-import no.schedule.javazone.v3.io.model.Tag;
 import no.schedule.javazone.v3.provider.ScheduleContract;
 import no.schedule.javazone.v3.provider.ScheduleContractHelper;
 import no.schedule.javazone.v3.provider.ScheduleDatabase;
 import no.schedule.javazone.v3.util.TimeUtils;
 
 import static no.schedule.javazone.v3.util.LogUtils.LOGD;
-import static no.schedule.javazone.v3.util.LogUtils.LOGE;
 import static no.schedule.javazone.v3.util.LogUtils.LOGW;
 import static no.schedule.javazone.v3.util.LogUtils.makeLogTag;
 
 public class SessionsHandler extends JSONHandler {
   private static final String TAG = makeLogTag(SessionsHandler.class);
-  private HashMap<String, Session> mSessions = new HashMap<>();
-  private HashMap<String, Speaker> mSpeakerMap = null;
+
+  // Only the ids and hash codes of the sessions are kept; the ones that changed go to the
+  // staging tables as they are processed. A session id that comes twice keeps its first record.
+  private ImportDiff mDiff;
+  private ImportStagingWriter mStagingWriter;
 
   private int mDefaultSessionColor;
 
@@ -43,58 +47,39 @@ public class SessionsHandler extends JSONHandler {
     mDefaultSessionColor = ContextCompat.getColor(mContext, R.color.default_session_color);
   }
 
+  /**
+   * Sets where the sessions that have to be written, and their speaker and tag mappings, are
+   * staged. Must be called before the first session is processed.
+   */
+  public void setStagingWriter(ImportStagingWriter stagingWriter) {
+    mStagingWriter = stagingWriter;
+  }
+
+  /**
+   * Adds the deletes of the stored sessions the import didn't contain. The changed sessions
+   * were staged while processing and are written by the import's commit.
+   */
   @Override
   public void makeContentProviderOperations(ArrayList<ContentProviderOperation> list) {
-    Uri uri = ScheduleContractHelper.setUriAsCalledFromServiceApi(
-        ScheduleContract.Sessions.CONTENT_URI);
-    // build a map of session to session import hashcode so we know what to update,
-    // what to insert, and what to delete
-    HashMap<String, String> sessionHashCodes = loadSessionHashCodes();
-    boolean incrementalUpdate = (sessionHashCodes != null) && (sessionHashCodes.size() > 0);
-
-    // set of sessions that we want to keep after the sync
-    HashSet<String> sessionsToKeep = new HashSet<>();
-
-    if (incrementalUpdate) {
-      LOGD(TAG, "Doing incremental update for sessions.");
-    } else {
-      LOGD(TAG, "Doing full (non-incremental) update for sessions.");
-      list.add(ContentProviderOperation.newDelete(uri).build());
+    final ImportDiff diff = getDiff();
+    final List<String> removedIds = diff.getRemovedIds();
+    for (String sessionId : removedIds) {
+      buildDeleteOperation(sessionId, list);
     }
 
-    int updatedSessions = 0;
-    for (Session session : mSessions.values()) {
-
-      // compute the incoming session's hashcode to figure out if we need to update
-      String hashCode = session.getImportHashCode();
-      sessionsToKeep.add(session.id);
-
-      // add session, if necessary
-      if (!incrementalUpdate || !sessionHashCodes.containsKey(session.id) ||
-          !sessionHashCodes.get(session.id).equals(hashCode)) {
-        ++updatedSessions;
-        boolean isNew = !incrementalUpdate || !sessionHashCodes.containsKey(session.id);
-        buildSession(isNew, session, list);
+    LOGD(TAG, "Sessions: " + (diff.isIncremental() ? "INCREMENTAL" : "FULL") + " update. " +
+        diff.getChangedCount() + " staged, " + removedIds.size() + " to delete. New total: " +
+        diff.getCount());
+  }
 
-        // add relationships to speakers and track
-        buildSessionSpeakerMapping(session, list);
-        buildTagsMapping(session, list);
-      }
+  /**
+   * Returns the diff against the stored sessions, loading their hash codes on first use.
+   */
+  private ImportDiff getDiff() {
+    if (mDiff == null) {
+      mDiff = new ImportDiff(loadSessionHashCodes());
     }
-
-    int deletedSessions = 0;
-    if (incrementalUpdate) {
-      for (String sessionId : sessionHashCodes.keySet()) {
-        if (!sessionsToKeep.contains(sessionId)) {
-          buildDeleteOperation(sessionId, list);
-          ++deletedSessions;
-        }
-      }
-    }
-
-    LOGD(TAG, "Sessions: " + (incrementalUpdate ? "INCREMENTAL" : "FULL") + " update. " +
-        updatedSessions + " to update, " + deletedSessions + " to delete. New total: " +
-        mSessions.size());
+    return mDiff;
   }
 
   private void buildDeleteOperation(String sessionId, List<ContentProviderOperation> list) {
@@ -134,105 +119,67 @@ public class SessionsHandler extends JSONHandler {
 
   StringBuilder mStringBuilder = new StringBuilder();
 
-  private void buildSession(boolean isInsert,
-                            Session session, ArrayList<ContentProviderOperation> list) {
-    ContentProviderOperation.Builder builder;
-    Uri allSessionsUri = ScheduleContractHelper
-        .setUriAsCalledFromServiceApi(ScheduleContract.Sessions.CONTENT_URI);
-    Uri thisSessionUri = ScheduleContractHelper
-        .setUriAsCalledFromServiceApi(ScheduleContract.Sessions.buildSessionUri(
-            session.id));
-
-    if (isInsert) {
-      builder = ContentProviderOperation.newInsert(allSessionsUri);
-    } else {
-      builder = ContentProviderOperation.newUpdate(thisSessionUri);
-    }
-
-    String speakerNames = "";
-    if (mSpeakerMap != null) {
-      // build human-readable list of speakers
-      mStringBuilder.setLength(0);
-      if (session.speakers != null) {
-        for (int i = 0; i < session.speakers.length; ++i) {
-          if (mSpeakerMap.containsKey(session.speakers[i].getImportHashcode())) {
-            mStringBuilder
-                .append(i == 0 ? "" :
-                    i == session.speakers.length - 1 ? " and " : ", ")
-                .append(mSpeakerMap.get(session.speakers[i].getImportHashcode()).name.trim());
-          } else {
-            LOGW(TAG, "Unknown speaker ID " + session.speakers[i] + " in session " +
-                session.id);
-          }
-        }
+  private void stageSession(Session session, String importHashCode) {
+    // build human-readable list of speakers
+    mStringBuilder.setLength(0);
+    if (session.speakers != null) {
+      for (int i = 0; i < session.speakers.length; ++i) {
+        final String name = session.speakers[i].name;
+        mStringBuilder
+            .append(i == 0 ? "" :
+                i == session.speakers.length - 1 ? " and " : ", ")
+            .append(name == null ? "" : name.trim());
       }
-      speakerNames = mStringBuilder.toString();
-    } else {
-      LOGE(TAG, "Can't build speaker names -- speaker map is null.");
     }
 
-    builder.withValue(ScheduleContract.SyncColumns.UPDATED, System.currentTimeMillis())
-        .withValue(ScheduleContract.Sessions.SESSION_ID, session.id)
-        .withValue(ScheduleContract.Sessions.SESSION_LEVEL, session.level)
-        .withValue(ScheduleContract.Sessions.SESSION_TITLE, session.title)
-        .withValue(ScheduleContract.Sessions.SESSION_ABSTRACT, session.description)
-        .withValue(ScheduleContract.Sessions.SESSION_INTENDED_AUDIENCE, session.intendedAudience)
-        .withValue(ScheduleContract.Sessions.SESSION_START, TimeUtils.timestampToMillis(session.startTime, 0))
-        .withValue(ScheduleContract.Sessions.SESSION_END, TimeUtils.timestampToMillis(session.endTime, 0))
-        .withValue(ScheduleContract.Sessions.SESSION_TAGS, session.makeTagsList())
-        // Note: we store this comma-separated list of tags IN ADDITION
-        // to storing the tags in proper relational format (in the sessions_tags
-        // relationship table). This is because when querying for sessions,
-        // we don't want to incur the performance penalty of having to do a
-        // subquery for every record to figure out the list of tags of each session.
-        .withValue(ScheduleContract.Sessions.SESSION_SPEAKER_NAMES, speakerNames)
-        .withValue(ScheduleContract.Sessions.SESSION_VIMEO_URL, session.video)
-        .withValue(ScheduleContract.Sessions.ROOM_ID, session.room)
-        .withValue(ScheduleContract.Sessions.SESSION_CONFERENCE, session.conferenceId)
-        .withValue(ScheduleContract.Sessions.SESSION_IMPORT_HASHCODE,
-            session.getImportHashCode());
-    list.add(builder.build());
-  }
-
-  private void buildSessionSpeakerMapping(Session session,
-                                          ArrayList<ContentProviderOperation> list) {
-    final Uri uri = ScheduleContractHelper.setUriAsCalledFromServiceApi(
-        ScheduleContract.Sessions.buildSpeakersDirUri(session.id));
-
-    // delete any existing relationship between this session and speakers
-    list.add(ContentProviderOperation.newDelete(uri).build());
-
-    // add relationship records to indicate the speakers for this session
+    final ContentValues values = new ContentValues();
+    values.put(ScheduleContract.Sessions.SESSION_ID, session.id);
+    values.put(ScheduleContract.Sessions.SESSION_LEVEL, session.level);
+    values.put(ScheduleContract.Sessions.SESSION_TITLE, session.title);
+    values.put(ScheduleContract.Sessions.SESSION_ABSTRACT, session.description);
+    values.put(ScheduleContract.Sessions.SESSION_INTENDED_AUDIENCE, session.intendedAudience);
+    values.put(ScheduleContract.Sessions.SESSION_START, TimeUtils.timestampToMillis(session.startTime, 0));
+    values.put(ScheduleContract.Sessions.SESSION_END, TimeUtils.timestampToMillis(session.endTime, 0));
+    // Note: we store this comma-separated list of tags IN ADDITION
+    // to storing the tags in proper relational format (in the sessions_tags
+    // relationship table). This is because when querying for sessions,
+    // we don't want to incur the performance penalty of having to do a
+    // subquery for every record to figure out the list of tags of each session.
+    values.put(ScheduleContract.Sessions.SESSION_TAGS, session.makeTagsList());
+    values.put(ScheduleContract.Sessions.SESSION_SPEAKER_NAMES, mStringBuilder.toString());
+    values.put(ScheduleContract.Sessions.SESSION_VIMEO_URL, session.video);
+    values.put(ScheduleContract.Sessions.ROOM_ID, session.room);
+    values.put(ScheduleContract.Sessions.SESSION_CONFERENCE, session.conferenceId);
+    values.put(ScheduleContract.Sessions.SESSION_IMPORT_HASHCODE, importHashCode);
+    mStagingWriter.add(ScheduleContract.ImportStaging.SESSIONS_URI, values);
+
+    // stage the complete set of speakers and tags; the commit only changes the mappings that
+    // differ from the stored ones
     if (session.speakers != null) {
-      for (Speaker speakers : session.speakers) {
-        list.add(ContentProviderOperation.newInsert(uri)
-            .withValue(ScheduleDatabase.SessionsSpeakers.SESSION_ID, session.id)
-            .withValue(ScheduleDatabase.SessionsSpeakers.SPEAKER_ID, speakers.id)
-            .build());
+      final HashSet<String> speakerIds = new HashSet<>();
+      for (Speaker speaker : session.speakers) {
+        if (speakerIds.add(speaker.id)) {
+          stageMapping(ScheduleContract.ImportStaging.SESSIONS_SPEAKERS_URI, session.id,
+              ScheduleDatabase.SessionsSpeakers.SPEAKER_ID, speaker.id);
+        }
       }
     }
-  }
-
-  private void buildTagsMapping(Session session, ArrayList<ContentProviderOperation> list) {
-    final Uri uri = ScheduleContractHelper.setUriAsCalledFromServiceApi(
-        ScheduleContract.Sessions.buildTagsDirUri(session.id));
-
-    // delete any existing mappings
-    list.add(ContentProviderOperation.newDelete(uri).build());
-
-    // add a mapping (a session+tag tuple) for each tag in the session
     if (session.tags != null) {
-      for (String tagName : session.tags) {
-        list.add(ContentProviderOperation.newInsert(uri)
-            .withValue(ScheduleDatabase.SessionsTags.SESSION_ID, session.id)
-            .withValue(ScheduleDatabase.SessionsTags.TAG_ID, tagName)
-            .build());
+      final HashSet<String> tagIds = new HashSet<>();
+      for (String tag : session.tags) {
+        if (tagIds.add(tag)) {
+          stageMapping(ScheduleContract.ImportStaging.SESSIONS_TAGS_URI, session.id,
+              ScheduleDatabase.SessionsTags.TAG_ID, tag);
+        }
       }
     }
   }
 
-  public void setSpeakerMap(HashMap<String, Speaker> speakerMap) {
-    mSpeakerMap = speakerMap;
+  private void stageMapping(Uri uri, String sessionId, String idColumn, String id) {
+    final ContentValues values = new ContentValues(2);
+    values.put(ScheduleDatabase.SessionsSpeakers.SESSION_ID, sessionId);
+    values.put(idColumn, id);
+    mStagingWriter.add(uri, values);
   }
 
   private interface SessionHashcodeQuery {
@@ -249,7 +196,15 @@ public class SessionsHandler extends JSONHandler {
   @Override
   public void process(@NonNull List<Session> sessions) {
     for(Session session: sessions) {
-      mSessions.put(session.id, session);
+      process(session);
+    }
+  }
+
+  @Override
+  public void process(@NonNull Session session) {
+    final String hashCode = session.getImportHashCode();
+    if (getDiff().add(session.id, hashCode)) {
+      stageSession(session, hashCode);
     }
   }
 
@@ -257,7 +212,7 @@ public class SessionsHandler extends JSONHandler {
   @Override
   public void process(@NonNull Gson gson, @NonNull JsonElement element) {
     for (Session session : gson.fromJson(element, Session[].class)) {
-      mSessions.put(session.id, session);
+      process(session);
     }
   }
 }
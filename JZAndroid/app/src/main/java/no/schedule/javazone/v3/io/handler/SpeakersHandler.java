@@ -1,6 +1,7 @@
 package no.schedule.javazone.v3.io.handler;
 
 import android.content.ContentProviderOperation;
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -12,9 +13,10 @@ import com.google.gson.JsonElement;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
+import no.schedule.javazone.v3.io.ImportDiff;
+import no.schedule.javazone.v3.io.ImportStagingWriter;
 import no.schedule.javazone.v3.io.JSONHandler;
 import no.schedule.javazone.v3.io.model.Session;
 import no.schedule.javazone.v3.io.model.Speaker;
@@ -27,97 +29,92 @@ import static no.schedule.javazone.v3.util.LogUtils.makeLogTag;
 
 public class SpeakersHandler extends JSONHandler {
     private static final String TAG = makeLogTag(SpeakersHandler.class);
-    private HashMap<String, Speaker> mSpeakers = new HashMap<>();
+
+    // Only the ids and hash codes of the speakers are kept; the ones that changed go to the
+    // staging tables as they are processed. A speaker id that comes twice keeps its first record.
+    private ImportDiff mDiff;
+    private ImportStagingWriter mStagingWriter;
 
     public SpeakersHandler(Context context) {
         super(context);
     }
 
+    /**
+     * Sets where the speakers that have to be written are staged. Must be called before the
+     * first speaker is processed.
+     */
+    public void setStagingWriter(ImportStagingWriter stagingWriter) {
+        mStagingWriter = stagingWriter;
+    }
+
     @Override
     public void process(@NonNull List<Session> sessions) {
         for (Session session : sessions) {
-            for (Speaker speaker : session.speakers) {
-                speaker.id = speaker.getImportHashcode();
-                mSpeakers.put(speaker.getImportHashcode(), speaker);
-            }
+            process(session);
         }
-
     }
 
     @Override
-    public void process(@NonNull Gson gson, @NonNull JsonElement element) {
-        for (Speaker speaker : gson.fromJson(element, Speaker[].class)) {
-            mSpeakers.put(speaker.id, speaker);
+    public void process(@NonNull Session session) {
+        if (session.speakers == null) {
+            return;
+        }
+        for (Speaker speaker : session.speakers) {
+            speaker.id = speaker.getImportHashcode();
+            process(speaker);
         }
     }
 
     @Override
-    public void makeContentProviderOperations(ArrayList<ContentProviderOperation> list) {
-        Uri uri = ScheduleContractHelper.setUriAsCalledFromServiceApi(
-                ScheduleContract.Speakers.CONTENT_URI);
-        HashMap<String, String> speakerHashcodes = loadSpeakerHashcodes();
-        HashSet<String> speakersToKeep = new HashSet<>();
-        boolean isIncrementalUpdate = speakerHashcodes != null && speakerHashcodes.size() > 0;
-
-        if (isIncrementalUpdate) {
-            LOGD(TAG, "Doing incremental update for speakers.");
-        } else {
-            LOGD(TAG, "Doing FULL (non incremental) update for speakers.");
-            list.add(ContentProviderOperation.newDelete(uri).build());
+    public void process(@NonNull Gson gson, @NonNull JsonElement element) {
+        for (Speaker speaker : gson.fromJson(element, Speaker[].class)) {
+            process(speaker);
         }
+    }
 
-        int updatedSpeakers = 0;
-        for (Speaker speaker : mSpeakers.values()) {
-            String hashCode = speaker.getImportHashcode();
-            speakersToKeep.add(speaker.id);
-
-            // add speaker, if necessary
-            if (!isIncrementalUpdate || !speakerHashcodes.containsKey(speaker.id) ||
-                    !speakerHashcodes.get(speaker.id).equals(hashCode)) {
-                ++updatedSpeakers;
-                boolean isNew = !isIncrementalUpdate || !speakerHashcodes.containsKey(speaker.id);
-                buildSpeaker(isNew, speaker, list);
-            }
+    private void process(Speaker speaker) {
+        final String hashCode = speaker.getImportHashcode();
+        if (getDiff().add(speaker.id, hashCode)) {
+            stageSpeaker(speaker, hashCode);
         }
+    }
 
-        int deletedSpeakers = 0;
-        if (isIncrementalUpdate) {
-            for (String speakerId : speakerHashcodes.keySet()) {
-                if (!speakersToKeep.contains(speakerId)) {
-                    buildDeleteOperation(speakerId, list);
-                    ++deletedSpeakers;
-                }
-            }
+    /**
+     * Adds the deletes of the stored speakers the import didn't contain. The changed speakers
+     * were staged while processing and are written by the import's commit.
+     */
+    @Override
+    public void makeContentProviderOperations(ArrayList<ContentProviderOperation> list) {
+        final ImportDiff diff = getDiff();
+        final List<String> removedIds = diff.getRemovedIds();
+        for (String speakerId : removedIds) {
+            buildDeleteOperation(speakerId, list);
         }
 
-        LOGD(TAG, "Speakers: " + (isIncrementalUpdate ? "INCREMENTAL" : "FULL") + " update. " +
-                updatedSpeakers + " to update, " + deletedSpeakers + " to delete. New total: " +
-                mSpeakers.size());
+        LOGD(TAG, "Speakers: " + (diff.isIncremental() ? "INCREMENTAL" : "FULL") + " update. " +
+                diff.getChangedCount() + " staged, " + removedIds.size() +
+                " to delete. New total: " + diff.getCount());
     }
 
-    private void buildSpeaker(boolean isInsert, Speaker speaker,
-                              ArrayList<ContentProviderOperation> list) {
-        Uri allSpeakersUri = ScheduleContractHelper.setUriAsCalledFromServiceApi(
-                ScheduleContract.Speakers.CONTENT_URI);
-        Uri thisSpeakerUri = ScheduleContractHelper.setUriAsCalledFromServiceApi(
-                ScheduleContract.Speakers.buildSpeakerUri(speaker.id));
-
-        ContentProviderOperation.Builder builder;
-        if (isInsert) {
-            builder = ContentProviderOperation.newInsert(allSpeakersUri);
-        } else {
-            builder = ContentProviderOperation.newUpdate(thisSpeakerUri);
+    /**
+     * Returns the diff against the stored speakers, loading their hash codes on first use.
+     */
+    private ImportDiff getDiff() {
+        if (mDiff == null) {
+            mDiff = new ImportDiff(loadSpeakerHashcodes());
         }
+        return mDiff;
+    }
 
-        list.add(builder.withValue(ScheduleContract.SyncColumns.UPDATED, System.currentTimeMillis())
-                .withValue(ScheduleContract.Speakers.SPEAKER_ID, speaker.id)
-                .withValue(ScheduleContract.Speakers.SPEAKER_NAME, speaker.name)
-                .withValue(ScheduleContract.Speakers.PICTURE_URL, speaker.pictureUrl)
-                .withValue(ScheduleContract.Speakers.SPEAKER_ABSTRACT, speaker.bio)
-                .withValue(ScheduleContract.Speakers.SPEAKER_TWITTER_URL, speaker.twitterUrl)
-                .withValue(ScheduleContract.Speakers.SPEAKER_IMPORT_HASHCODE,
-                        speaker.getImportHashcode())
-                .build());
+    private void stageSpeaker(Speaker speaker, String importHashCode) {
+        final ContentValues values = new ContentValues();
+        values.put(ScheduleContract.Speakers.SPEAKER_ID, speaker.id);
+        values.put(ScheduleContract.Speakers.SPEAKER_NAME, speaker.name);
+        values.put(ScheduleContract.Speakers.PICTURE_URL, speaker.pictureUrl);
+        values.put(ScheduleContract.Speakers.SPEAKER_ABSTRACT, speaker.bio);
+        values.put(ScheduleContract.Speakers.SPEAKER_TWITTER_URL, speaker.twitterUrl);
+        values.put(ScheduleContract.Speakers.SPEAKER_IMPORT_HASHCODE, importHashCode);
+        mStagingWriter.add(ScheduleContract.ImportStaging.SPEAKERS_URI, values);
     }
 
     private void buildDeleteOperation(String speakerId, ArrayList<ContentProviderOperation> list) {
@@ -157,10 +154,6 @@ public class SpeakersHandler extends JSONHandler {
         }
     }
 
-    public HashMap<String, Speaker> getSpeakerMap() {
-        return mSpeakers;
-    }
-
     private interface SpeakerHashcodeQuery {
         String[] PROJECTION = {
                 BaseColumns._ID,
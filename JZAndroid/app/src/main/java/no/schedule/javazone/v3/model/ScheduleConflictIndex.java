@@ -0,0 +1,161 @@
+package no.schedule.javazone.v3.model;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static no.schedule.javazone.v3.model.ScheduleItemHelper.ALLOWED_OVERLAP;
+
+/**
+ * Index of the time slots of starred sessions, answering which of them a given slot conflicts
+ * with without comparing it to every other session.
+ * <p>
+ * Entries are kept ordered by start time, together with the longest duration in the index. The
+ * sessions a slot can overlap all start less than one such duration before it ends, so a query
+ * is a logarithmic seek followed by a scan of that window only. Sessions can be added and
+ * removed one at a time as they are starred and unstarred.
+ * <p>
+ * Two slots conflict if they overlap by more than {@link ScheduleItemHelper#ALLOWED_OVERLAP}.
+ * This class is not thread safe.
+ */
+public class ScheduleConflictIndex {
+    private final TreeSet<Slot> mSlots = new TreeSet<>();
+    private final Map<String, Slot> mSlotsById = new HashMap<>();
+    // Multiset of durations, to know the longest one after removals
+    private final TreeMap<Long, Integer> mDurations = new TreeMap<>();
+
+    /**
+     * Adds or moves the slot of a session.
+     */
+    public void put(@NonNull String sessionId, long startTime, long endTime) {
+        remove(sessionId);
+        final Slot slot = new Slot(sessionId, startTime, endTime);
+        mSlots.add(slot);
+        mSlotsById.put(sessionId, slot);
+        final long duration = slot.duration();
+        final Integer count = mDurations.get(duration);
+        mDurations.put(duration, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Adds {@code item} if it is a starred session, and removes it otherwise.
+     */
+    public void update(@NonNull ScheduleItem item) {
+        if (item.type == ScheduleItem.SESSION && item.inSchedule) {
+            put(item.sessionId, item.startTime, item.endTime);
+        } else {
+            remove(item.sessionId);
+        }
+    }
+
+    public void remove(String sessionId) {
+        final Slot slot = mSlotsById.remove(sessionId);
+        if (slot == null) {
+            return;
+        }
+        mSlots.remove(slot);
+        final long duration = slot.duration();
+        final int count = mDurations.get(duration);
+        if (count == 1) {
+            mDurations.remove(duration);
+        } else {
+            mDurations.put(duration, count - 1);
+        }
+    }
+
+    public boolean contains(String sessionId) {
+        return mSlotsById.containsKey(sessionId);
+    }
+
+    public void clear() {
+        mSlots.clear();
+        mSlotsById.clear();
+        mDurations.clear();
+    }
+
+    /**
+     * Returns the ids of the indexed sessions that conflict with the slot of {@code sessionId},
+     * which doesn't need to be indexed itself, ordered by start time.
+     *
+     * @param before receives the ids of conflicting sessions ordered before the slot
+     * @param after  receives the ids of conflicting sessions ordered after the slot
+     */
+    public void findConflicts(String sessionId, long startTime, long endTime,
+            List<String> before, List<String> after) {
+        if (mSlots.isEmpty()) {
+            return;
+        }
+        final Slot query = new Slot(sessionId, startTime, endTime);
+        // Anything starting earlier than this ends too early to overlap the query
+        final long windowStart = startTime + ALLOWED_OVERLAP - mDurations.lastKey();
+        for (Slot slot : mSlots.tailSet(new Slot("", windowStart, windowStart), true)) {
+            if (slot.startTime + ALLOWED_OVERLAP >= endTime) {
+                break;
+            }
+            if (slot.sessionId.equals(sessionId) || !slot.intersects(query)) {
+                continue;
+            }
+            if (slot.compareTo(query) < 0) {
+                before.add(slot.sessionId);
+            } else {
+                after.add(slot.sessionId);
+            }
+        }
+    }
+
+    /**
+     * Sets {@link ScheduleItem#FLAG_CONFLICTS_WITH_PREVIOUS} and {@link
+     * ScheduleItem#FLAG_CONFLICTS_WITH_NEXT} on {@code item} from the index, clearing them if
+     * it isn't a starred session.
+     */
+    public void updateFlags(@NonNull ScheduleItem item) {
+        item.flags &= ~(ScheduleItem.FLAG_CONFLICTS_WITH_PREVIOUS
+                | ScheduleItem.FLAG_CONFLICTS_WITH_NEXT);
+        if (item.type != ScheduleItem.SESSION || !item.inSchedule) {
+            return;
+        }
+        final List<String> before = new ArrayList<>();
+        final List<String> after = new ArrayList<>();
+        findConflicts(item.sessionId, item.startTime, item.endTime, before, after);
+        if (!before.isEmpty()) {
+            item.flags |= ScheduleItem.FLAG_CONFLICTS_WITH_PREVIOUS;
+        }
+        if (!after.isEmpty()) {
+            item.flags |= ScheduleItem.FLAG_CONFLICTS_WITH_NEXT;
+        }
+    }
+
+    private static class Slot implements Comparable<Slot> {
+        final String sessionId;
+        final long startTime;
+        final long endTime;
+
+        Slot(String sessionId, long startTime, long endTime) {
+            this.sessionId = sessionId;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        long duration() {
+            return Math.max(0, endTime - startTime);
+        }
+
+        boolean intersects(Slot other) {
+            return other.endTime > startTime + ALLOWED_OVERLAP
+                    && other.startTime + ALLOWED_OVERLAP < endTime;
+        }
+
+        @Override
+        public int compareTo(@NonNull Slot other) {
+            if (startTime != other.startTime) {
+                return startTime < other.startTime ? -1 : 1;
+            }
+            return sessionId.compareTo(other.sessionId);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
@@ -29,6 +30,7 @@ import no.schedule.javazone.v3.BuildConfig;
 import no.schedule.javazone.v3.provider.ScheduleContract;
 import no.schedule.javazone.v3.schedule.ScheduleModel;
 
+import static no.schedule.javazone.v3.util.LogUtils.LOGD;
 import static no.schedule.javazone.v3.util.LogUtils.makeLogTag;
 
 public class ScheduleHelper {
@@ -55,8 +57,61 @@ public class ScheduleHelper {
         // get sessions in my schedule and blocks, starting anytime in the conference day
         final ArrayList<ScheduleItem> items = new ArrayList<>();
 
+        final long startTime = SystemClock.elapsedRealtime();
         addSessions(start, end, items);
+        LOGD(TAG, "Loaded day from " + items.size() + " rows in "
+                + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        return processDay(items);
+    }
+
+    /**
+     * Loads the schedule of every day in {@code days} with a single query, handing each day to
+     * {@code callback} as soon as all of its sessions have been read. Days are {start, end} pairs
+     * and must be in chronological order without overlaps, like {@link
+     * no.schedule.javazone.v3.Config#CONFERENCE_DAYS}; sessions between days are left out, as
+     * they are when loading each day on its own.
+     */
+    public void getScheduleData(@NonNull long[][] days, @NonNull DayLoadedCallback callback) {
+        if (days.length == 0) {
+            return;
+        }
+        final long startTime = SystemClock.elapsedRealtime();
+        int rows = 0;
+        int day = 0;
+        ArrayList<ScheduleItem> items = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = querySessions(days[0][0], days[days.length - 1][1]);
+            if (cursor != null) {
+                final ScheduleItemCursorMapper mapper = new ScheduleItemCursorMapper(cursor);
+                while (cursor.moveToNext()) {
+                    rows++;
+                    final ScheduleItem item = mapper.map(cursor);
+                    // Rows are ordered by start, so every day before this item's is complete
+                    while (day < days.length && item.startTime > days[day][1]) {
+                        callback.onDayLoaded(day, processDay(items));
+                        items = new ArrayList<>();
+                        day++;
+                    }
+                    if (day < days.length && item.startTime >= days[day][0]) {
+                        items.add(item);
+                    }
+                }
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        for (; day < days.length; day++) {
+            callback.onDayLoaded(day, processDay(items));
+            items = new ArrayList<>();
+        }
+        LOGD(TAG, "Loaded " + days.length + " days from " + rows + " rows in "
+                + (SystemClock.elapsedRealtime() - startTime) + "ms");
+    }
 
+    private ArrayList<ScheduleItem> processDay(ArrayList<ScheduleItem> items) {
         ArrayList<ScheduleItem> result = ScheduleItemHelper.processItems(items);
         if (BuildConfig.DEBUG || Log.isLoggable(TAG, Log.DEBUG)) {
             ScheduleItem previous = null;
@@ -71,6 +126,36 @@ public class ScheduleHelper {
         return result;
     }
 
+    /**
+     * Loads the schedule of all {@code days} in the background, see {@link
+     * #getScheduleData(long[][], DayLoadedCallback)}. Each day is delivered on the main thread as
+     * soon as it is ready.
+     */
+    public void getScheduleDataAsync(
+            final @NonNull ScheduleModel.LoadMultiDayScheduleDataListener callback,
+            final long[][] days) {
+        AsyncTask<Void, Object, Void> task = new AsyncTask<Void, Object, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                getScheduleData(days, new DayLoadedCallback() {
+                    @Override
+                    public void onDayLoaded(int dayIndex, ArrayList<ScheduleItem> scheduleItems) {
+                        publishProgress(dayIndex, scheduleItems);
+                    }
+                });
+                return null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void onProgressUpdate(Object... values) {
+                callback.onDataLoaded((Integer) values[0], (ArrayList<ScheduleItem>) values[1]);
+            }
+        };
+        // See getScheduleDataAsync(LoadScheduleDataListener, long, long) for the executor choice
+        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
     public void getScheduleDataAsync(
             final @NonNull ScheduleModel.LoadScheduleDataListener callback,
             long start, long end) {
@@ -99,30 +184,48 @@ public class ScheduleHelper {
             @NonNull final ArrayList<ScheduleItem> items) {
         Cursor cursor = null;
         try {
-            Uri uri = ScheduleContract.Sessions.CONTENT_URI;
-            String selection = ScheduleContract.Sessions.STARTING_AT_TIME_INTERVAL_SELECTION;
-            if (mMode == MODE_STARRED_ITEMS) {
-                selection = DatabaseUtils.concatenateWhere(selection,
-                        ScheduleContract.Sessions.IN_SCHEDULE_SELECTION);
+            cursor = querySessions(start, end);
+            if (cursor != null) {
+                ScheduleItemHelper.cursorToItems(cursor, items);
             }
-//            if (filters != null) {
-//                uri = ScheduleContract.Sessions.buildCategoryTagFilterUri(uri, filters.getSelectedFilterIds(),
-//                        filters.getCategoryCount());
-//            }
-
-            cursor = mContext.getContentResolver().query(
-                    uri,
-                    ScheduleItemHelper.REQUIRED_SESSION_COLUMNS,
-                    selection,
-                    new String[]{String.valueOf(start), String.valueOf(end)},
-                    // order by session start
-                    ScheduleContract.Sessions.SESSION_START);
-
-            ScheduleItemHelper.cursorToItems(cursor, mContext, items);
         } finally {
             if (cursor != null) {
                 cursor.close();
             }
         }
     }
+
+    /**
+     * Queries the sessions starting between {@code start} and {@code end}, ordered by start.
+     * Reads the schedule table maintained at import time, see {@link
+     * ScheduleContract.Sessions#CONTENT_SCHEDULE_URI}.
+     */
+    private Cursor querySessions(final long start, final long end) {
+        Uri uri = ScheduleContract.Sessions.CONTENT_SCHEDULE_URI;
+        String selection = ScheduleContract.Sessions.STARTING_AT_TIME_INTERVAL_SELECTION;
+        if (mMode == MODE_STARRED_ITEMS) {
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    ScheduleContract.Sessions.IN_SCHEDULE_SELECTION);
+        }
+//        if (filters != null) {
+//            uri = ScheduleContract.Sessions.buildCategoryTagFilterUri(uri, filters.getSelectedFilterIds(),
+//                    filters.getCategoryCount());
+//        }
+
+        return mContext.getContentResolver().query(
+                uri,
+                ScheduleItemHelper.REQUIRED_SESSION_COLUMNS,
+                selection,
+                new String[]{String.valueOf(start), String.valueOf(end)},
+                // order by session start
+                ScheduleContract.Sessions.SESSION_START);
+    }
+
+    public interface DayLoadedCallback {
+        /**
+         * @param dayIndex      index of the day in the array passed to the loader
+         * @param scheduleItems the processed items of that day
+         */
+        void onDayLoaded(int dayIndex, ArrayList<ScheduleItem> scheduleItems);
+    }
 }
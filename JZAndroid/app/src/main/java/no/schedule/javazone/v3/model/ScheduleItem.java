@@ -60,7 +60,8 @@ public class ScheduleItem implements Cloneable, Comparable<ScheduleItem> {
     // session id
     public String sessionId = "";
 
-    // title and subtitle
+    // title and subtitle; only blocks have a subtitle, which is also their room, so it is
+    // left out of equals() and hashCode()
     public String title = "";
     public String subtitle = "";
     public String room;
@@ -197,7 +198,6 @@ public class ScheduleItem implements Cloneable, Comparable<ScheduleItem> {
                 Arrays.equals(tags, that.tags) &&
                 Objects.equals(sessionId, that.sessionId) &&
                 Objects.equals(title, that.title) &&
-                Objects.equals(subtitle, that.subtitle) &&
                 Objects.equals(room, that.room) &&
                 Objects.equals(backgroundImageUrl, that.backgroundImageUrl);
     }
@@ -205,7 +205,7 @@ public class ScheduleItem implements Cloneable, Comparable<ScheduleItem> {
     @Override
     public int hashCode() {
         return Objects.hash(type, sessionType, blockKind, mainTag, tags, startTime, endTime,
-                numOfSessions, sessionId, title, subtitle, room, isKeynote, inSchedule,
+                numOfSessions, sessionId, title, room, isKeynote, inSchedule,
                 hasGivenFeedback, backgroundImageUrl, backgroundColor, flags);
     }
 }
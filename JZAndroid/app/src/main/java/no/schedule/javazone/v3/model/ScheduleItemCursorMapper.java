@@ -0,0 +1,58 @@
+package no.schedule.javazone.v3.model;
+
+import android.database.Cursor;
+
+import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
+
+import static no.schedule.javazone.v3.model.ScheduleItem.detectSessionType;
+
+/**
+ * Maps rows of a sessions cursor to {@link ScheduleItem}s. Column indexes are resolved once, when
+ * the mapper is created for a cursor, instead of for every column of every row.
+ * <p>
+ * A mapper is only valid for the cursor it was created with (or cursors with the same
+ * projection). Display strings derived from the row, such as a session's subtitle, are left to
+ * the views that bind the item.
+ */
+public class ScheduleItemCursorMapper {
+    private final int mSessionId;
+    private final int mTitle;
+    private final int mStart;
+    private final int mEnd;
+    private final int mSpeakerNames;
+    private final int mRoomId;
+    private final int mTags;
+    private final int mConference;
+    private final int mInSchedule;
+
+    public ScheduleItemCursorMapper(Cursor cursor) {
+        mSessionId = cursor.getColumnIndex(Sessions.SESSION_ID);
+        mTitle = cursor.getColumnIndex(Sessions.SESSION_TITLE);
+        mStart = cursor.getColumnIndex(Sessions.SESSION_START);
+        mEnd = cursor.getColumnIndex(Sessions.SESSION_END);
+        mSpeakerNames = cursor.getColumnIndex(Sessions.SESSION_SPEAKER_NAMES);
+        mRoomId = cursor.getColumnIndex(Sessions.ROOM_ID);
+        mTags = cursor.getColumnIndex(Sessions.SESSION_TAGS);
+        mConference = cursor.getColumnIndex(Sessions.SESSION_CONFERENCE);
+        mInSchedule = cursor.getColumnIndex(Sessions.SESSION_IN_MY_SCHEDULE);
+    }
+
+    /**
+     * Creates a session {@link ScheduleItem} from the row the cursor is currently positioned on.
+     */
+    @SuppressWarnings("WrongConstant")
+    public ScheduleItem map(Cursor cursor) {
+        ScheduleItem item = new ScheduleItem();
+        item.type = ScheduleItem.SESSION;
+        item.sessionId = cursor.getString(mSessionId);
+        item.title = cursor.getString(mTitle);
+        item.startTime = cursor.getLong(mStart);
+        item.endTime = cursor.getLong(mEnd);
+        item.speakerNames = cursor.getString(mSpeakerNames);
+        item.room = cursor.getString(mRoomId);
+        item.sessionType = detectSessionType(cursor.getString(mTags));
+        item.conferenceId = cursor.getString(mConference);
+        item.inSchedule = cursor.getInt(mInSchedule) != 0;
+        return item;
+    }
+}
@@ -16,21 +16,15 @@
 
 package no.schedule.javazone.v3.model;
 
-import android.content.Context;
 import android.database.Cursor;
 import android.support.annotation.NonNull;
-import android.text.TextUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
-import no.schedule.javazone.v3.provider.ScheduleContract;
 import no.schedule.javazone.v3.provider.ScheduleContract.Sessions;
-import no.schedule.javazone.v3.ui.UIUtils;
-
-import static no.schedule.javazone.v3.model.ScheduleItem.detectSessionType;
 
 public class ScheduleItemHelper {
 
@@ -73,30 +67,23 @@ public class ScheduleItemHelper {
     }
 
     static void markConflicting(@NonNull final ArrayList<ScheduleItem> items) {
-        final int size = items.size();
-        for (int i = 0; i < size; i++) {
-            final ScheduleItem item = items.get(i);
-            // Notice that we only care about sessions when checking conflicts.
-            if (item.type == ScheduleItem.SESSION && item.inSchedule) {
-                for (int j = i + 1; j < size; j++) {
-                    final ScheduleItem other = items.get(j);
-                    if (other.type == ScheduleItem.SESSION && other.inSchedule) {
-                        if (intersect(other, item, true)) {
-                            other.flags |= ScheduleItem.FLAG_CONFLICTS_WITH_PREVIOUS;
-                            item.flags |= ScheduleItem.FLAG_CONFLICTS_WITH_NEXT;
-                        } else {
-                            // we assume the list is ordered by starttime so break from inner loop
-                            break;
-                        }
-                    }
-                }
-            }
+        // Notice that we only care about starred sessions when checking conflicts.
+        final ScheduleConflictIndex index = new ScheduleConflictIndex();
+        for (ScheduleItem item : items) {
+            index.update(item);
         }
+        markConflicting(items, index);
     }
 
-    private static boolean intersect(ScheduleItem block1, ScheduleItem block2, boolean useOverlap) {
-        return block2.endTime > (block1.startTime + (useOverlap ? ALLOWED_OVERLAP : 0))
-                && (block2.startTime + (useOverlap ? ALLOWED_OVERLAP : 0)) < block1.endTime;
+    /**
+     * Sets the conflict flags of {@code items} from an index of all starred sessions, which may
+     * cover more than these items.
+     */
+    public static void markConflicting(@NonNull final List<ScheduleItem> items,
+            @NonNull ScheduleConflictIndex index) {
+        for (ScheduleItem item : items) {
+            index.updateFlags(item);
+        }
     }
 
     public static boolean sameStartTime(ScheduleItem block1, ScheduleItem block2,
@@ -104,38 +91,16 @@ public class ScheduleItemHelper {
         return  Math.abs(block1.startTime - block2.startTime) <= (useOverlap ? ALLOWED_OVERLAP : 0);
     }
 
-    public static List<ScheduleItem> cursorToItems(Cursor cursor, Context context) {
+    public static List<ScheduleItem> cursorToItems(Cursor cursor) {
         List<ScheduleItem> list = new ArrayList<>(cursor.getCount());
-        cursorToItems(cursor, context, list);
+        cursorToItems(cursor, list);
         return list;
     }
 
-    @SuppressWarnings("WrongConstant")
-    public static void cursorToItems(Cursor cursor, Context context, List<ScheduleItem> list) {
+    public static void cursorToItems(Cursor cursor, List<ScheduleItem> list) {
+        ScheduleItemCursorMapper mapper = new ScheduleItemCursorMapper(cursor);
         while (cursor.moveToNext()) {
-            ScheduleItem item = new ScheduleItem();
-            item.type = ScheduleItem.SESSION;
-            item.sessionId = cursor.getString(cursor.getColumnIndex(Sessions.SESSION_ID));
-            item.title = cursor.getString(cursor.getColumnIndex(Sessions.SESSION_TITLE));
-            item.startTime = cursor.getLong(cursor.getColumnIndex(Sessions.SESSION_START));
-            item.endTime = cursor.getLong(cursor.getColumnIndex(Sessions.SESSION_END));
-            item.speakerNames = cursor.getString(cursor.getColumnIndex(Sessions.SESSION_SPEAKER_NAMES));
-
-            item.subtitle = UIUtils.formatSessionSubtitle(
-                    cursor.getString(cursor.getColumnIndex(Sessions.ROOM_ID)),
-                    cursor.getString(cursor.getColumnIndex(Sessions.SESSION_SPEAKER_NAMES)),
-                    context);
-            item.room = cursor.getString(cursor.getColumnIndex(Sessions.ROOM_ID));
-
-            item.sessionType = detectSessionType(
-                    cursor.getString(cursor.getColumnIndex(Sessions.SESSION_TAGS)));
-            String tags = cursor.getString(cursor.getColumnIndex(Sessions.SESSION_TAGS));
-            item.conferenceId = cursor.getString(cursor.getColumnIndex(Sessions.SESSION_CONFERENCE));
-
-            item.inSchedule =
-                    cursor.getInt(cursor.getColumnIndex(Sessions.SESSION_IN_MY_SCHEDULE)) != 0;
-
-            list.add(item);
+            list.add(mapper.map(cursor));
         }
     }
 }
@@ -43,7 +43,7 @@ public class MyScheduleCursorTransform implements CursorTransform<List<ScheduleI
     @Override
     public List<ScheduleItem> cursorToModel(@NonNull CursorModelLoader<List<ScheduleItem>> loader,
             @NonNull Cursor cursor) {
-        return ScheduleItemHelper.cursorToItems(cursor, loader.getContext());
+        return ScheduleItemHelper.cursorToItems(cursor);
     }
 
     @Override
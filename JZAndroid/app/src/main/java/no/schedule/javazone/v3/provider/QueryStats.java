@@ -0,0 +1,168 @@
+package no.schedule.javazone.v3.provider;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.sync.ScheduleUriEnum;
+
+/**
+ * Timings of {@link ScheduleProvider#query} per {@link ScheduleUriEnum}, to find the expensive
+ * query paths. Reported by {@link ScheduleProvider#dump}.
+ * <p>
+ * Every URI gets a histogram of its query times in power of two millisecond buckets. The query
+ * plans of the last few queries slower than the threshold are kept as well. Only the URI type is
+ * recorded, never the URI or the arguments, as the dump ends up in bug reports.
+ * <p>
+ * While disabled, the provider does nothing but check {@link #isEnabled()}. While enabled, the
+ * time spent on the bookkeeping and on explaining slow queries is measured and reported with
+ * the stats.
+ */
+class QueryStats {
+  static final long DEFAULT_SLOW_QUERY_THRESHOLD_MS = 100;
+
+  // Bucket 0 holds queries under 1ms, bucket i those under 2^i ms, the last one everything else
+  private static final int BUCKETS = 12;
+  private static final int MAX_SLOW_QUERIES = 10;
+
+  private volatile boolean mEnabled;
+  private volatile long mSlowQueryThresholdNanos =
+      TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_THRESHOLD_MS);
+
+  // Guarded by this
+  private final Map<ScheduleUriEnum, UriStats> mStats = new EnumMap<>(ScheduleUriEnum.class);
+  private final ArrayDeque<SlowQuery> mSlowQueries = new ArrayDeque<>();
+  private long mRecordNanos;
+  private long mExplainNanos;
+
+  QueryStats(boolean enabled) {
+    mEnabled = enabled;
+  }
+
+  boolean isEnabled() {
+    return mEnabled;
+  }
+
+  void setEnabled(boolean enabled) {
+    mEnabled = enabled;
+  }
+
+  void setSlowQueryThresholdMs(long thresholdMs) {
+    mSlowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+  }
+
+  boolean isSlow(long durationNanos) {
+    return durationNanos >= mSlowQueryThresholdNanos;
+  }
+
+  void record(ScheduleUriEnum uri, long durationNanos) {
+    final long start = System.nanoTime();
+    final long durationMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    final int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(durationMs));
+    synchronized (this) {
+      UriStats stats = mStats.get(uri);
+      if (stats == null) {
+        stats = new UriStats();
+        mStats.put(uri, stats);
+      }
+      stats.count++;
+      stats.totalNanos += durationNanos;
+      stats.maxNanos = Math.max(stats.maxNanos, durationNanos);
+      stats.buckets[bucket]++;
+      mRecordNanos += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * @param explainNanos time it took to capture {@code plan}
+   */
+  synchronized void recordSlowQuery(ScheduleUriEnum uri, long durationNanos, String plan,
+      long explainNanos) {
+    if (mSlowQueries.size() == MAX_SLOW_QUERIES) {
+      mSlowQueries.removeFirst();
+    }
+    mSlowQueries.addLast(new SlowQuery(uri, durationNanos, plan));
+    mExplainNanos += explainNanos;
+  }
+
+  synchronized void reset() {
+    mStats.clear();
+    mSlowQueries.clear();
+    mRecordNanos = 0;
+    mExplainNanos = 0;
+  }
+
+  synchronized void dump(PrintWriter writer) {
+    writer.print("Query stats enabled: ");
+    writer.println(mEnabled);
+    writer.print("Slow query threshold: ");
+    writer.print(TimeUnit.NANOSECONDS.toMillis(mSlowQueryThresholdNanos));
+    writer.println("ms");
+    writer.print("Instrumentation overhead: ");
+    writer.print(formatMs(mRecordNanos));
+    writer.print(" recording, ");
+    writer.print(formatMs(mExplainNanos));
+    writer.println(" explaining");
+
+    for (Map.Entry<ScheduleUriEnum, UriStats> entry : mStats.entrySet()) {
+      final UriStats stats = entry.getValue();
+      writer.print("  ");
+      writer.print(entry.getKey());
+      writer.print(": count=");
+      writer.print(stats.count);
+      writer.print(" mean=");
+      writer.print(formatMs(stats.totalNanos / stats.count));
+      writer.print(" max=");
+      writer.print(formatMs(stats.maxNanos));
+      for (int i = 0; i < BUCKETS; i++) {
+        if (stats.buckets[i] == 0) {
+          continue;
+        }
+        writer.print(i < BUCKETS - 1 ? " <" + (1L << i) : " >=" + (1L << (BUCKETS - 2)));
+        writer.print("ms:");
+        writer.print(stats.buckets[i]);
+      }
+      writer.println();
+    }
+
+    if (!mSlowQueries.isEmpty()) {
+      writer.println("Slow queries, oldest first:");
+    }
+    for (SlowQuery query : mSlowQueries) {
+      writer.print("  ");
+      writer.print(query.uri);
+      writer.print(" took ");
+      writer.println(formatMs(query.durationNanos));
+      for (String step : query.plan.split("\n")) {
+        writer.print("    ");
+        writer.println(step);
+      }
+    }
+  }
+
+  private static String formatMs(long nanos) {
+    return String.format(Locale.US, "%.2fms", nanos / 1e6);
+  }
+
+  private static class UriStats {
+    long count;
+    long totalNanos;
+    long maxNanos;
+    final long[] buckets = new long[BUCKETS];
+  }
+
+  private static class SlowQuery {
+    final ScheduleUriEnum uri;
+    final long durationNanos;
+    final String plan;
+
+    SlowQuery(ScheduleUriEnum uri, long durationNanos, String plan) {
+      this.uri = uri;
+      this.durationNanos = durationNanos;
+      this.plan = plan;
+    }
+  }
+}
@@ -186,6 +186,7 @@ public class ScheduleContract {
   private static final String PATH_SESSIONS = "sessions";
   private static final String PATH_MY_SCHEDULE = "my_schedule";
   private static final String PATH_SESSIONS_COUNTER = "counter";
+  private static final String PATH_SCHEDULE = "schedule";
   private static final String PATH_SPEAKERS = "speakers";
   private static final String PATH_MAP_FLOOR = "floor";
   private static final String PATH_MAP_TILES = "maptiles";
@@ -194,6 +195,13 @@ public class ScheduleContract {
   private static final String PATH_SEARCH_SUGGEST = "search_suggest_query";
   private static final String PATH_SEARCH_INDEX = "search_index";
 
+  private static final String PATH_IMPORT = "import";
+  private static final String PATH_IMPORT_SESSIONS = "sessions";
+  private static final String PATH_IMPORT_SPEAKERS = "speakers";
+  private static final String PATH_IMPORT_SESSIONS_SPEAKERS = "sessions_speakers";
+  private static final String PATH_IMPORT_SESSIONS_TAGS = "sessions_tags";
+  private static final String PATH_IMPORT_COMMIT = "commit";
+
   public static final String[] TOP_LEVEL_PATHS = {
       PATH_BLOCKS,
       PATH_TAGS,
@@ -398,6 +406,22 @@ public class ScheduleContract {
     public static final Uri CONTENT_MY_SCHEDULE_URI =
         CONTENT_URI.buildUpon().appendPath(PATH_MY_SCHEDULE).build();
 
+    /**
+     * Sessions as the schedule lists them, read from a table maintained at import time. Rows
+     * only have the columns the schedule shows: {@link #SESSION_ID}, {@link #SESSION_START},
+     * {@link #SESSION_END}, {@link #SESSION_TITLE}, {@link #SESSION_SPEAKER_NAMES},
+     * {@link #SESSION_TAGS}, {@link #SESSION_CONFERENCE}, {@link #ROOM_ID}, {@link #ROOM_NAME}
+     * and {@link #SESSION_IN_MY_SCHEDULE}. Takes the same tag filter as {@link #CONTENT_URI},
+     * see {@link #buildCategoryTagFilterUri}.
+     * <p>
+     * The path is under {@link #CONTENT_URI} so that the change notifications of the sessions
+     * reach its observers. Like {@link #CONTENT_MY_SCHEDULE_URI}, it shadows
+     * {@link #buildSessionUri} for a session whose id is "schedule"; the sessions API only
+     * gives out UUIDs as ids.
+     */
+    public static final Uri CONTENT_SCHEDULE_URI =
+        CONTENT_URI.buildUpon().appendPath(PATH_SCHEDULE).build();
+
     public static final String CONTENT_TYPE_ID = "session";
 
     public static final String ROOM_ID = "room_id";
@@ -683,6 +707,37 @@ public class ScheduleContract {
         BASE_CONTENT_URI.buildUpon().appendPath(PATH_SEARCH_INDEX).build();
   }
 
+  /**
+   * Staging area of the conference import. The import inserts the sessions, speakers and
+   * mappings it has to write into the staging uris while it parses, then applies all of them
+   * by updating {@link #COMMIT_URI} in the batch that deletes the removed records. Deleting
+   * {@link #CONTENT_URI} empties the staging area.
+   */
+  public static class ImportStaging {
+
+    public static final Uri CONTENT_URI =
+        BASE_CONTENT_URI.buildUpon().appendPath(PATH_IMPORT).build();
+
+    public static final Uri SESSIONS_URI =
+        CONTENT_URI.buildUpon().appendPath(PATH_IMPORT_SESSIONS).build();
+
+    public static final Uri SPEAKERS_URI =
+        CONTENT_URI.buildUpon().appendPath(PATH_IMPORT_SPEAKERS).build();
+
+    public static final Uri SESSIONS_SPEAKERS_URI =
+        CONTENT_URI.buildUpon().appendPath(PATH_IMPORT_SESSIONS_SPEAKERS).build();
+
+    public static final Uri SESSIONS_TAGS_URI =
+        CONTENT_URI.buildUpon().appendPath(PATH_IMPORT_SESSIONS_TAGS).build();
+
+    /**
+     * Updating this uri applies the staged records. The {@link SyncColumns#UPDATED} value is
+     * stored with every staged session and speaker, and the number of rows written returned.
+     */
+    public static final Uri COMMIT_URI =
+        CONTENT_URI.buildUpon().appendPath(PATH_IMPORT_COMMIT).build();
+  }
+
   public static class SearchTopicsSessions {
     public static final String PATH_SEARCH_TOPICS_SESSIONS = "search_topics_sessions";
 
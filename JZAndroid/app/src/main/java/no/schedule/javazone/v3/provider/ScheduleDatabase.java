@@ -4,9 +4,18 @@ import android.accounts.Account;
 import android.app.SearchManager;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
+import android.text.TextUtils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import no.schedule.javazone.v3.BuildConfig;
 import no.schedule.javazone.v3.provider.ScheduleContract.*;
@@ -27,10 +36,24 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
 
   private static final String DATABASE_NAME = "jz2017.db";
   private static final int VER_2017_RELEASE_D = 216;
-  private static final int CUR_DATABASE_VERSION = VER_2017_RELEASE_D;
+  private static final int VER_2017_RELEASE_E = 217;
+  private static final int VER_2017_RELEASE_F = 218;
+  private static final int VER_2017_RELEASE_G = 219;
+  private static final int VER_2017_RELEASE_H = 220;
+  private static final int VER_2017_RELEASE_I = 221;
+  private static final int CUR_DATABASE_VERSION = VER_2017_RELEASE_I;
+
+  // Pages of WAL after which SQLite checkpoints on its own, SQLite's default
+  private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+  private static final long CHECKPOINT_DELAY_MS = 2000;
 
   private final Context mContext;
 
+  // Guarded by this. Created on demand and shut down by close(), after which the helper may
+  // open the database again.
+  private ScheduledExecutorService mCheckpointExecutor;
+  private ScheduledFuture<?> mScheduledCheckpoint;
+
   public interface Tables {
     String BLOCKS = "blocks";
     String CARDS = "cards";
@@ -47,6 +70,20 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
     String SESSIONS_SEARCH = "sessions_search";
     String SEARCH_SUGGEST = "search_suggest";
 
+    // Sessions with their room resolved, as the schedule lists them. Kept current by the
+    // triggers from createScheduleSessionsTriggers.
+    String SCHEDULE_SESSIONS = "schedule_sessions";
+
+    // Staging area of the conference import, see applyImportStaging.
+    String IMPORT_SESSIONS = "import_sessions";
+    String IMPORT_SPEAKERS = "import_speakers";
+    String IMPORT_SESSIONS_SPEAKERS = "import_sessions_speakers";
+    String IMPORT_SESSIONS_TAGS = "import_sessions_tags";
+
+    String SCHEDULE_SESSIONS_JOIN_MYSCHEDULE = "schedule_sessions "
+        + "LEFT OUTER JOIN myschedule ON schedule_sessions.session_id=myschedule.session_id "
+        + "AND myschedule.account_name=? ";
+
     String SESSIONS_JOIN_MYSCHEDULE = "sessions "
         + "LEFT OUTER JOIN myschedule ON sessions.session_id=myschedule.session_id "
         + "AND myschedule.account_name=? ";
@@ -92,8 +129,71 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
     String SESSIONS_TAGS_DELETE = "sessions_tags_delete";
     String SESSIONS_SPEAKERS_DELETE = "sessions_speakers_delete";
     String SESSIONS_MY_SCHEDULE_DELETE = "sessions_myschedule_delete";
+
+    // Keep the full-text search index in step with the sessions and speakers it is built from.
+    String SESSIONS_SEARCH_BEFORE_INSERT = "sessions_search_before_insert";
+    String SESSIONS_SEARCH_INSERT = "sessions_search_insert";
+    String SESSIONS_SEARCH_UPDATE = "sessions_search_update";
+    String SESSIONS_SEARCH_DELETE = "sessions_search_delete";
+    String SESSIONS_SPEAKERS_SEARCH_INSERT = "sessions_speakers_search_insert";
+    String SESSIONS_SPEAKERS_SEARCH_DELETE = "sessions_speakers_search_delete";
+    String SPEAKERS_SEARCH_INSERT = "speakers_search_insert";
+    String SPEAKERS_SEARCH_UPDATE = "speakers_search_update";
+    String SPEAKERS_SEARCH_DELETE = "speakers_search_delete";
+
+    // Keep schedule_sessions in step with the sessions and rooms it is built from.
+    String SESSIONS_SCHEDULE_INSERT = "sessions_schedule_insert";
+    String SESSIONS_SCHEDULE_UPDATE = "sessions_schedule_update";
+    String SESSIONS_SCHEDULE_DELETE = "sessions_schedule_delete";
+    String ROOMS_SCHEDULE_INSERT = "rooms_schedule_insert";
+    String ROOMS_SCHEDULE_UPDATE = "rooms_schedule_update";
+    String ROOMS_SCHEDULE_DELETE = "rooms_schedule_delete";
+  }
+
+  private interface Indexes {
+    // The UNIQUE constraints already index the leading session_id of the relationship tables
+    // and myschedule(session_id, account_name); these cover the remaining join and range
+    // columns used by the schedule queries.
+    String SESSIONS_START = "sessions_start_index";
+    String SESSIONS_ROOM_ID = "sessions_room_id_index";
+    String SESSIONS_TAGS_TAG_ID = "sessions_tags_tag_id_index";
+    String SESSIONS_SPEAKERS_SPEAKER_ID = "sessions_speakers_speaker_id_index";
+    String MY_SCHEDULE_ACCOUNT_NAME = "myschedule_account_name_index";
+    String BLOCKS_START = "blocks_start_index";
+    String SCHEDULE_SESSIONS_START = "schedule_sessions_start_index";
   }
 
+  /**
+   * The session columns the import writes, as staged in {@link Tables#IMPORT_SESSIONS}.
+   */
+  private static final String[] IMPORT_SESSION_COLUMNS = {
+      Sessions.SESSION_ID,
+      Sessions.SESSION_LEVEL,
+      Sessions.SESSION_TITLE,
+      Sessions.SESSION_ABSTRACT,
+      Sessions.SESSION_INTENDED_AUDIENCE,
+      Sessions.SESSION_START,
+      Sessions.SESSION_END,
+      Sessions.SESSION_TAGS,
+      Sessions.SESSION_SPEAKER_NAMES,
+      Sessions.SESSION_VIMEO_URL,
+      Sessions.ROOM_ID,
+      Sessions.SESSION_CONFERENCE,
+      Sessions.SESSION_IMPORT_HASHCODE
+  };
+
+  /**
+   * The speaker columns the import writes, as staged in {@link Tables#IMPORT_SPEAKERS}.
+   */
+  private static final String[] IMPORT_SPEAKER_COLUMNS = {
+      Speakers.SPEAKER_ID,
+      Speakers.SPEAKER_NAME,
+      Speakers.PICTURE_URL,
+      Speakers.SPEAKER_ABSTRACT,
+      Speakers.SPEAKER_TWITTER_URL,
+      Speakers.SPEAKER_IMPORT_HASHCODE
+  };
+
   public interface SessionsSpeakers {
     String SESSION_ID = "session_id";
     String SPEAKER_ID = "speaker_id";
@@ -116,6 +216,11 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
     String SESSIONS_SEARCH = Tables.SESSIONS_SEARCH + "(" + SessionsSearchColumns.SESSION_ID
         + "," + SessionsSearchColumns.BODY + ")";
 
+    // Search documents use the session's row id as their docid, so a single session's document
+    // can be found without scanning the whole index.
+    String SESSIONS_SEARCH_WITH_DOCID = Tables.SESSIONS_SEARCH + "(docid,"
+        + SessionsSearchColumns.SESSION_ID + "," + SessionsSearchColumns.BODY + ")";
+
     String SESSIONS_TAGS_SESSION_ID = Tables.SESSIONS_TAGS + "."
         + SessionsTags.SESSION_ID;
 
@@ -142,6 +247,79 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
   public ScheduleDatabase(Context context) {
     super(context, DATABASE_NAME, null, CUR_DATABASE_VERSION);
     mContext = context;
+    // Lets schedule reads run on pooled read connections while the import writes
+    setWriteAheadLoggingEnabled(true);
+  }
+
+  /**
+   * Stops SQLite from checkpointing the WAL on the connection of the transaction in progress on
+   * {@code db}, so a large batch doesn't stall on checkpoints half way through. Call
+   * {@link #scheduleCheckpoint} once the transaction has ended to catch up.
+   */
+  void suspendAutoCheckpoint(SQLiteDatabase db) {
+    DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint=0", null);
+  }
+
+  /**
+   * Checkpoints the WAL of {@code db} shortly, once writes have settled, and turns automatic
+   * checkpoints back on. Repeated calls push the checkpoint back. The checkpoint works on the
+   * given database rather than asking for one, so that it never opens the database again once
+   * {@link #close()} has closed it.
+   */
+  synchronized void scheduleCheckpoint(final SQLiteDatabase db) {
+    if (mCheckpointExecutor == null) {
+      mCheckpointExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+    if (mScheduledCheckpoint != null) {
+      mScheduledCheckpoint.cancel(false);
+    }
+    mScheduledCheckpoint = mCheckpointExecutor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        checkpoint(db);
+      }
+    }, CHECKPOINT_DELAY_MS, TimeUnit.MILLISECONDS);
+  }
+
+  private static void checkpoint(SQLiteDatabase db) {
+    if (!db.isOpen()) {
+      return;
+    }
+    try {
+      final long start = System.currentTimeMillis();
+      // Passive, so readers and writers are never blocked by it
+      DatabaseUtils.longForQuery(db, "PRAGMA wal_checkpoint(PASSIVE)", null);
+      // Pragmas only apply to their connection; in a transaction this is the writing one
+      db.beginTransactionNonExclusive();
+      try {
+        DatabaseUtils.longForQuery(db,
+            "PRAGMA wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES, null);
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
+      }
+      LOGD(TAG, "WAL checkpoint took " + (System.currentTimeMillis() - start) + "ms");
+    } catch (SQLiteException | IllegalStateException e) {
+      // Also thrown when close() closed the database during the checkpoint
+      LOGW(TAG, "WAL checkpoint failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Drops a pending checkpoint and stops the checkpoint thread before closing the database. A
+   * checkpoint that is already running fails once the database is closed.
+   */
+  @Override
+  public synchronized void close() {
+    if (mScheduledCheckpoint != null) {
+      mScheduledCheckpoint.cancel(false);
+      mScheduledCheckpoint = null;
+    }
+    if (mCheckpointExecutor != null) {
+      mCheckpointExecutor.shutdown();
+      mCheckpointExecutor = null;
+    }
+    super.close();
   }
 
   @Override
@@ -256,7 +434,7 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
         + MapTileColumns.TILE_URL + " TEXT NOT NULL,"
         + "UNIQUE (" + MapTileColumns.TILE_FLOOR + ") ON CONFLICT REPLACE)");
 
-    // Full-text search index. Update using updateSessionSearchIndex method.
+    // Full-text search index. Kept current by the triggers from createSearchIndexTriggers.
     // Use the porter tokenizer for simple stemming, so that "frustration" matches "frustrated."
     db.execSQL("CREATE VIRTUAL TABLE " + Tables.SESSIONS_SEARCH + " USING fts3("
         + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
@@ -298,18 +476,123 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
     db.execSQL("ALTER TABLE " + Tables.TAGS
         + " ADD COLUMN " + TagsColumns.TAG_PHOTO_URL + " TEXT");
 
+    createIndexes(db);
+    createSearchIndexTriggers(db);
+    createScheduleSessionsTable(db);
+    createImportStagingTables(db);
+  }
+
+  /**
+   * Creates the secondary indexes used by the schedule joins and time-range queries. Safe to
+   * run on a database that already has them.
+   */
+  private static void createIndexes(SQLiteDatabase db) {
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + Indexes.SESSIONS_START + " ON "
+        + Tables.SESSIONS + "(" + Sessions.SESSION_START + "," + Sessions.SESSION_END + ")");
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + Indexes.SESSIONS_ROOM_ID + " ON "
+        + Tables.SESSIONS + "(" + Sessions.ROOM_ID + ")");
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + Indexes.SESSIONS_TAGS_TAG_ID + " ON "
+        + Tables.SESSIONS_TAGS + "(" + SessionsTags.TAG_ID + ")");
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + Indexes.SESSIONS_SPEAKERS_SPEAKER_ID + " ON "
+        + Tables.SESSIONS_SPEAKERS + "(" + SessionsSpeakers.SPEAKER_ID + ")");
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + Indexes.MY_SCHEDULE_ACCOUNT_NAME + " ON "
+        + Tables.MY_SCHEDULE + "(" + MySchedule.MY_SCHEDULE_ACCOUNT_NAME + ")");
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + Indexes.BLOCKS_START + " ON "
+        + Tables.BLOCKS + "(" + Blocks.BLOCK_START + ")");
+  }
+
+
+  /**
+   * Creates the triggers that reindex a session's search document whenever the session, its
+   * speaker mappings or one of its speakers change, so that an import only touches the
+   * documents of the sessions it actually changed.
+   */
+  private static void createSearchIndexTriggers(SQLiteDatabase db) {
+    // Sessions are inserted with ON CONFLICT REPLACE, which deletes the old row without firing
+    // delete triggers, so drop its document before the replacement happens.
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.SESSIONS_SEARCH_BEFORE_INSERT
+        + " BEFORE INSERT ON " + Tables.SESSIONS + " BEGIN "
+        + deleteSearchDocuments("=NEW." + Sessions.SESSION_ID) + " END;");
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.SESSIONS_SEARCH_INSERT
+        + " AFTER INSERT ON " + Tables.SESSIONS + " BEGIN "
+        + insertSearchDocuments("=NEW." + Sessions.SESSION_ID) + " END;");
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.SESSIONS_SEARCH_UPDATE
+        + " AFTER UPDATE OF " + Sessions.SESSION_TITLE + "," + Sessions.SESSION_ABSTRACT
+        + " ON " + Tables.SESSIONS + " BEGIN "
+        + reindexSearchDocuments("=NEW." + Sessions.SESSION_ID) + " END;");
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.SESSIONS_SEARCH_DELETE
+        + " AFTER DELETE ON " + Tables.SESSIONS + " BEGIN DELETE FROM "
+        + Tables.SESSIONS_SEARCH + " WHERE docid=old." + BaseColumns._ID + "; END;");
+
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.SESSIONS_SPEAKERS_SEARCH_INSERT
+        + " AFTER INSERT ON " + Tables.SESSIONS_SPEAKERS + " BEGIN "
+        + reindexSearchDocuments("=NEW." + SessionsSpeakers.SESSION_ID) + " END;");
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.SESSIONS_SPEAKERS_SEARCH_DELETE
+        + " AFTER DELETE ON " + Tables.SESSIONS_SPEAKERS + " BEGIN "
+        + reindexSearchDocuments("=old." + SessionsSpeakers.SESSION_ID) + " END;");
+
+    final String sessionsOfNewSpeaker = " IN (SELECT " + SessionsSpeakers.SESSION_ID
+        + " FROM " + Tables.SESSIONS_SPEAKERS + " WHERE " + SessionsSpeakers.SPEAKER_ID
+        + "=NEW." + Speakers.SPEAKER_ID + ")";
+    final String sessionsOfOldSpeaker = " IN (SELECT " + SessionsSpeakers.SESSION_ID
+        + " FROM " + Tables.SESSIONS_SPEAKERS + " WHERE " + SessionsSpeakers.SPEAKER_ID
+        + "=old." + Speakers.SPEAKER_ID + ")";
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.SPEAKERS_SEARCH_INSERT
+        + " AFTER INSERT ON " + Tables.SPEAKERS + " BEGIN "
+        + reindexSearchDocuments(sessionsOfNewSpeaker) + " END;");
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.SPEAKERS_SEARCH_UPDATE
+        + " AFTER UPDATE OF " + Speakers.SPEAKER_NAME + " ON " + Tables.SPEAKERS + " BEGIN "
+        + reindexSearchDocuments(sessionsOfNewSpeaker) + " END;");
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.SPEAKERS_SEARCH_DELETE
+        + " AFTER DELETE ON " + Tables.SPEAKERS + " BEGIN "
+        + reindexSearchDocuments(sessionsOfOldSpeaker) + " END;");
+  }
+
+  /**
+   * Returns the statement deleting the search documents of the sessions whose id matches
+   * {@code sessionIdPredicate} (e.g. {@code "=NEW.session_id"}).
+   */
+  private static String deleteSearchDocuments(String sessionIdPredicate) {
+    return "DELETE FROM " + Tables.SESSIONS_SEARCH + " WHERE docid IN (SELECT "
+        + BaseColumns._ID + " FROM " + Tables.SESSIONS + " WHERE "
+        + Sessions.SESSION_ID + sessionIdPredicate + ");";
+  }
+
+  /**
+   * Returns the statement inserting the search documents of the sessions whose id matches
+   * {@code sessionIdPredicate}. The body is built the same way as in
+   * {@link #updateSessionSearchIndex}.
+   */
+  private static String insertSearchDocuments(String sessionIdPredicate) {
+    return "INSERT INTO " + Qualified.SESSIONS_SEARCH_WITH_DOCID
+        + " SELECT s." + BaseColumns._ID + ",s." + Sessions.SESSION_ID + ",("
+        + "s." + Sessions.SESSION_TITLE + "||'; '||"
+        + "s." + Sessions.SESSION_ABSTRACT + "||'; '||"
+        + "IFNULL((SELECT GROUP_CONCAT(sp." + Speakers.SPEAKER_NAME + ",' ')"
+        + " FROM " + Tables.SESSIONS_SPEAKERS + " ss"
+        + " INNER JOIN " + Tables.SPEAKERS + " sp"
+        + " ON ss." + SessionsSpeakers.SPEAKER_ID + "=sp." + Speakers.SPEAKER_ID
+        + " WHERE ss." + SessionsSpeakers.SESSION_ID + "=s." + Sessions.SESSION_ID
+        + "),'')||'; '||'')"
+        + " FROM " + Tables.SESSIONS + " s"
+        + " WHERE s." + Sessions.SESSION_ID + sessionIdPredicate + ";";
   }
 
+  private static String reindexSearchDocuments(String sessionIdPredicate) {
+    return deleteSearchDocuments(sessionIdPredicate) + " "
+        + insertSearchDocuments(sessionIdPredicate);
+  }
 
   /**
-   * Updates the session search index. This should be done sparingly, as the queries are rather
-   * complex.
+   * Rebuilds the whole session search index. The triggers created by
+   * {@link #createSearchIndexTriggers} keep it current during imports, so this is only needed
+   * when the index has to be recreated from scratch.
    */
   static void updateSessionSearchIndex(SQLiteDatabase db) {
     db.execSQL("DELETE FROM " + Tables.SESSIONS_SEARCH);
 
-    db.execSQL("INSERT INTO " + Qualified.SESSIONS_SEARCH
-        + " SELECT s." + Sessions.SESSION_ID + ",("
+    db.execSQL("INSERT INTO " + Qualified.SESSIONS_SEARCH_WITH_DOCID
+        + " SELECT s." + BaseColumns._ID + ",s." + Sessions.SESSION_ID + ",("
 
         // Full text body
         + Sessions.SESSION_TITLE + "||'; '||"
@@ -334,6 +617,206 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
         + " GROUP BY s." + Sessions.SESSION_ID);
   }
 
+  /**
+   * Creates {@link Tables#SCHEDULE_SESSIONS}, fills it from the sessions already stored and
+   * creates the triggers that keep it current. Each row holds what the schedule lists show of
+   * a session, with its room name, speaker names and tags resolved, so a day loads with a
+   * range scan on the start time instead of joining and grouping the sessions with their rooms
+   * and tags. Only the sessions an import inserts, updates or deletes are rewritten.
+   */
+  private static void createScheduleSessionsTable(SQLiteDatabase db) {
+    db.execSQL("CREATE TABLE " + Tables.SCHEDULE_SESSIONS + " ("
+        + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+        + Sessions.SESSION_ID + " TEXT NOT NULL " + References.SESSION_ID + ","
+        + Sessions.SESSION_START + " INTEGER NOT NULL,"
+        + Sessions.SESSION_END + " INTEGER NOT NULL,"
+        + Sessions.SESSION_TITLE + " TEXT,"
+        + Sessions.SESSION_SPEAKER_NAMES + " TEXT,"
+        + Sessions.SESSION_TAGS + " TEXT,"
+        + Sessions.SESSION_CONFERENCE + " TEXT,"
+        + Sessions.ROOM_ID + " TEXT,"
+        + Sessions.ROOM_NAME + " TEXT,"
+        + "UNIQUE (" + Sessions.SESSION_ID + ") ON CONFLICT REPLACE)");
+    db.execSQL("CREATE INDEX " + Indexes.SCHEDULE_SESSIONS_START + " ON "
+        + Tables.SCHEDULE_SESSIONS + "(" + Sessions.SESSION_START + ")");
+    db.execSQL(insertScheduleSessions(""));
+
+    // Sessions replaced through ON CONFLICT REPLACE fire the insert trigger, and the UNIQUE
+    // constraint replaces their row here as well.
+    db.execSQL("CREATE TRIGGER " + Triggers.SESSIONS_SCHEDULE_INSERT
+        + " AFTER INSERT ON " + Tables.SESSIONS + " BEGIN "
+        + insertScheduleSessions(" WHERE s." + Sessions.SESSION_ID + "=NEW."
+        + Sessions.SESSION_ID) + " END;");
+    db.execSQL("CREATE TRIGGER " + Triggers.SESSIONS_SCHEDULE_UPDATE
+        + " AFTER UPDATE ON " + Tables.SESSIONS + " BEGIN "
+        + insertScheduleSessions(" WHERE s." + Sessions.SESSION_ID + "=NEW."
+        + Sessions.SESSION_ID) + " END;");
+    db.execSQL("CREATE TRIGGER " + Triggers.SESSIONS_SCHEDULE_DELETE
+        + " AFTER DELETE ON " + Tables.SESSIONS + " BEGIN DELETE FROM "
+        + Tables.SCHEDULE_SESSIONS + " WHERE " + Sessions.SESSION_ID + "=old."
+        + Sessions.SESSION_ID + "; END;");
+
+    // Rooms are reimported with every sync, so only rewrite the rows whose name changes.
+    final String updateRoomName = "UPDATE " + Tables.SCHEDULE_SESSIONS + " SET "
+        + Sessions.ROOM_NAME + "=NEW." + Rooms.ROOM_NAME + " WHERE " + Sessions.ROOM_ID
+        + "=NEW." + Rooms.ROOM_ID + " AND " + Sessions.ROOM_NAME + " IS NOT NEW."
+        + Rooms.ROOM_NAME + ";";
+    db.execSQL("CREATE TRIGGER " + Triggers.ROOMS_SCHEDULE_INSERT
+        + " AFTER INSERT ON " + Tables.ROOMS + " BEGIN " + updateRoomName + " END;");
+    db.execSQL("CREATE TRIGGER " + Triggers.ROOMS_SCHEDULE_UPDATE
+        + " AFTER UPDATE OF " + Rooms.ROOM_NAME + " ON " + Tables.ROOMS + " BEGIN "
+        + updateRoomName + " END;");
+    createRoomsScheduleDeleteTrigger(db);
+  }
+
+  /**
+   * Creates the trigger that clears the room name of the {@link Tables#SCHEDULE_SESSIONS} rows
+   * of a deleted room, as the live join with the rooms would. Safe to run on a database that
+   * already has it.
+   */
+  private static void createRoomsScheduleDeleteTrigger(SQLiteDatabase db) {
+    db.execSQL("CREATE TRIGGER IF NOT EXISTS " + Triggers.ROOMS_SCHEDULE_DELETE
+        + " AFTER DELETE ON " + Tables.ROOMS + " BEGIN UPDATE " + Tables.SCHEDULE_SESSIONS
+        + " SET " + Sessions.ROOM_NAME + "=NULL WHERE " + Sessions.ROOM_ID + "=old."
+        + Rooms.ROOM_ID + "; END;");
+  }
+
+  /**
+   * Returns the statement (re)writing the {@link Tables#SCHEDULE_SESSIONS} rows of the sessions
+   * selected by {@code whereClause}, which refers to the sessions as {@code s}.
+   */
+  private static String insertScheduleSessions(String whereClause) {
+    return "INSERT INTO " + Tables.SCHEDULE_SESSIONS + "("
+        + Sessions.SESSION_ID + "," + Sessions.SESSION_START + "," + Sessions.SESSION_END + ","
+        + Sessions.SESSION_TITLE + "," + Sessions.SESSION_SPEAKER_NAMES + ","
+        + Sessions.SESSION_TAGS + "," + Sessions.SESSION_CONFERENCE + ","
+        + Sessions.ROOM_ID + "," + Sessions.ROOM_NAME + ")"
+        + " SELECT s." + Sessions.SESSION_ID + ",s." + Sessions.SESSION_START
+        + ",s." + Sessions.SESSION_END + ",s." + Sessions.SESSION_TITLE
+        + ",s." + Sessions.SESSION_SPEAKER_NAMES + ",s." + Sessions.SESSION_TAGS
+        + ",s." + Sessions.SESSION_CONFERENCE + ",s." + Sessions.ROOM_ID
+        + ",r." + Rooms.ROOM_NAME
+        + " FROM " + Tables.SESSIONS + " s LEFT OUTER JOIN " + Tables.ROOMS + " r"
+        + " ON s." + Sessions.ROOM_ID + "=r." + Rooms.ROOM_ID
+        + whereClause + ";";
+  }
+
+  /**
+   * Creates the tables the conference import stages its changed sessions, speakers and their
+   * mappings in, see {@link #applyImportStaging}. Safe to run on a database that already has
+   * them.
+   */
+  private static void createImportStagingTables(SQLiteDatabase db) {
+    db.execSQL("CREATE TABLE IF NOT EXISTS " + Tables.IMPORT_SESSIONS + " ("
+        + TextUtils.join(",", IMPORT_SESSION_COLUMNS) + ","
+        + "UNIQUE (" + Sessions.SESSION_ID + ") ON CONFLICT REPLACE)");
+    db.execSQL("CREATE TABLE IF NOT EXISTS " + Tables.IMPORT_SPEAKERS + " ("
+        + TextUtils.join(",", IMPORT_SPEAKER_COLUMNS) + ","
+        + "UNIQUE (" + Speakers.SPEAKER_ID + ") ON CONFLICT REPLACE)");
+    db.execSQL("CREATE TABLE IF NOT EXISTS " + Tables.IMPORT_SESSIONS_SPEAKERS + " ("
+        + SessionsSpeakers.SESSION_ID + "," + SessionsSpeakers.SPEAKER_ID + ","
+        + "UNIQUE (" + SessionsSpeakers.SESSION_ID + "," + SessionsSpeakers.SPEAKER_ID
+        + ") ON CONFLICT IGNORE)");
+    db.execSQL("CREATE TABLE IF NOT EXISTS " + Tables.IMPORT_SESSIONS_TAGS + " ("
+        + SessionsTags.SESSION_ID + "," + SessionsTags.TAG_ID + ","
+        + "UNIQUE (" + SessionsTags.SESSION_ID + "," + SessionsTags.TAG_ID
+        + ") ON CONFLICT IGNORE)");
+  }
+
+  /**
+   * Applies the records staged by the conference import and empties the staging tables. Staged
+   * speakers and sessions that are already stored are updated in place and the others
+   * inserted, with {@code updated} as their {@link SyncColumns#UPDATED} time. The speaker and
+   * tag mappings of the staged sessions are changed to the staged ones, leaving the mappings
+   * that are in both untouched.
+   * <p>
+   * The import stages records in several small transactions while it parses, so that it never
+   * holds all of them in memory, and then calls this in the same transaction as its deletes.
+   * Readers see the whole import at once, and the write lock is only held for this call.
+   *
+   * @return the number of session, speaker and mapping rows written
+   */
+  static int applyImportStaging(SQLiteDatabase db, long updated) {
+    int speakers = upsertFromStaging(db, Tables.SPEAKERS, Tables.IMPORT_SPEAKERS,
+        Speakers.SPEAKER_ID, IMPORT_SPEAKER_COLUMNS, updated);
+    int sessions = upsertFromStaging(db, Tables.SESSIONS, Tables.IMPORT_SESSIONS,
+        Sessions.SESSION_ID, IMPORT_SESSION_COLUMNS, updated);
+    int mappings = replaceMappingsFromStaging(db, Tables.SESSIONS_SPEAKERS,
+        Tables.IMPORT_SESSIONS_SPEAKERS, SessionsSpeakers.SPEAKER_ID);
+    mappings += replaceMappingsFromStaging(db, Tables.SESSIONS_TAGS,
+        Tables.IMPORT_SESSIONS_TAGS, SessionsTags.TAG_ID);
+    clearImportStaging(db);
+    LOGD(TAG, "Applied import: " + speakers + " speakers, " + sessions + " sessions, "
+        + mappings + " speaker and tag mappings written");
+    return speakers + sessions + mappings;
+  }
+
+  /**
+   * Empties the import staging tables, dropping whatever an unfinished import left there.
+   */
+  static void clearImportStaging(SQLiteDatabase db) {
+    db.delete(Tables.IMPORT_SESSIONS_TAGS, null, null);
+    db.delete(Tables.IMPORT_SESSIONS_SPEAKERS, null, null);
+    db.delete(Tables.IMPORT_SPEAKERS, null, null);
+    db.delete(Tables.IMPORT_SESSIONS, null, null);
+  }
+
+  /**
+   * Updates the rows of {@code table} that have a staged version and inserts the staged rows
+   * that are new, without replacing any row, so row ids, and everything keyed by them, stay.
+   */
+  private static int upsertFromStaging(SQLiteDatabase db, String table, String stagingTable,
+      String idColumn, String[] columns, long updated) {
+    final StringBuilder update = new StringBuilder("UPDATE ").append(table)
+        .append(" SET ").append(SyncColumns.UPDATED).append('=').append(updated);
+    for (String column : columns) {
+      if (!column.equals(idColumn)) {
+        update.append(',').append(column).append("=(SELECT i.").append(column)
+            .append(" FROM ").append(stagingTable).append(" i WHERE i.").append(idColumn)
+            .append('=').append(table).append('.').append(idColumn).append(')');
+      }
+    }
+    update.append(" WHERE ").append(idColumn).append(" IN (SELECT ").append(idColumn)
+        .append(" FROM ").append(stagingTable).append(')');
+
+    final String columnList = TextUtils.join(",", columns);
+    final String insert = "INSERT INTO " + table + "(" + SyncColumns.UPDATED + ","
+        + columnList + ") SELECT " + updated + "," + columnList + " FROM " + stagingTable
+        + " WHERE " + idColumn + " NOT IN (SELECT " + idColumn + " FROM " + table + ")";
+
+    return executeUpdateDelete(db, update.toString()) + executeUpdateDelete(db, insert);
+  }
+
+  /**
+   * Makes the {@code idColumn} values mapped to each staged session in {@code table} equal to
+   * the staged ones, only deleting and inserting the mappings that differ.
+   */
+  private static int replaceMappingsFromStaging(SQLiteDatabase db, String table,
+      String stagingTable, String idColumn) {
+    final String sessionId = SessionsSpeakers.SESSION_ID;
+    final String delete = "DELETE FROM " + table
+        + " WHERE " + sessionId + " IN (SELECT " + sessionId + " FROM "
+        + Tables.IMPORT_SESSIONS + ")"
+        + " AND NOT EXISTS (SELECT 1 FROM " + stagingTable + " i"
+        + " WHERE i." + sessionId + "=" + table + "." + sessionId
+        + " AND i." + idColumn + "=" + table + "." + idColumn + ")";
+    final String insert = "INSERT INTO " + table + "(" + sessionId + "," + idColumn + ")"
+        + " SELECT " + sessionId + "," + idColumn + " FROM " + stagingTable + " i"
+        + " WHERE NOT EXISTS (SELECT 1 FROM " + table + " m"
+        + " WHERE m." + sessionId + "=i." + sessionId
+        + " AND m." + idColumn + "=i." + idColumn + ")";
+    return executeUpdateDelete(db, delete) + executeUpdateDelete(db, insert);
+  }
+
+  private static int executeUpdateDelete(SQLiteDatabase db, String sql) {
+    final SQLiteStatement statement = db.compileStatement(sql);
+    try {
+      return statement.executeUpdateDelete();
+    } finally {
+      statement.close();
+    }
+  }
+
   @Override
   public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
     LOGD(TAG, "onUpgrade() from " + oldVersion + " to " + newVersion);
@@ -357,6 +840,49 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
 
     LOGD(TAG, "Upgrading database from 2017 release C to 2017 release D.");
     version = VER_2017_RELEASE_D;
+
+    if (version == VER_2017_RELEASE_D) {
+      LOGD(TAG, "Upgrading database from 2017 release D to 2017 release E.");
+      createIndexes(db);
+      version = VER_2017_RELEASE_E;
+      // Only indexes were added, so the data is still good if we started from release D.
+      dataInvalidated = oldVersion < VER_2017_RELEASE_D;
+    }
+
+    if (version == VER_2017_RELEASE_E) {
+      LOGD(TAG, "Upgrading database from 2017 release E to 2017 release F.");
+      createSearchIndexTriggers(db);
+      // Documents written before release F aren't keyed by docid; rebuild them once so the
+      // triggers can find them. Every upgrade passes through here, so later ones must skip it.
+      if (oldVersion < VER_2017_RELEASE_F) {
+        updateSessionSearchIndex(db);
+      }
+      version = VER_2017_RELEASE_F;
+    }
+
+    if (version == VER_2017_RELEASE_F) {
+      LOGD(TAG, "Upgrading database from 2017 release F to 2017 release G.");
+      if (oldVersion < VER_2017_RELEASE_G) {
+        createScheduleSessionsTable(db);
+      }
+      version = VER_2017_RELEASE_G;
+    }
+
+    if (version == VER_2017_RELEASE_G) {
+      LOGD(TAG, "Upgrading database from 2017 release G to 2017 release H.");
+      createRoomsScheduleDeleteTrigger(db);
+      // Rooms deleted before the trigger existed still have their name in schedule_sessions
+      db.execSQL("UPDATE " + Tables.SCHEDULE_SESSIONS + " SET " + Sessions.ROOM_NAME
+          + "=NULL WHERE " + Sessions.ROOM_NAME + " IS NOT NULL AND " + Sessions.ROOM_ID
+          + " NOT IN (SELECT " + Rooms.ROOM_ID + " FROM " + Tables.ROOMS + ")");
+      version = VER_2017_RELEASE_H;
+    }
+
+    if (version == VER_2017_RELEASE_H) {
+      LOGD(TAG, "Upgrading database from 2017 release H to 2017 release I.");
+      createImportStagingTables(db);
+      version = VER_2017_RELEASE_I;
+    }
     LOGD(TAG, "After upgrade logic, at version " + version);
 
     // At this point, we ran out of upgrade logic, so if we are still at the wrong
@@ -366,8 +892,30 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
 
       // Drop triggers and tables in reverse order of creation.
 
+      db.execSQL("DROP TABLE IF EXISTS " + Tables.IMPORT_SESSIONS_TAGS);
+      db.execSQL("DROP TABLE IF EXISTS " + Tables.IMPORT_SESSIONS_SPEAKERS);
+      db.execSQL("DROP TABLE IF EXISTS " + Tables.IMPORT_SPEAKERS);
+      db.execSQL("DROP TABLE IF EXISTS " + Tables.IMPORT_SESSIONS);
+
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.ROOMS_SCHEDULE_DELETE);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.ROOMS_SCHEDULE_UPDATE);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.ROOMS_SCHEDULE_INSERT);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SCHEDULE_DELETE);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SCHEDULE_UPDATE);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SCHEDULE_INSERT);
+      db.execSQL("DROP TABLE IF EXISTS " + Tables.SCHEDULE_SESSIONS);
+
       db.execSQL("DROP TABLE IF EXISTS " + Tables.CARDS);
 
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SPEAKERS_SEARCH_DELETE);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SPEAKERS_SEARCH_UPDATE);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SPEAKERS_SEARCH_INSERT);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SPEAKERS_SEARCH_DELETE);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SPEAKERS_SEARCH_INSERT);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SEARCH_DELETE);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SEARCH_UPDATE);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SEARCH_INSERT);
+      db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SEARCH_BEFORE_INSERT);
       db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_MY_SCHEDULE_DELETE);
       db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_SPEAKERS_DELETE);
       db.execSQL("DROP TRIGGER IF EXISTS " + Triggers.SESSIONS_TAGS_DELETE);
@@ -402,5 +950,7 @@ public class ScheduleDatabase extends SQLiteOpenHelper {
 
   public static void deleteDatabase(Context context) {
     context.deleteDatabase(DATABASE_NAME);
+    // The sync validators describe the deleted data, a conditional sync mustn't skip the import
+    ConferenceDataHandler.resetDataTimestamp(context);
   }
 }
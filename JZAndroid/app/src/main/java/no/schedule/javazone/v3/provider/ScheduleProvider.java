@@ -8,13 +8,16 @@ import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
+import android.database.CrossProcessCursorWrapper;
 import android.database.Cursor;
 import android.database.MatrixCursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
 import android.provider.BaseColumns;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -23,8 +26,10 @@ import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 
+import no.schedule.javazone.v3.BuildConfig;
 import no.schedule.javazone.v3.Config;
 import no.schedule.javazone.v3.sync.ScheduleProviderUriMatcher;
 import no.schedule.javazone.v3.sync.ScheduleUriEnum;
@@ -49,6 +54,24 @@ public class ScheduleProvider extends ContentProvider {
 
   private ScheduleProviderUriMatcher mUriMatcher;
 
+  /**
+   * State of the {@link #applyBatch} or {@link #bulkInsert} running on the current thread, or
+   * {@code null} outside of one.
+   */
+  private final ThreadLocal<BatchState> mBatchState = new ThreadLocal<>();
+
+  /**
+   * Batches of at least this many rows or operations hold off WAL checkpoints until they are
+   * done, see {@link ScheduleDatabase#suspendAutoCheckpoint}.
+   */
+  private static final int LARGE_BATCH_SIZE = 100;
+
+  /**
+   * Query timings, on by default in builds with debug tools. Can be switched with the
+   * {@code --query-stats on|off|reset} and {@code --slow-query-ms <ms>} dump arguments.
+   */
+  private final QueryStats mQueryStats = new QueryStats(BuildConfig.ENABLE_DEBUG_TOOLS);
+
   /**
    * Providing important state information to be included in bug reports.
    *
@@ -58,6 +81,7 @@ public class ScheduleProvider extends ContentProvider {
   @Override
   public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
     Context context = getContext();
+    applyDumpArgs(args);
 
     // Using try/catch block in case there are issues retrieving information to log.
     try {
@@ -74,6 +98,7 @@ public class ScheduleProvider extends ContentProvider {
       boolean canGetAuthToken = !TextUtils.isEmpty(AccountUtils.getAuthToken(context));
       writer.print("Can an auth token be retrieved: ");
       writer.println(canGetAuthToken);
+      mQueryStats.dump(writer);
 
     } catch (Exception exception) {
       writer.append("Exception while dumping state: ");
@@ -81,6 +106,24 @@ public class ScheduleProvider extends ContentProvider {
     }
   }
 
+  private void applyDumpArgs(String[] args) {
+    if (args == null) {
+      return;
+    }
+    for (int i = 0; i + 1 < args.length; i++) {
+      if ("--query-stats".equals(args[i])) {
+        final String value = args[++i];
+        if ("reset".equals(value)) {
+          mQueryStats.reset();
+        } else {
+          mQueryStats.setEnabled("on".equals(value));
+        }
+      } else if ("--slow-query-ms".equals(args[i]) && TextUtils.isDigitsOnly(args[i + 1])) {
+        mQueryStats.setSlowQueryThresholdMs(Long.parseLong(args[++i]));
+      }
+    }
+  }
+
   @Override
   public boolean onCreate() {
     mOpenHelper = new ScheduleDatabase(getContext());
@@ -88,6 +131,19 @@ public class ScheduleProvider extends ContentProvider {
     return true;
   }
 
+  @VisibleForTesting
+  ScheduleDatabase getOpenHelper() {
+    return mOpenHelper;
+  }
+
+  /**
+   * Closes the database, for tests that create their own provider instance.
+   */
+  @Override
+  public void shutdown() {
+    mOpenHelper.close();
+  }
+
   private void deleteDatabase() {
     // TODO: wait for content provider operations to finish, then tear down
     mOpenHelper.close();
@@ -122,35 +178,42 @@ public class ScheduleProvider extends ContentProvider {
   /**
    * Adds the {@code tagsFilter} query parameter to the given {@code builder}. This query
    * parameter is used when the user makes a selection containing multiple filters.
+   *
+   * @param sessionIdColumn the qualified session ID column of the table being queried
    */
-  private void addTagsFilter(SelectionBuilder builder, String tagsFilter, String numCategories) {
-    // Note: for context, remember that session queries are done on a join of sessions
-    // and the sessions_tags relationship table, and are GROUP'ed BY the session ID.
+  private void addTagsFilter(SelectionBuilder builder, String sessionIdColumn, String tagsFilter,
+      String numCategories) {
+    // Note: the tags are looked up per session in sessions_tags, whose (session_id, tag_id)
+    // index answers the subquery directly, rather than by filtering the rows of a join with it.
+    // That way a session is a single row however many tags it has, and the query doesn't have
+    // to group the rows of all tags to count the matching ones.
     String[] requiredTags = tagsFilter.split(",");
     if (requiredTags.length == 0) {
       // filtering by 0 tags -- no-op
       return;
-    } else if (requiredTags.length == 1) {
-      // filtering by only one tag, so a simple WHERE clause suffices
-      builder.where(Tags.TAG_ID + "=?", requiredTags[0]);
-    } else {
-      // Filtering by multiple tags, so we must add a WHERE clause with an IN operator,
-      // and add a HAVING statement to exclude groups that fall short of the number
-      // of required tags. For example, if requiredTags is { "X", "Y", "Z" }, and a certain
-      // session only has tags "X" and "Y", it will be excluded by the HAVING statement.
-      int categories = 1;
-      if (numCategories != null && TextUtils.isDigitsOnly(numCategories)) {
-        try {
-          categories = Integer.parseInt(numCategories);
-          LOGD(TAG, "Categories being used " + categories);
-        } catch (Exception ex) {
-          LOGE(TAG, "exception parsing categories ", ex);
-        }
+    }
+    // A session must have at least as many of the required tags as there are categories. For
+    // example, if requiredTags is { "X", "Y", "Z" } across 3 categories, and a certain session
+    // only has tags "X" and "Y", it is excluded. A single tag always has to match by itself.
+    int categories = 1;
+    if (requiredTags.length > 1 && numCategories != null
+        && TextUtils.isDigitsOnly(numCategories)) {
+      try {
+        categories = Math.max(1, Integer.parseInt(numCategories));
+        LOGD(TAG, "Categories being used " + categories);
+      } catch (Exception ex) {
+        LOGE(TAG, "exception parsing categories ", ex);
       }
-      String questionMarkTuple = makeQuestionMarkTuple(requiredTags.length);
-      builder.where(Tags.TAG_ID + " IN " + questionMarkTuple, requiredTags);
-      builder.having(
-          "COUNT(" + Qualified.SESSIONS_SESSION_ID + ") >= " + categories);
+    }
+    String matchingTags = "FROM " + Tables.SESSIONS_TAGS
+        + " WHERE " + Qualified.SESSIONS_TAGS_SESSION_ID + "=" + sessionIdColumn
+        + " AND " + Qualified.SESSIONS_TAGS_TAG_ID + " IN "
+        + makeQuestionMarkTuple(requiredTags.length);
+    if (categories == 1) {
+      // A semi-join, which stops at the first matching tag
+      builder.where("EXISTS (SELECT 1 " + matchingTags + ")", requiredTags);
+    } else {
+      builder.where("(SELECT COUNT(*) " + matchingTags + ")>=" + categories, requiredTags);
     }
   }
 
@@ -159,9 +222,8 @@ public class ScheduleProvider extends ContentProvider {
   public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                       String sortOrder) {
     final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
-
-    String tagsFilter = uri.getQueryParameter(Sessions.QUERY_PARAMETER_TAG_FILTER);
-    String categories = uri.getQueryParameter(Sessions.QUERY_PARAMETER_CATEGORIES);
+    final boolean timed = mQueryStats.isEnabled();
+    final long startNanos = timed ? System.nanoTime() : 0;
 
     ScheduleUriEnum matchingUriEnum = mUriMatcher.matchUri(uri);
 
@@ -175,18 +237,17 @@ public class ScheduleProvider extends ContentProvider {
     switch (matchingUriEnum) {
       default: {
         // Most cases are handled with simple SelectionBuilder.
-        final SelectionBuilder builder = buildExpandedSelection(uri, matchingUriEnum.code);
-
-        // If a special filter was specified, try to apply it.
-        if (!TextUtils.isEmpty(tagsFilter) && !TextUtils.isEmpty(categories)) {
-          addTagsFilter(builder, tagsFilter, categories);
-        }
+        final SelectionBuilder builder = buildQuerySelection(uri, matchingUriEnum);
 
         boolean distinct = ScheduleContractHelper.isQueryDistinct(uri);
 
         Cursor cursor = builder
             .where(selection, selectionArgs)
             .query(db, distinct, projection, sortOrder, null);
+        if (timed) {
+          cursor = new TimedCursor(cursor, db, matchingUriEnum, builder, distinct, projection,
+              sortOrder, null, startNanos);
+        }
 
         Context context = getContext();
         if (null != context) {
@@ -211,7 +272,12 @@ public class ScheduleProvider extends ContentProvider {
         };
 
         final String limit = uri.getQueryParameter(SearchManager.SUGGEST_PARAMETER_LIMIT);
-        return builder.query(db, false, projection, SearchSuggest.DEFAULT_SORT, limit);
+        Cursor cursor = builder.query(db, false, projection, SearchSuggest.DEFAULT_SORT, limit);
+        if (timed) {
+          cursor = new TimedCursor(cursor, db, matchingUriEnum, builder, false, projection,
+              SearchSuggest.DEFAULT_SORT, limit, startNanos);
+        }
+        return cursor;
       }
       case SEARCH_TOPICS_SESSIONS: {
         if (selectionArgs == null || selectionArgs.length == 0) {
@@ -239,6 +305,141 @@ public class ScheduleProvider extends ContentProvider {
     }
   }
 
+  /**
+   * Builds the selection {@link #query} uses for the URIs it handles with a
+   * {@link SelectionBuilder}, including the tag filter.
+   */
+  private SelectionBuilder buildQuerySelection(Uri uri, ScheduleUriEnum matchingUriEnum) {
+    final SelectionBuilder builder = buildExpandedSelection(uri, matchingUriEnum.code);
+
+    // If a special filter was specified, try to apply it.
+    String tagsFilter = uri.getQueryParameter(Sessions.QUERY_PARAMETER_TAG_FILTER);
+    String categories = uri.getQueryParameter(Sessions.QUERY_PARAMETER_CATEGORIES);
+    if (!TextUtils.isEmpty(tagsFilter) && !TextUtils.isEmpty(categories)) {
+      addTagsFilter(builder, matchingUriEnum == ScheduleUriEnum.SESSIONS_SCHEDULE
+          ? Qualified.SCHEDULE_SESSIONS_SESSION_ID : Qualified.SESSIONS_SESSION_ID,
+          tagsFilter, categories);
+    }
+    return builder;
+  }
+
+  /**
+   * Returns the {@code EXPLAIN QUERY PLAN} details of the query {@link #query} makes for the
+   * given arguments, one step per line. Only for the URIs handled with a
+   * {@link SelectionBuilder}.
+   */
+  @VisibleForTesting
+  String explainQueryPlan(Uri uri, String[] projection, String selection,
+      String[] selectionArgs, String sortOrder) {
+    final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+    final SelectionBuilder builder = buildQuerySelection(uri, mUriMatcher.matchUri(uri));
+    return builder
+        .where(selection, selectionArgs)
+        .explainQueryPlan(db, ScheduleContractHelper.isQueryDistinct(uri), projection,
+            sortOrder, null);
+  }
+
+  /**
+   * Returns the SQL {@link #query} compiles for the given arguments, without the values bound
+   * to it. Only for the URIs handled with a {@link SelectionBuilder}.
+   */
+  @VisibleForTesting
+  String buildQuerySql(Uri uri, String[] projection, String selection, String[] selectionArgs,
+      String sortOrder) {
+    final SelectionBuilder builder = buildQuerySelection(uri, mUriMatcher.matchUri(uri));
+    return builder
+        .where(selection, selectionArgs)
+        .buildQuery(ScheduleContractHelper.isQueryDistinct(uri), projection, sortOrder, null);
+  }
+
+  /**
+   * Adds its query to {@link #mQueryStats} when it is first read, with the query plan if it was
+   * slow. Cursors run their query when they fill their first window, which the caller does right
+   * away, {@link android.content.ContentResolver#query} and the loaders by counting the rows.
+   * The provider leaves that to the caller's thread, as it does with stats disabled, and the
+   * time recorded runs until the window is filled.
+   */
+  private class TimedCursor extends CrossProcessCursorWrapper {
+    private final SQLiteDatabase mDb;
+    private final ScheduleUriEnum mMatchingUriEnum;
+    private final SelectionBuilder mBuilder;
+    private final boolean mDistinct;
+    private final String[] mProjection;
+    private final String mSortOrder;
+    private final String mLimit;
+    private final long mStartNanos;
+    private boolean mRecorded;
+
+    /**
+     * The arguments besides {@code cursor} are those the query was made with.
+     */
+    TimedCursor(Cursor cursor, SQLiteDatabase db, ScheduleUriEnum matchingUriEnum,
+        SelectionBuilder builder, boolean distinct, String[] projection, String sortOrder,
+        String limit, long startNanos) {
+      super(cursor);
+      mDb = db;
+      mMatchingUriEnum = matchingUriEnum;
+      mBuilder = builder;
+      mDistinct = distinct;
+      mProjection = projection;
+      mSortOrder = sortOrder;
+      mLimit = limit;
+      mStartNanos = startNanos;
+    }
+
+    @Override
+    public int getCount() {
+      recordOnce();
+      return super.getCount();
+    }
+
+    @Override
+    public boolean move(int offset) {
+      recordOnce();
+      return super.move(offset);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+      recordOnce();
+      return super.moveToPosition(position);
+    }
+
+    @Override
+    public boolean moveToFirst() {
+      recordOnce();
+      return super.moveToFirst();
+    }
+
+    @Override
+    public boolean moveToNext() {
+      recordOnce();
+      return super.moveToNext();
+    }
+
+    private void recordOnce() {
+      if (mRecorded) {
+        return;
+      }
+      mRecorded = true;
+      // Fills the first window, running the query
+      super.getCount();
+      final long durationNanos = System.nanoTime() - mStartNanos;
+      mQueryStats.record(mMatchingUriEnum, durationNanos);
+      if (mQueryStats.isSlow(durationNanos)) {
+        final long explainStart = System.nanoTime();
+        String plan;
+        try {
+          plan = mBuilder.explainQueryPlan(mDb, mDistinct, mProjection, mSortOrder, mLimit);
+        } catch (SQLException e) {
+          plan = "Could not explain query: " + e.getMessage();
+        }
+        mQueryStats.recordSlowQuery(mMatchingUriEnum, durationNanos, plan,
+            System.nanoTime() - explainStart);
+      }
+    }
+  }
+
   /**
    * Create a {@link MatrixCursor} given the tags and search cursors.
    *
@@ -284,7 +485,7 @@ public class ScheduleProvider extends ContentProvider {
   @Override
   public Uri insert(Uri uri, ContentValues values) {
     LOGV(TAG, "insert(uri=" + uri + ", values=" + values.toString()
-        + ", account=" + getCurrentAccountName(uri, false) + ")");
+        + ", account=" + getCurrentAccountName(uri) + ")");
     final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
     ScheduleUriEnum matchingUriEnum = mUriMatcher.matchUri(uri);
     if (matchingUriEnum.table != null) {
@@ -322,7 +523,7 @@ public class ScheduleProvider extends ContentProvider {
         return Tags.buildTagUri(values.getAsString(Tags.TAG_ID));
       }
       case MY_SCHEDULE: {
-        values.put(MySchedule.MY_SCHEDULE_ACCOUNT_NAME, getCurrentAccountName(uri, false));
+        values.put(MySchedule.MY_SCHEDULE_ACCOUNT_NAME, getCurrentAccountName(uri));
         db.insertOrThrow(Tables.MY_SCHEDULE, null, values);
         notifyChange(uri);
         Uri sessionUri = Sessions.buildSessionUri(
@@ -342,6 +543,12 @@ public class ScheduleProvider extends ContentProvider {
         return ScheduleContract.MapTiles.buildFloorUri(values.getAsString(
             ScheduleContract.MapTiles.TILE_FLOOR));
       }
+      case IMPORT_SESSIONS:
+      case IMPORT_SPEAKERS:
+      case IMPORT_SESSIONS_SPEAKERS:
+      case IMPORT_SESSIONS_TAGS: {
+        return uri;
+      }
       default: {
         throw new UnsupportedOperationException("Unknown insert uri: " + uri);
       }
@@ -351,7 +558,7 @@ public class ScheduleProvider extends ContentProvider {
   /** {@inheritDoc} */
   @Override
   public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
-    String accountName = getCurrentAccountName(uri, false);
+    String accountName = getCurrentAccountName(uri);
     Uri notifyUri = null;
     LOGV(TAG, "update(uri=" + uri + ", values=" + values.toString()
         + ", account=" + accountName + ")");
@@ -365,6 +572,16 @@ public class ScheduleProvider extends ContentProvider {
       ScheduleDatabase.updateSessionSearchIndex(db);
       return 1;
     }
+    if (matchingUriEnum == ScheduleUriEnum.IMPORT_COMMIT) {
+      // apply the staged import; the mappings it changes are read through the sessions paths
+      int retVal = ScheduleDatabase.applyImportStaging(db,
+          values.getAsLong(SyncColumns.UPDATED));
+      if (retVal > 0) {
+        notifyChange(Sessions.CONTENT_URI);
+        notifyChange(Speakers.CONTENT_URI);
+      }
+      return retVal;
+    }
 
     final SelectionBuilder builder = buildSimpleSelection(uri);
     if (matchingUriEnum == ScheduleUriEnum.SESSIONS_ID_RELATED) {
@@ -391,7 +608,7 @@ public class ScheduleProvider extends ContentProvider {
   /** {@inheritDoc} */
   @Override
   public int delete(Uri uri, String selection, String[] selectionArgs) {
-    String accountName = getCurrentAccountName(uri, false);
+    String accountName = getCurrentAccountName(uri);
     LOGV(TAG, "delete(uri=" + uri + ", account=" + accountName + ")");
     if (uri == ScheduleContract.BASE_CONTENT_URI) {
       // Handle whole database deletes (e.g. when signing out)
@@ -400,8 +617,13 @@ public class ScheduleProvider extends ContentProvider {
       return 1;
     }
     final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-    final SelectionBuilder builder = buildSimpleSelection(uri);
     ScheduleUriEnum matchingUriEnum = mUriMatcher.matchUri(uri);
+    if (matchingUriEnum == ScheduleUriEnum.IMPORT) {
+      // drop whatever an unfinished import left staged
+      ScheduleDatabase.clearImportStaging(db);
+      return 1;
+    }
+    final SelectionBuilder builder = buildSimpleSelection(uri);
     if (matchingUriEnum == ScheduleUriEnum.MY_SCHEDULE) {
       builder.where(MySchedule.MY_SCHEDULE_ACCOUNT_NAME + "=?", accountName);
     }
@@ -413,7 +635,61 @@ public class ScheduleProvider extends ContentProvider {
     return retVal;
   }
 
+  /**
+   * Inserts all {@code values} into the table matching {@code uri} in a single transaction and
+   * sends a single change notification at the end. This is the fast path for importing large
+   * numbers of rows; the import stages its records with it. The statement for each column set
+   * is compiled once per connection and kept in SQLiteConnection's prepared statement cache.
+   */
+  @Override
+  public int bulkInsert(Uri uri, ContentValues[] values) {
+    ScheduleUriEnum matchingUriEnum = mUriMatcher.matchUri(uri);
+    if (matchingUriEnum.table == null) {
+      // Needs the per-uri handling in insert().
+      return super.bulkInsert(uri, values);
+    }
+    final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+    BatchState batch = beginBatch(db, values.length);
+    try {
+      for (ContentValues row : values) {
+        db.insertOrThrow(matchingUriEnum.table, null, row);
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      endBatch(db, batch);
+    }
+    notifyChange(uri);
+    return values.length;
+  }
+
+  private BatchState beginBatch(SQLiteDatabase db, int size) {
+    db.beginTransaction();
+    BatchState batch = new BatchState(size >= LARGE_BATCH_SIZE);
+    mBatchState.set(batch);
+    if (batch.large) {
+      mOpenHelper.suspendAutoCheckpoint(db);
+    }
+    return batch;
+  }
+
+  private void endBatch(SQLiteDatabase db, BatchState batch) {
+    mBatchState.set(null);
+    db.endTransaction();
+    if (batch.large) {
+      mOpenHelper.scheduleCheckpoint(db);
+    }
+  }
+
   private void notifyChange(Uri uri) {
+    BatchState batch = mBatchState.get();
+    if (batch != null) {
+      // Collapse to the top-level path; sent once the batch is done. This includes the
+      // service API uris of the import, which would otherwise have to notify every path.
+      List<String> segments = uri.getPathSegments();
+      batch.pendingNotifications.add(segments.isEmpty() ? uri
+          : ScheduleContract.BASE_CONTENT_URI.buildUpon().appendPath(segments.get(0)).build());
+      return;
+    }
     if (!ScheduleContractHelper.isUriCalledFromServiceApi(uri)) {
       Context context = getContext();
       context.getContentResolver().notifyChange(uri, null);
@@ -428,23 +704,33 @@ public class ScheduleProvider extends ContentProvider {
    * Apply the given set of {@link ContentProviderOperation}, executing inside
    * a {@link SQLiteDatabase} transaction. All changes will be rolled back if
    * any single one fails.
+   * <p>
+   * The batch never yields: the database is in WAL mode, so readers keep seeing the last
+   * committed data while it runs instead of waiting for it, and never see half of a batch.
+   * <p>
+   * Change notifications are sent once per affected top-level path after the batch has been
+   * committed, including those of service API uris.
    */
   @Override
   public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
       throws OperationApplicationException {
     final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-    db.beginTransaction();
+    BatchState batch = beginBatch(db, operations.size());
+    final ContentProviderResult[] results;
     try {
       final int numOperations = operations.size();
-      final ContentProviderResult[] results = new ContentProviderResult[numOperations];
+      results = new ContentProviderResult[numOperations];
       for (int i = 0; i < numOperations; i++) {
         results[i] = operations.get(i).apply(this, results, i);
       }
       db.setTransactionSuccessful();
-      return results;
     } finally {
-      db.endTransaction();
+      endBatch(db, batch);
     }
+    for (Uri uri : batch.pendingNotifications) {
+      getContext().getContentResolver().notifyChange(uri, null);
+    }
+    return results;
   }
 
   /**
@@ -505,7 +791,7 @@ public class ScheduleProvider extends ContentProvider {
       case MY_SCHEDULE: {
         return builder.table(Tables.MY_SCHEDULE)
             .where(MySchedule.MY_SCHEDULE_ACCOUNT_NAME + "=?",
-                getCurrentAccountName(uri, false));
+                getCurrentAccountName(uri));
       }
       case SPEAKERS_ID: {
         final String speakerId = Speakers.getSpeakerId(uri);
@@ -518,15 +804,11 @@ public class ScheduleProvider extends ContentProvider {
     }
   }
 
-  private String getCurrentAccountName(Uri uri, boolean sanitize) {
+  private String getCurrentAccountName(Uri uri) {
     String accountName = ScheduleContractHelper.getOverrideAccountName(uri);
     if (accountName == null) {
       accountName = AccountUtils.getActiveAccountName(getContext());
     }
-    if (sanitize) {
-      // sanitize accountName when concatenating (http://xkcd.com/327/)
-      accountName = (accountName != null) ? accountName.replace("'", "''") : null;
-    }
     return accountName;
   }
 
@@ -541,7 +823,12 @@ public class ScheduleProvider extends ContentProvider {
     if (matchingUriEnum == null) {
       throw new UnsupportedOperationException("Unknown uri: " + uri);
     }
-    String accountName = getCurrentAccountName(uri, true);
+    // Bound as an argument of the myschedule joins. No account has an empty name, so without
+    // an account nothing is starred.
+    String accountName = getCurrentAccountName(uri);
+    if (accountName == null) {
+      accountName = "";
+    }
     switch (matchingUriEnum) {
       case BLOCKS: {
         return builder.table(Tables.BLOCKS);
@@ -580,7 +867,7 @@ public class ScheduleProvider extends ContentProvider {
       }
       case ROOMS_ID_SESSIONS: {
         final String roomId = Rooms.getRoomId(uri);
-        return builder.table(Tables.SESSIONS_JOIN_ROOMS, accountName, accountName)
+        return builder.table(Tables.SESSIONS_JOIN_ROOMS, accountName)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
             .where(Qualified.SESSIONS_ROOM_ID + "=?", roomId)
@@ -593,16 +880,23 @@ public class ScheduleProvider extends ContentProvider {
         // use the current user to select them properly.  Reserved sessions are handled
         // similarly.
         return builder
-            .table(Tables.SESSIONS_JOIN_ROOMS_TAGS, accountName, accountName)
+            .table(Tables.SESSIONS_JOIN_ROOMS_TAGS, accountName)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
             .mapToTable(Sessions.SESSION_ID, Tables.SESSIONS)
             .map(Sessions.SESSION_IN_MY_SCHEDULE, "IFNULL(in_schedule, 0)")
             .groupBy(Qualified.SESSIONS_SESSION_ID);
       }
+      case SESSIONS_SCHEDULE: {
+        // One row per session already, with the room resolved at import time
+        return builder.table(Tables.SCHEDULE_SESSIONS_JOIN_MYSCHEDULE, accountName)
+            .mapToTable(Sessions._ID, Tables.SCHEDULE_SESSIONS)
+            .mapToTable(Sessions.SESSION_ID, Tables.SCHEDULE_SESSIONS)
+            .map(Sessions.SESSION_IN_MY_SCHEDULE, "IFNULL(in_schedule, 0)");
+      }
       case SESSIONS_MY_SCHEDULE: {
         return builder.table(Tables.SESSIONS_JOIN_ROOMS_TAGS_FEEDBACK_MYSCHEDULE,
-            accountName, accountName)
+            accountName)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
             .mapToTable(Sessions.SESSION_ID, Tables.SESSIONS)
@@ -614,7 +908,7 @@ public class ScheduleProvider extends ContentProvider {
         final long[] interval = Sessions.getInterval(uri);
 
         return builder.table(Tables.SESSIONS_JOIN_ROOMS_TAGS_FEEDBACK_MYSCHEDULE,
-            accountName, accountName)
+            accountName)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
             .mapToTable(Sessions.SESSION_ID, Tables.SESSIONS)
@@ -622,13 +916,15 @@ public class ScheduleProvider extends ContentProvider {
             .where(Sessions.NOT_IN_SCHEDULE_SELECTION)
             .where(Sessions.SESSION_START + ">=?", String.valueOf(interval[0]))
             .where(Sessions.SESSION_START + "<?", String.valueOf(interval[1]))
-            .groupBy(Qualified.SESSIONS_SESSION_ID);
+            // The unary plus keeps SQLite from walking the whole session_id index to group
+            // the rows, so that it reads the interval from the start time index instead.
+            .groupBy("+" + Qualified.SESSIONS_SESSION_ID);
       }
       case SESSIONS_SEARCH: {
         final String query = Sessions.getSearchQuery(uri);
 
         return builder.table(Tables.SESSIONS_SEARCH_JOIN_SESSIONS_ROOMS,
-            accountName, accountName)
+            accountName)
             .map(Sessions.SEARCH_SNIPPET, Subquery.SESSIONS_SNIPPET)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.SESSION_ID, Tables.SESSIONS)
@@ -640,7 +936,7 @@ public class ScheduleProvider extends ContentProvider {
         final List<String> segments = uri.getPathSegments();
         final String time = segments.get(2);
 
-        return builder.table(Tables.SESSIONS_JOIN_ROOMS, accountName, accountName)
+        return builder.table(Tables.SESSIONS_JOIN_ROOMS, accountName)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
             .where(Sessions.SESSION_START + "<=?", time)
@@ -648,7 +944,7 @@ public class ScheduleProvider extends ContentProvider {
       }
       case SESSIONS_ID: {
         final String sessionId = Sessions.getSessionId(uri);
-        return builder.table(Tables.SESSIONS_JOIN_ROOMS, accountName, accountName)
+        return builder.table(Tables.SESSIONS_JOIN_ROOMS, accountName)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
             .mapToTable(Sessions.SESSION_ID, Tables.SESSIONS)
@@ -672,7 +968,7 @@ public class ScheduleProvider extends ContentProvider {
       case SESSIONS_ROOM_AFTER: {
         final String room = Sessions.getRoom(uri);
         final String time = Sessions.getAfterForRoom(uri);
-        return builder.table(Tables.SESSIONS_JOIN_ROOMS_TAGS, accountName, accountName)
+        return builder.table(Tables.SESSIONS_JOIN_ROOMS_TAGS, accountName)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
             .mapToTable(Sessions.SESSION_ID, Tables.SESSIONS)
@@ -686,7 +982,7 @@ public class ScheduleProvider extends ContentProvider {
       }
       case SESSIONS_AFTER: {
         final String time = Sessions.getAfter(uri);
-        return builder.table(Tables.SESSIONS_JOIN_ROOMS_TAGS, accountName, accountName)
+        return builder.table(Tables.SESSIONS_JOIN_ROOMS_TAGS, accountName)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.SESSION_ID, Tables.SESSIONS)
             .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
@@ -716,7 +1012,7 @@ public class ScheduleProvider extends ContentProvider {
       case SPEAKERS_ID_SESSIONS: {
         final String speakerId = Speakers.getSpeakerId(uri);
         return builder.table(Tables.SESSIONS_SPEAKERS_JOIN_SESSIONS_ROOMS,
-            accountName, accountName)
+            accountName)
             .mapToTable(Sessions._ID, Tables.SESSIONS)
             .mapToTable(Sessions.SESSION_ID, Tables.SESSIONS)
             .mapToTable(Sessions.ROOM_ID, Tables.SESSIONS)
@@ -737,6 +1033,15 @@ public class ScheduleProvider extends ContentProvider {
     throw new UnsupportedOperationException("openFile is not supported for " + uri);
   }
 
+  private static class BatchState {
+    final LinkedHashSet<Uri> pendingNotifications = new LinkedHashSet<>();
+    final boolean large;
+
+    BatchState(boolean large) {
+      this.large = large;
+    }
+  }
+
   private interface Subquery {
     String SESSIONS_SNIPPET = "snippet(" + Tables.SESSIONS_SEARCH + ",'{','}','\u2026')";
   }
@@ -750,6 +1055,9 @@ public class ScheduleProvider extends ContentProvider {
     String SESSIONS_ROOM_ID = Tables.SESSIONS + "." + Sessions.ROOM_ID;
     String SESSIONS_TAGS_SESSION_ID = Tables.SESSIONS_TAGS + "."
         + ScheduleDatabase.SessionsTags.SESSION_ID;
+    String SESSIONS_TAGS_TAG_ID = Tables.SESSIONS_TAGS + "."
+        + ScheduleDatabase.SessionsTags.TAG_ID;
+    String SCHEDULE_SESSIONS_SESSION_ID = Tables.SCHEDULE_SESSIONS + "." + Sessions.SESSION_ID;
 
     String SESSIONS_SPEAKERS_SESSION_ID = Tables.SESSIONS_SPEAKERS + "."
         + SessionsSpeakers.SESSION_ID;
@@ -17,8 +17,12 @@
 package no.schedule.javazone.v3.schedule;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.ViewHolder;
 import android.text.TextUtils;
@@ -31,6 +35,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import io.doist.recyclerviewext.sticky_headers.StickyHeaders;
 import no.schedule.javazone.v3.R;
@@ -50,10 +56,15 @@ public class ScheduleDayAdapter extends RecyclerView.Adapter<ViewHolder>
     private static final int ITEM_TYPE_SESSION = 0;
     private static final int ITEM_TYPE_BREAK = 1;
     private static final int ITEM_TYPE_TIME_HEADER = 2;
-    private static final int PAYLOAD_TAG_META = 7;
+    @VisibleForTesting
+    static final int PAYLOAD_TAG_META = 7;
 
-    // list of items served by this adapter
-    private final List<Object> mItems = new ArrayList<>();
+    // list of items served by this adapter; only touched on the main thread
+    private List<Object> mItems = new ArrayList<>();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // incremented for every update, so that results of superseded diffs are dropped
+    private int mUpdateGeneration;
 
     private final boolean mShowTimeSeparators;
     private final float stuckHeaderElevation;
@@ -131,7 +142,12 @@ public class ScheduleDayAdapter extends RecyclerView.Adapter<ViewHolder>
 
     @Override
     public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+        if (!payloads.isEmpty() && holder.getItemViewType() == ITEM_TYPE_SESSION
+                && payloads.contains(PAYLOAD_TAG_META)) {
+            ((SessionItemViewHolder) holder).bindMeta((ScheduleItem) mItems.get(position));
+        } else {
             onBindViewHolder(holder, position);
+        }
     }
 
     @Override
@@ -153,29 +169,67 @@ public class ScheduleDayAdapter extends RecyclerView.Adapter<ViewHolder>
     }
 
 
+    /**
+     * Replaces the items shown by this adapter. The first load is applied immediately; later
+     * updates are diffed against the current items on a background thread and dispatched as
+     * granular change events, with star and feedback changes rebound via
+     * {@link #PAYLOAD_TAG_META} only.
+     */
     public void updateItems(final List<ScheduleItem> items) {
-        mItems.clear();
-        if (items == null) {
+        final int generation = ++mUpdateGeneration;
+        if (items == null || items.isEmpty() || mItems.isEmpty()) {
+            mItems = flattenItems(items, mShowTimeSeparators);
             notifyDataSetChanged();
             return;
         }
 
-        if (!mShowTimeSeparators) {
-            mItems.addAll(items);
+        final List<Object> oldItems = mItems;
+        final List<ScheduleItem> newScheduleItems = new ArrayList<>(items);
+        DiffExecutorHolder.EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Object> newItems = flattenItems(newScheduleItems, mShowTimeSeparators);
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new ItemDiffCallback(oldItems, newItems), true);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mUpdateGeneration) {
+                            // A newer update has been posted since, drop this one
+                            return;
+                        }
+                        mItems = newItems;
+                        result.dispatchUpdatesTo(ScheduleDayAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Builds the list of rows served by the adapter, inserting a time header before each run of
+     * items that share a start time.
+     */
+    private static List<Object> flattenItems(@Nullable List<ScheduleItem> items,
+            boolean showTimeSeparators) {
+        final List<Object> rows = new ArrayList<>();
+        if (items == null) {
+            return rows;
+        }
+        if (!showTimeSeparators) {
+            rows.addAll(items);
         } else {
             for (int i = 0, size = items.size(); i < size; i++) {
                 final ScheduleItem prev = i > 0 ? items.get(i - 1) : null;
                 final ScheduleItem item = items.get(i);
 
                 if (prev == null || !ScheduleItemHelper.sameStartTime(prev, item, true)) {
-                    mItems.add(new TimeSeperatorItem(item));
+                    rows.add(new TimeSeperatorItem(item));
                 }
-                mItems.add(item);
+                rows.add(item);
             }
         }
-
-        // TODO use DiffUtil
-        notifyDataSetChanged();
+        return rows;
     }
 
     public int findTimeHeaderPositionForTime(final long time) {
@@ -205,6 +259,91 @@ public class ScheduleDayAdapter extends RecyclerView.Adapter<ViewHolder>
         view.setTranslationZ(0f);
     }
 
+    /**
+     * Diffs are computed off the main thread, one at a time, so a burst of content changes can't
+     * pile up work in parallel. Results are handed back through
+     * {@link ScheduleDayAdapter#mMainHandler}.
+     * <p>
+     * The executor is created with the first diff, once the schedule has been loaded and
+     * changes, and is never shut down: adapters come and go with the schedule screens, and an
+     * idle thread is cheaper than starting one for every update.
+     */
+    private static class DiffExecutorHolder {
+        static final Executor EXECUTOR = Executors.newSingleThreadExecutor();
+    }
+
+    private static class ItemDiffCallback extends DiffUtil.Callback {
+        private final List<Object> mOldItems;
+        private final List<Object> mNewItems;
+
+        ItemDiffCallback(List<Object> oldItems, List<Object> newItems) {
+            mOldItems = oldItems;
+            mNewItems = newItems;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldItems.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewItems.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            final Object oldItem = mOldItems.get(oldItemPosition);
+            final Object newItem = mNewItems.get(newItemPosition);
+            if (oldItem instanceof ScheduleItem && newItem instanceof ScheduleItem) {
+                // Same identity as generateIdForScheduleItem, without its shared scratch array
+                final ScheduleItem o = (ScheduleItem) oldItem;
+                final ScheduleItem n = (ScheduleItem) newItem;
+                return o.type == n.type
+                        && TextUtils.equals(o.sessionId, n.sessionId)
+                        && TextUtils.equals(o.title, n.title)
+                        && o.startTime == n.startTime
+                        && o.endTime == n.endTime;
+            }
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            final Object oldItem = mOldItems.get(oldItemPosition);
+            final Object newItem = mNewItems.get(newItemPosition);
+            if (oldItem instanceof ScheduleItem) {
+                final ScheduleItem o = (ScheduleItem) oldItem;
+                final ScheduleItem n = (ScheduleItem) newItem;
+                return sameDisplayContent(o, n)
+                        && o.inSchedule == n.inSchedule
+                        && o.hasGivenFeedback == n.hasGivenFeedback;
+            }
+            // Time headers have no content besides their identity
+            return true;
+        }
+
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            final Object oldItem = mOldItems.get(oldItemPosition);
+            final Object newItem = mNewItems.get(newItemPosition);
+            if (oldItem instanceof ScheduleItem
+                    && sameDisplayContent((ScheduleItem) oldItem, (ScheduleItem) newItem)) {
+                // Only the star or feedback state changed
+                return PAYLOAD_TAG_META;
+            }
+            return null;
+        }
+
+        private static boolean sameDisplayContent(ScheduleItem o, ScheduleItem n) {
+            return o.sessionType == n.sessionType
+                    && o.isKeynote() == n.isKeynote()
+                    && o.flags == n.flags
+                    && TextUtils.equals(o.speakerNames, n.speakerNames)
+                    && TextUtils.equals(o.room, n.room);
+        }
+    }
+
     private static class TimeSeperatorViewHolder extends ViewHolder {
         private final TextView mStartTime;
 
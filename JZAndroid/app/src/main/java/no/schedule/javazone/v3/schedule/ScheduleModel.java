@@ -18,29 +18,36 @@ package no.schedule.javazone.v3.schedule;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.v4.util.SparseArrayCompat;
+import android.text.TextUtils;
 
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import no.schedule.javazone.v3.BuildConfig;
 import no.schedule.javazone.v3.Config;
 import no.schedule.javazone.v3.archframework.Model;
 import no.schedule.javazone.v3.archframework.QueryEnum;
 import no.schedule.javazone.v3.archframework.UserActionEnum;
+import no.schedule.javazone.v3.model.ScheduleConflictIndex;
 import no.schedule.javazone.v3.model.ScheduleHelper;
 import no.schedule.javazone.v3.model.ScheduleItem;
+import no.schedule.javazone.v3.model.ScheduleItemHelper;
 import no.schedule.javazone.v3.provider.ScheduleContract;
 import no.schedule.javazone.v3.util.AnalyticsHelper;
 import no.schedule.javazone.v3.util.SessionsHelper;
-import no.schedule.javazone.v3.util.ThrottledContentObserver;
+import no.schedule.javazone.v3.util.CoalescingContentObserver;
 
 import static no.schedule.javazone.v3.util.LogUtils.LOGD;
 import static no.schedule.javazone.v3.util.LogUtils.LOGE;
@@ -71,6 +78,9 @@ public class ScheduleModel implements Model<ScheduleModel.MyScheduleQueryEnum,
     @VisibleForTesting
     final SparseArrayCompat<List<ScheduleItem>> mScheduleData = new SparseArrayCompat<>();
 
+    // Starred sessions of all cached days, to update conflicts when a session is (un)starred
+    private final ScheduleConflictIndex mConflictIndex = new ScheduleConflictIndex();
+
     // The ScheduleHelper is responsible for feeding data in a format suitable to the Adapter.
     private final ScheduleHelper mScheduleHelper;
 
@@ -89,14 +99,15 @@ public class ScheduleModel implements Model<ScheduleModel.MyScheduleQueryEnum,
                     updateData(mScheduleDataQueryCallback);
                 }
             };
-    private MyThrottledContentObserverCallbacks mThrottledContentObserverCallbacks;
     /**
-     * Visible for classes extending this model, so UI tests can be written to simulate the system
-     * firing this observer.
+     * Observes only what the schedule is built from: sessions (with their rooms and tags, which
+     * are written along with them) and the user's schedule. Visible for classes extending this
+     * model, so UI tests can be written to simulate the system firing this observer.
      */
     @VisibleForTesting
-    protected final ThrottledContentObserver mObserver =
-            new ThrottledContentObserver(mThrottledContentObserverCallbacks);
+    protected final CoalescingContentObserver mObserver = new CoalescingContentObserver(
+            new Handler(), null, ScheduleContract.Sessions.CONTENT_URI,
+            ScheduleContract.MySchedule.CONTENT_URI);
 
     /**
      * @param scheduleHelper
@@ -132,20 +143,16 @@ public class ScheduleModel implements Model<ScheduleModel.MyScheduleQueryEnum,
      * Observe changes on base uri and in shared preferences
      */
     public void addDataObservers() {
-        mThrottledContentObserverCallbacks = new MyThrottledContentObserverCallbacks();
-        mThrottledContentObserverCallbacks.register(this);
-
-        mContext.getContentResolver().registerContentObserver(
-                ScheduleContract.BASE_CONTENT_URI, true, mObserver);
+        mObserver.setCallbacks(new ScheduleContentChangedCallbacks(this));
+        mObserver.register(mContext.getContentResolver());
 
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(mContext);
         sp.registerOnSharedPreferenceChangeListener(mPrefChangeListener);
     }
 
     private void removeDataObservers() {
-        mThrottledContentObserverCallbacks.unregister();
-        mThrottledContentObserverCallbacks = null;
-        mContext.getContentResolver().unregisterContentObserver(mObserver);
+        mObserver.setCallbacks(null);
+        mObserver.unregister(mContext.getContentResolver());
 
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(mContext);
         sp.unregisterOnSharedPreferenceChangeListener(mPrefChangeListener);
@@ -219,10 +226,13 @@ public class ScheduleModel implements Model<ScheduleModel.MyScheduleQueryEnum,
                 } else {
                     final String id = args.getString(SESSION_ID_KEY);
                     String title = args.getString(SESSION_TITLE_KEY);
+                    final boolean starred = action == MyScheduleUserActionEnum.SESSION_STAR;
                     mSessionsHelper.setSessionStarred(
-                            ScheduleContract.Sessions.buildSessionUri(id),
-                            action == MyScheduleUserActionEnum.SESSION_STAR, title);
-                    requestScheduleUpdateData(action, callback);
+                            ScheduleContract.Sessions.buildSessionUri(id), starred, title);
+                    // The write is batched with other toggles; show the new state right away
+                    // and let the content observer reload once it has been written.
+                    updateCachedStar(id, starred);
+                    callback.onModelUpdated(this, action);
                 }
                 break;
             default:
@@ -273,10 +283,11 @@ public class ScheduleModel implements Model<ScheduleModel.MyScheduleQueryEnum,
     }
 
     /**
-     * This updates the data, by calling {@link ScheduleFetcher#getScheduleDataAsync
-     * (LoadScheduleDataListener, long, long)} for each day. It is protected and not private, to
-     * allow us to extend this class and use mock data in UI tests (refer {@code
-     * StubMyScheduleModel} in {@code androidTest}).
+     * This updates the data, by calling {@link ScheduleHelper#getScheduleDataAsync
+     * (LoadMultiDayScheduleDataListener, long[][])} once for all days; each day's data is cached
+     * as soon as it has been read. It is protected and not private, to allow us to extend this
+     * class and use mock data in UI tests (refer {@code StubMyScheduleModel} in {@code
+     * androidTest}).
      */
     protected void updateData(final DataQueryCallback<MyScheduleQueryEnum> callback) {
         for (int i = 0; i < Config.CONFERENCE_DAYS.length; i++) {
@@ -289,14 +300,14 @@ public class ScheduleModel implements Model<ScheduleModel.MyScheduleQueryEnum,
             if (callback != null && mScheduleData.indexOfKey(dayId) >= 0) {
                 callback.onModelUpdated(this, MyScheduleQueryEnum.SCHEDULE);
             }
-            // Update cached data
-            mScheduleHelper.getScheduleDataAsync(new LoadScheduleDataListener() {
-                @Override
-                public void onDataLoaded(ArrayList<ScheduleItem> scheduleItems) {
-                    updateCache(dayId, scheduleItems, callback);
-                }
-            }, Config.CONFERENCE_DAYS[i][0], Config.CONFERENCE_DAYS[i][1]);
         }
+        // Update cached data
+        mScheduleHelper.getScheduleDataAsync(new LoadMultiDayScheduleDataListener() {
+            @Override
+            public void onDataLoaded(int dayIndex, ArrayList<ScheduleItem> scheduleItems) {
+                updateCache(dayIndex + 1, scheduleItems, callback);
+            }
+        }, Config.CONFERENCE_DAYS);
     }
 
     /**
@@ -307,6 +318,18 @@ public class ScheduleModel implements Model<ScheduleModel.MyScheduleQueryEnum,
      */
     protected void updateCache(int dayId, List<ScheduleItem> scheduleItems,
                                DataQueryCallback<MyScheduleQueryEnum> callback) {
+        final List<ScheduleItem> previous = mScheduleData.get(dayId);
+        if (previous != null) {
+            for (ScheduleItem item : previous) {
+                mConflictIndex.remove(item.sessionId);
+            }
+        }
+        mSessionsHelper.applyPendingStarChanges(scheduleItems);
+        for (ScheduleItem item : scheduleItems) {
+            mConflictIndex.update(item);
+        }
+        // Pending stars may differ from what the conflicts were computed with
+        ScheduleItemHelper.markConflicting(scheduleItems, mConflictIndex);
         mScheduleData.put(dayId, scheduleItems);
         if (callback != null) {
             callback.onModelUpdated(ScheduleModel.this,
@@ -314,6 +337,61 @@ public class ScheduleModel implements Model<ScheduleModel.MyScheduleQueryEnum,
         }
     }
 
+    /**
+     * Sets the star state of {@code sessionId} in the cached data, and updates the conflict flags
+     * of it and the sessions it overlaps. Items are replaced by updated copies rather than changed
+     * in place, since adapters diff against the lists they were given.
+     */
+    private void updateCachedStar(String sessionId, boolean starred) {
+        ScheduleItem session = null;
+        for (int i = 0; i < mScheduleData.size() && session == null; i++) {
+            for (ScheduleItem item : mScheduleData.valueAt(i)) {
+                if (TextUtils.equals(sessionId, item.sessionId)) {
+                    session = item;
+                    break;
+                }
+            }
+        }
+        if (session == null) {
+            return;
+        }
+
+        if (starred) {
+            mConflictIndex.put(sessionId, session.startTime, session.endTime);
+        } else {
+            mConflictIndex.remove(sessionId);
+        }
+        // Only the session and the ones overlapping it can have changed conflicts
+        final Set<String> affected = new HashSet<>();
+        final List<String> conflicts = new ArrayList<>();
+        mConflictIndex.findConflicts(sessionId, session.startTime, session.endTime, conflicts,
+                conflicts);
+        affected.add(sessionId);
+        affected.addAll(conflicts);
+
+        for (int i = 0; i < mScheduleData.size(); i++) {
+            final List<ScheduleItem> items = new ArrayList<>(mScheduleData.valueAt(i));
+            boolean changed = false;
+            for (int j = 0; j < items.size(); j++) {
+                final ScheduleItem item = items.get(j);
+                if (affected.contains(item.sessionId)) {
+                    final ScheduleItem copy = (ScheduleItem) item.clone();
+                    if (TextUtils.equals(sessionId, item.sessionId)) {
+                        copy.inSchedule = starred;
+                    }
+                    mConflictIndex.updateFlags(copy);
+                    if (copy.inSchedule != item.inSchedule || copy.flags != item.flags) {
+                        items.set(j, copy);
+                        changed = true;
+                    }
+                }
+            }
+            if (changed) {
+                mScheduleData.setValueAt(i, items);
+            }
+        }
+    }
+
     public DataQueryCallback<MyScheduleQueryEnum> getScheduleDataQueryCallback() {
         return mScheduleDataQueryCallback;
     }
@@ -366,20 +444,25 @@ public class ScheduleModel implements Model<ScheduleModel.MyScheduleQueryEnum,
         void onDataLoaded(ArrayList<ScheduleItem> scheduleItems);
     }
 
-    private static class MyThrottledContentObserverCallbacks implements ThrottledContentObserver.Callbacks {
-        private ScheduleModel mModel;
+    public interface LoadMultiDayScheduleDataListener {
+        /**
+         * @param dayIndex index of the day in the array of days that was requested
+         */
+        void onDataLoaded(int dayIndex, ArrayList<ScheduleItem> scheduleItems);
+    }
 
-        public void register(ScheduleModel model) {
-            mModel = model;
-        }
+    private static class ScheduleContentChangedCallbacks
+            implements CoalescingContentObserver.Callbacks {
+        private final ScheduleModel mModel;
 
-        public void unregister() {
-            mModel = null;
+        ScheduleContentChangedCallbacks(ScheduleModel model) {
+            mModel = model;
         }
 
         @Override
-        public void onThrottledContentObserverFired() {
-            if (mModel != null && mModel.getScheduleDataQueryCallback() != null) {
+        public void onContentChanged(Set<Uri> changedUris) {
+            LOGD(TAG, "Reloading schedule after changes to " + changedUris);
+            if (mModel.getScheduleDataQueryCallback() != null) {
                 mModel.updateData(mModel.getScheduleDataQueryCallback());
             }
         }
@@ -138,6 +138,22 @@ public class SessionItemViewHolder extends ScheduleItemViewHolder
         final long now = TimeUtils.getCurrentTime(context);
         final boolean streamingNow = isLivestreamed && item.startTime <= now && now <= item.endTime;
 
+        bindMeta(item, now);
+    }
+
+    /**
+     * Rebinds only the bookmark and feedback state of {@code item}, for updates where nothing
+     * else about the session has changed.
+     */
+    public void bindMeta(@NonNull ScheduleItem item) {
+        if (item.type != ScheduleItem.SESSION) {
+            return;
+        }
+        mSession = item;
+        bindMeta(item, TimeUtils.getCurrentTime(itemView.getContext()));
+    }
+
+    private void bindMeta(@NonNull ScheduleItem item, long now) {
         if (mCallbacks.bookmarkingEnabled() && !item.isKeynote()) {
             mBookmark.setVisibility(VISIBLE);
             // activated is proxy for in-schedule
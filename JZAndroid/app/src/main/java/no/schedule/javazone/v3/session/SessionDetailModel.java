@@ -44,6 +44,7 @@ import no.schedule.javazone.v3.model.ScheduleItemHelper;
 import no.schedule.javazone.v3.provider.ScheduleContract;
 import no.schedule.javazone.v3.ui.UIUtils;
 import no.schedule.javazone.v3.util.AnalyticsHelper;
+import no.schedule.javazone.v3.util.HtmlPrerenderingCursorLoader;
 import no.schedule.javazone.v3.util.SessionsHelper;
 import no.schedule.javazone.v3.util.TimeUtils;
 
@@ -299,8 +300,9 @@ public class SessionDetailModel extends ModelWithLoaderManager<SessionDetailMode
     private void readDataFromSessionCursor(Cursor cursor) {
         mTitle = cursor.getString(cursor.getColumnIndex(
                 Sessions.SESSION_TITLE));
-        mInSchedule = cursor.getInt(cursor.getColumnIndex(
-                Sessions.SESSION_IN_MY_SCHEDULE)) != 0;
+        // A star toggled moments ago may not have been written yet
+        mInSchedule = mSessionsHelper.applyPendingStarChange(mSessionId,
+                cursor.getInt(cursor.getColumnIndex(Sessions.SESSION_IN_MY_SCHEDULE)) != 0);
 
         if (!mSessionLoaded) {
             mInScheduleWhenSessionFirstLoaded = mInSchedule;
@@ -357,32 +359,35 @@ public class SessionDetailModel extends ModelWithLoaderManager<SessionDetailMode
         // Either we would mock cursor.moveToNext() to return true and the test would have infinite
         // loop, or we would mock cursor.moveToNext() to return false, and the test would be for an
         // empty cursor.
+        // Resolve the column indexes once rather than for every speaker row.
+        final int nameIndex = cursor.getColumnIndex(Speakers.SPEAKER_NAME);
+        final int imageUrlIndex = cursor.getColumnIndex(Speakers.PICTURE_URL);
+        final int companyIndex = cursor.getColumnIndex(Speakers.SPEAKER_COMPANY);
+        final int urlIndex = cursor.getColumnIndex(Speakers.SPEAKER_URL);
+        final int twitterUrlIndex = cursor.getColumnIndex(Speakers.SPEAKER_TWITTER_URL);
+        final int abstractIndex = cursor.getColumnIndex(Speakers.SPEAKER_ABSTRACT);
+
         int count = cursor.getCount();
         for (int i = 0; i < count; i++) {
             cursor.moveToPosition(i);
-            final String speakerName =
-                    cursor.getString(cursor.getColumnIndex(Speakers.SPEAKER_NAME));
+            final String speakerName = cursor.getString(nameIndex);
             if (TextUtils.isEmpty(speakerName)) {
                 continue;
             }
 
-            final String speakerImageUrl = cursor.getString(
-                    cursor.getColumnIndex(Speakers.PICTURE_URL));
-            final String speakerCompany = cursor.getString(
-                    cursor.getColumnIndex(Speakers.SPEAKER_COMPANY));
-            final String speakerUrl = cursor.getString(
-                    cursor.getColumnIndex(Speakers.SPEAKER_URL));
-            final String speakerTwitterUrl = cursor.getString(
-                    cursor.getColumnIndex(Speakers.SPEAKER_TWITTER_URL));
-            final String speakerAbstract = cursor.getString(
-                    cursor.getColumnIndex(Speakers.SPEAKER_ABSTRACT));
+            final String speakerImageUrl = cursor.getString(imageUrlIndex);
+            final String speakerCompany = cursor.getString(companyIndex);
+            final String speakerUrl = cursor.getString(urlIndex);
+            final String speakerTwitterUrl = cursor.getString(twitterUrlIndex);
+            final String speakerAbstract = cursor.getString(abstractIndex);
 
             mSpeakers.add(new Speaker(speakerName, speakerImageUrl, speakerCompany, speakerUrl,speakerTwitterUrl, speakerAbstract));
         }
     }
 
     private void readDataFromRelatedSessionsCursor(Cursor cursor) {
-        mRelatedSessions = ScheduleItemHelper.cursorToItems(cursor, mContext);
+        mRelatedSessions = ScheduleItemHelper.cursorToItems(cursor);
+        mSessionsHelper.applyPendingStarChanges(mRelatedSessions);
     }
 
     @Override
@@ -393,14 +398,16 @@ public class SessionDetailModel extends ModelWithLoaderManager<SessionDetailMode
         }
         switch (query) {
             case SESSIONS:
+                // The abstract and bios are rendered while loading, see HtmlRenderCache
                 loader = getCursorLoaderInstance(mContext, mSessionUri,
-                        SessionDetailQueryEnum.SESSIONS.getProjection(), null, null, null);
+                        SessionDetailQueryEnum.SESSIONS.getProjection(), null, null, null,
+                        Sessions.SESSION_ABSTRACT);
                 break;
             case SPEAKERS:
                 Uri speakersUri = getSpeakersDirUri(mSessionId);
                 loader = getCursorLoaderInstance(mContext, speakersUri,
                         SessionDetailQueryEnum.SPEAKERS.getProjection(), null, null,
-                        Speakers.DEFAULT_SORT);
+                        Speakers.DEFAULT_SORT, Speakers.SPEAKER_ABSTRACT);
 //                break;
 //            case FEEDBACK:
 //                Uri feedbackUri = getFeedbackUri(mSessionId);
@@ -411,9 +418,17 @@ public class SessionDetailModel extends ModelWithLoaderManager<SessionDetailMode
         return loader;
     }
 
+    /**
+     * @param htmlColumns columns whose HTML is rendered into the {@link HtmlRenderCache} while
+     *                    loading, see {@link HtmlPrerenderingCursorLoader}
+     */
     @VisibleForTesting
     public CursorLoader getCursorLoaderInstance(Context context, Uri uri, String[] projection,
-            String selection, String[] selectionArgs, String sortOrder) {
+            String selection, String[] selectionArgs, String sortOrder, String... htmlColumns) {
+        if (htmlColumns.length > 0) {
+            return new HtmlPrerenderingCursorLoader(context, uri, projection, selection,
+                    selectionArgs, sortOrder, htmlColumns);
+        }
         return new CursorLoader(context, uri, projection, selection, selectionArgs, sortOrder);
     }
 
@@ -2,12 +2,12 @@ package no.schedule.javazone.v3.sync;
 
 
 import android.content.ContentProviderOperation;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.OperationApplicationException;
-import android.net.Uri;
 import android.os.RemoteException;
 import android.preference.PreferenceManager;
+import android.support.annotation.Nullable;
+import android.support.v4.os.CancellationSignal;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonParser;
@@ -17,13 +17,16 @@ import com.turbomanage.httpclient.HttpResponse;
 import com.turbomanage.httpclient.RequestLogger;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import no.schedule.javazone.v3.io.ImportStagingWriter;
 import no.schedule.javazone.v3.io.JSONHandler;
+import no.schedule.javazone.v3.io.SessionStreamReader;
 import no.schedule.javazone.v3.io.handler.BlocksHandler;
 import no.schedule.javazone.v3.io.handler.CardHandler;
 import no.schedule.javazone.v3.io.handler.MapPropertyHandler;
@@ -34,8 +37,8 @@ import no.schedule.javazone.v3.io.handler.SpeakersHandler;
 import no.schedule.javazone.v3.io.handler.TagsHandler;
 import no.schedule.javazone.v3.io.model.Room;
 import no.schedule.javazone.v3.io.model.Session;
-import no.schedule.javazone.v3.io.model.Speaker;
 import no.schedule.javazone.v3.provider.ScheduleContract;
+import no.schedule.javazone.v3.provider.ScheduleContractHelper;
 
 import static no.schedule.javazone.v3.util.LogUtils.LOGD;
 import static no.schedule.javazone.v3.util.LogUtils.LOGE;
@@ -54,6 +57,9 @@ public class ConferenceDataHandler {
   // the data we currently have in our content provider.
   private static final String SP_KEY_DATA_TIMESTAMP = "data_timestamp";
 
+  // Shared settings_prefs key under which we store the ETag the server sent with that data.
+  private static final String SP_KEY_DATA_ETAG = "data_etag";
+
   // symbolic timestamp to use when we are missing timestamp data (which means our data is
   // really old or nonexistent)
   private static final String DEFAULT_TIMESTAMP = "Sat, 1 Jan 2000 00:00:00 CET";
@@ -106,31 +112,87 @@ public class ConferenceDataHandler {
   // Tally of total content provider operations we carried out (for statistical purposes)
   private int mContentProviderOperationsDone = 0;
 
+  private CancellationSignal mCancellationSignal;
+
+  private ImportStagingWriter mStagingWriter;
+
   public ConferenceDataHandler(Context ctx) {
     mContext = ctx;
   }
 
+  /**
+   * Makes the import stop with an {@link android.support.v4.os.OperationCanceledException} when
+   * {@code signal} is cancelled. Cancellation is checked between sessions and before the content
+   * provider batch is applied. Until then the sessions are only written to the import staging
+   * tables, so a cancelled import leaves the existing sessions and speakers untouched.
+   */
+  public void setCancellationSignal(@Nullable CancellationSignal signal) {
+    mCancellationSignal = signal;
+  }
+
   public void applyConferenceData(List<Session> sessions) {
     LOGD(TAG, "Applying data from " + sessions.size() + " sessions");
 
+    createConferenceHandlers();
+    for (Session session : sessions) {
+      throwIfCanceled();
+      processSession(session);
+    }
+    applyConferenceHandlers();
+  }
+
+  /**
+   * Parses an {@code allSessions} response from the given reader and imports it into the
+   * content provider. Sessions are streamed with a {@link SessionStreamReader} and the changed
+   * ones staged as they are read, so only the ids and hash codes of the sessions are held in
+   * memory. The staged sessions, and the deletes of the ones the response no longer contains,
+   * are applied in one content provider batch at the end.
+   *
+   * @throws IOException If there is a problem reading or parsing the data.
+   */
+  public void applyConferenceData(Reader body) throws IOException {
+    createConferenceHandlers();
+
+    final int sessionCount = new SessionStreamReader(mGson).read(body,
+        new SessionStreamReader.Listener() {
+          @Override
+          public void onSession(Session session) {
+            throwIfCanceled();
+            processSession(session);
+          }
+        });
+
+    LOGD(TAG, "Streamed " + sessionCount + " sessions");
+    applyConferenceHandlers();
+  }
+
+  private void createConferenceHandlers() {
+    mStagingWriter = new ImportStagingWriter(mContext.getContentResolver());
+    mStagingWriter.clear();
+
     // Create Handlers for each data type
    // mHandlerForKeyConference.put(DATA_KEY_TAGS, mTagsHandler = new TagsHandler(mContext));
     mHandlerForKeyConference.put(DATA_KEY_SPEAKERS, mSpeakersHandler = new SpeakersHandler(mContext));
     mHandlerForKeyConference.put(DATA_KEY_SESSIONS, mSessionsHandler = new SessionsHandler(mContext));
+    mSpeakersHandler.setStagingWriter(mStagingWriter);
+    mSessionsHandler.setStagingWriter(mStagingWriter);
 
     mHandlerForKeyConference.put(DATA_KEY_SEARCH_SUGGESTIONS, mSearchSuggestHandler =
         new SearchSuggestHandler(mContext));
+  }
 
-
-    processData(sessions);
-
-
-    // mSessionsHandler.setTagMap(mTagsHandler.getTagMap());
-    mSessionsHandler.setSpeakerMap(mSpeakersHandler.getSpeakerMap());
-
-    // produce the necessary content provider operations
-    applyConferenceDataBatch(mHandlerForKeyConference, KEYS_PROCESS);
-
+  private void applyConferenceHandlers() {
+    mStagingWriter.flush();
+    LOGD(TAG, "Staged " + mStagingWriter.getRowCount() + " rows");
+
+    // produce the necessary content provider operations, and apply the staged records in the
+    // same batch. Every session and speaker the import writes gets the commit's UPDATED time,
+    // not the time its own record was processed.
+    applyConferenceDataBatch(mHandlerForKeyConference, KEYS_PROCESS,
+        ContentProviderOperation.newUpdate(ScheduleContractHelper.setUriAsCalledFromServiceApi(
+            ScheduleContract.ImportStaging.COMMIT_URI))
+            .withValue(ScheduleContract.SyncColumns.UPDATED, System.currentTimeMillis())
+            .build());
   }
 
 
@@ -162,18 +224,25 @@ public class ConferenceDataHandler {
     }
 
     // produce the necessary content provider operations
-    applyConferenceDataBatch(mHandlerForKeyDataBootStrap, DATA_KEYS_IN_ORDER);
+    applyConferenceDataBatch(mHandlerForKeyDataBootStrap, DATA_KEYS_IN_ORDER, null);
 
     LOGD(TAG, "Done applying conference data.");
   }
 
-  private void applyConferenceDataBatch(HashMap<String, JSONHandler> dataSource, String [] keyProcess) {
+  /**
+   * @param lastOperation applied after the operations of the handlers, if not null
+   */
+  private void applyConferenceDataBatch(HashMap<String, JSONHandler> dataSource,
+      String [] keyProcess, @Nullable ContentProviderOperation lastOperation) {
     ArrayList<ContentProviderOperation> batch = new ArrayList<>();
     for (String key : keyProcess) {
       LOGI(TAG, "Building content provider operations for: " + key);
       dataSource.get(key).makeContentProviderOperations(batch);
       LOGI(TAG, "Content provider operations so far: " + batch.size());
     }
+    if (lastOperation != null) {
+      batch.add(lastOperation);
+    }
     LOGD(TAG, "Total content provider operations: " + batch.size());
 
     // download or process local map tile overlay files (SVG files)
@@ -181,6 +250,7 @@ public class ConferenceDataHandler {
     // processMapOverlayFiles(mMapPropertyHandler.getTileOverlays(), downloadsAllowed);
 
     // finally, push the changes into the Content Provider
+    throwIfCanceled();
     LOGI(TAG, "Applying " + batch.size() + " content provider operations.");
 
     try {
@@ -198,13 +268,12 @@ public class ConferenceDataHandler {
       throw new RuntimeException("Error executing content provider batch operation", ex);
     }
 
+    // the provider has notified the top-level paths the batch changed once it was committed
+  }
 
-    // notify all top-level paths
-    LOGD(TAG, "Notifying changes on all top-level paths on Content Resolver.");
-    ContentResolver resolver = mContext.getContentResolver();
-    for (String path : ScheduleContract.TOP_LEVEL_PATHS) {
-      Uri uri = ScheduleContract.BASE_CONTENT_URI.buildUpon().appendPath(path).build();
-      resolver.notifyChange(uri, null);
+  private void throwIfCanceled() {
+    if (mCancellationSignal != null) {
+      mCancellationSignal.throwIfCanceled();
     }
   }
 
@@ -240,17 +309,11 @@ public class ConferenceDataHandler {
     }
   }
 
-  private void processData(List<Session> sessions) {
-    List<Speaker> allSpeakers;
-
-
-    for(String key: KEYS_PROCESS) {
+  private void processSession(Session session) {
+    for (String key : KEYS_PROCESS) {
       final JSONHandler handler = mHandlerForKeyConference.get(key);
-      if(handler != null) {
-        LOGD(TAG, "Processing key in conference data json: " + key);
-        handler.process(sessions);
-      } else {
-        LOGW(TAG, "Skipping unknown key in conference data json: " + key);
+      if (handler != null) {
+        handler.process(session);
       }
     }
   }
@@ -332,11 +395,24 @@ public class ConferenceDataHandler {
         SP_KEY_DATA_TIMESTAMP, timestamp).apply();
   }
 
-  // Reset the timestamp of the data we have in the content provider
+  // Returns the ETag of the data we have in the content provider, or null if we don't know it.
+  public String getDataEtag() {
+    return PreferenceManager.getDefaultSharedPreferences(mContext).getString(
+        SP_KEY_DATA_ETAG, null);
+  }
+
+  // Sets the ETag of the data we have in the content provider.
+  public void setDataEtag(String etag) {
+    LOGD(TAG, "Setting data ETag to: " + etag);
+    PreferenceManager.getDefaultSharedPreferences(mContext).edit().putString(
+        SP_KEY_DATA_ETAG, etag).apply();
+  }
+
+  // Reset the timestamp and ETag of the data we have in the content provider
   public static void resetDataTimestamp(final Context context) {
     LOGD(TAG, "Resetting data timestamp to default (to invalidate our synced data)");
     PreferenceManager.getDefaultSharedPreferences(context).edit().remove(
-        SP_KEY_DATA_TIMESTAMP).apply();
+        SP_KEY_DATA_TIMESTAMP).remove(SP_KEY_DATA_ETAG).apply();
   }
 
   /**
@@ -0,0 +1,298 @@
+package no.schedule.javazone.v3.sync;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.os.OperationCanceledException;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.R;
+import no.schedule.javazone.v3.io.JSONHandler;
+import no.schedule.javazone.v3.provider.ScheduleContract;
+import no.schedule.javazone.v3.util.SettingsUtils;
+import no.schedule.javazone.v3.util.TimeUtils;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+
+import static no.schedule.javazone.v3.util.LogUtils.LOGD;
+import static no.schedule.javazone.v3.util.LogUtils.LOGE;
+import static no.schedule.javazone.v3.util.LogUtils.LOGW;
+import static no.schedule.javazone.v3.util.LogUtils.makeLogTag;
+
+/**
+ * Downloads the sessions and imports them into the content provider on a dedicated thread.
+ * <p>
+ * There is a single import thread, so there is never more than one writer of conference data.
+ * Requests made while an import is queued, or running but not downloading yet, join it instead
+ * of starting another one, which collapses the syncs triggered at startup, by FCM and by pull
+ * to refresh into one run. A request made once the download has started may be about data that
+ * changed after the server answered, so it queues one more import to run after the current one;
+ * any further requests join that. A run can be cancelled until its sessions batch starts.
+ * <p>
+ * The bootstrap data is applied in a batch of its own first. The sessions are streamed into
+ * staging tables and then applied, together with the deletes of removed sessions and speakers,
+ * in one transaction. A run cancelled before that leaves the existing sessions as they were.
+ * <p>
+ * Progress and completion are reported to {@link ImportListener}s on the main thread.
+ */
+public class ConferenceImporter {
+  private static final String TAG = makeLogTag(ConferenceImporter.class);
+
+  public static final int STAGE_DOWNLOADING = 0;
+  public static final int STAGE_IMPORTING = 1;
+
+  public static final int RESULT_IMPORTED = 0;
+  public static final int RESULT_NOT_MODIFIED = 1;
+  public static final int RESULT_FAILED = 2;
+  public static final int RESULT_CANCELLED = 3;
+
+  public interface ImportListener {
+    /**
+     * @param stage {@link #STAGE_DOWNLOADING} or {@link #STAGE_IMPORTING}
+     */
+    void onImportProgress(int stage);
+
+    /**
+     * @param result one of the {@code RESULT_} constants
+     */
+    void onImportFinished(int result);
+  }
+
+  private final Context mContext;
+  private final SessionApiService mService;
+  private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+  // Only accessed on the main thread
+  private final List<ImportListener> mListeners = new ArrayList<>();
+
+  // Guarded by this
+  private ScheduledFuture<?> mScheduledImport;
+  private long mScheduledImportAt;
+  private String mSessionSlug;
+  private boolean mRunning;
+  private boolean mDownloadStarted;
+  // An import requested while the running one was downloading, started once that finishes
+  private boolean mFollowUpRequested;
+  private String mFollowUpSlug;
+  private long mFollowUpAt;
+  private CancellationSignal mCancellationSignal;
+  private Call<ResponseBody> mCall;
+
+  private final Runnable mImportRunnable = new Runnable() {
+    @Override
+    public void run() {
+      runImport();
+    }
+  };
+
+  public ConferenceImporter(Context context, SessionApiService service) {
+    mContext = context.getApplicationContext();
+    mService = service;
+  }
+
+  /**
+   * Starts an import after {@code delayMs}, unless one is due by then already or is running
+   * and hasn't started its download yet. If the running import is downloading, another one is
+   * started after it.
+   */
+  public synchronized void requestImport(String sessionSlug, long delayMs) {
+    final long runAt = SystemClock.uptimeMillis() + delayMs;
+    if (mRunning) {
+      if (!mDownloadStarted) {
+        LOGD(TAG, "Import already running, joining it");
+      } else if (!mFollowUpRequested || runAt < mFollowUpAt) {
+        LOGD(TAG, "Import already downloading, queueing another one after it");
+        mFollowUpRequested = true;
+        mFollowUpSlug = sessionSlug;
+        mFollowUpAt = runAt;
+      }
+      return;
+    }
+    if (mScheduledImport != null) {
+      if (mScheduledImportAt <= runAt) {
+        LOGD(TAG, "Import already queued, joining it");
+        return;
+      }
+      mScheduledImport.cancel(false);
+    }
+    mSessionSlug = sessionSlug;
+    mScheduledImportAt = runAt;
+    mScheduledImport = mExecutor.schedule(mImportRunnable, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Drops a queued import and stops a running one, unless it is already writing its data.
+   */
+  public synchronized void cancel() {
+    mFollowUpRequested = false;
+    if (mScheduledImport != null) {
+      mScheduledImport.cancel(false);
+      mScheduledImport = null;
+    }
+    if (mCancellationSignal != null) {
+      mCancellationSignal.cancel();
+    }
+    if (mCall != null) {
+      mCall.cancel();
+    }
+  }
+
+  public synchronized boolean isImporting() {
+    return mRunning || mScheduledImport != null;
+  }
+
+  /**
+   * Must be called on the main thread.
+   */
+  public void addListener(ImportListener listener) {
+    mListeners.add(listener);
+  }
+
+  /**
+   * Must be called on the main thread.
+   */
+  public void removeListener(ImportListener listener) {
+    mListeners.remove(listener);
+  }
+
+  private void runImport() {
+    final CancellationSignal signal;
+    final String sessionSlug;
+    synchronized (this) {
+      mScheduledImport = null;
+      mRunning = true;
+      signal = mCancellationSignal = new CancellationSignal();
+      sessionSlug = mSessionSlug;
+    }
+
+    int result = RESULT_FAILED;
+    try {
+      result = importSessions(sessionSlug, signal);
+    } catch (OperationCanceledException e) {
+      result = RESULT_CANCELLED;
+    } catch (IOException | RuntimeException e) {
+      if (signal.isCanceled()) {
+        result = RESULT_CANCELLED;
+      } else {
+        LOGE(TAG, "Sessions import failed", e);
+      }
+    } finally {
+      synchronized (this) {
+        mRunning = false;
+        mDownloadStarted = false;
+        mCancellationSignal = null;
+        mCall = null;
+        if (mFollowUpRequested) {
+          mFollowUpRequested = false;
+          requestImport(mFollowUpSlug,
+              Math.max(0, mFollowUpAt - SystemClock.uptimeMillis()));
+        }
+      }
+      LOGD(TAG, "Sessions import finished with result " + result);
+      // The executor runs a follow-up only after this returns, so its events come after these
+      postFinished(result);
+    }
+  }
+
+  private int importSessions(String sessionSlug, CancellationSignal signal) throws IOException {
+    final ConferenceDataHandler dataHandler = new ConferenceDataHandler(mContext);
+    dataHandler.setCancellationSignal(signal);
+
+    String lastModified = dataHandler.getDataTimestamp();
+    if (!TimeUtils.isValidFormatForIfModifiedSinceHeader(lastModified)) {
+      lastModified = null;
+    }
+    final Call<ResponseBody> call = mService.getAllSessionsBody(sessionSlug,
+        dataHandler.getDataEtag(), lastModified);
+    synchronized (this) {
+      signal.throwIfCanceled();
+      mCall = call;
+      mDownloadStarted = true;
+    }
+
+    postProgress(STAGE_DOWNLOADING);
+    final Response<ResponseBody> response = call.execute();
+    if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      LOGD(TAG, "Sessions not modified since last sync, skipping import");
+      return RESULT_NOT_MODIFIED;
+    }
+    if (!response.isSuccessful()) {
+      LOGW(TAG, "Sessions request failed with " + response.code());
+      response.errorBody().close();
+      return RESULT_FAILED;
+    }
+
+    postProgress(STAGE_IMPORTING);
+    final ResponseBody body = response.body();
+    try {
+      try {
+        String bootstrapJson = JSONHandler.parseResource(mContext, R.raw.bootstrap_data);
+        dataHandler.applyConferenceData(new String[]{bootstrapJson}, false);
+      } catch (IOException ex) {
+        LOGE(TAG, "*** ERROR DURING BOOTSTRAP! Problem in bootstrap data?", ex);
+        LOGE(TAG, "Applying fallback -- marking boostrap as done; sync might fix problem.");
+        SettingsUtils.markDataBootstrapDone(mContext);
+        return RESULT_FAILED;
+      }
+
+      // Reading the body can fail with the network, which runImport reports as a failed or
+      // cancelled import, leaving the bootstrap state and the validators as they were
+      dataHandler.applyConferenceData(body.charStream());
+
+      // Only remember the validators once the data they describe has been imported
+      String newLastModified = response.headers().get("Last-Modified");
+      if (newLastModified != null
+          && TimeUtils.isValidFormatForIfModifiedSinceHeader(newLastModified)) {
+        dataHandler.setDataTimestamp(newLastModified);
+      } else {
+        ConferenceDataHandler.resetDataTimestamp(mContext);
+      }
+      String etag = response.headers().get("ETag");
+      if (etag != null) {
+        dataHandler.setDataEtag(etag);
+      }
+
+      SettingsUtils.markDataBootstrapDone(mContext);
+
+      mContext.getContentResolver().notifyChange(ScheduleContract.BASE_CONTENT_URI,
+          null, false);
+      return RESULT_IMPORTED;
+    } finally {
+      body.close();
+    }
+  }
+
+  private void postProgress(final int stage) {
+    mMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        for (ImportListener listener : new ArrayList<>(mListeners)) {
+          listener.onImportProgress(stage);
+        }
+      }
+    });
+  }
+
+  private void postFinished(final int result) {
+    mMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        for (ImportListener listener : new ArrayList<>(mListeners)) {
+          listener.onImportFinished(result);
+        }
+      }
+    });
+  }
+}
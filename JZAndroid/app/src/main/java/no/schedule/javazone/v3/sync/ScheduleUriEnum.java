@@ -42,6 +42,7 @@ public enum ScheduleUriEnum {
     ROOMS_ID_SESSIONS(302, "rooms/*/sessions", ScheduleContract.Sessions.CONTENT_TYPE_ID, false, null),
     SESSIONS(400, "sessions", ScheduleContract.Sessions.CONTENT_TYPE_ID, false, ScheduleDatabase.Tables.SESSIONS),
     SESSIONS_MY_SCHEDULE(401, "sessions/my_schedule", ScheduleContract.Sessions.CONTENT_TYPE_ID, false, null),
+    SESSIONS_SCHEDULE(413, "sessions/schedule", ScheduleContract.Sessions.CONTENT_TYPE_ID, false, null),
     SESSIONS_SEARCH(403, "sessions/search/*", ScheduleContract.Sessions.CONTENT_TYPE_ID, false, null),
     SESSIONS_AT(404, "sessions/at/*", ScheduleContract.Sessions.CONTENT_TYPE_ID, false, null),
     SESSIONS_AFTER(411, "sessions/after/*", ScheduleContract.Sessions.CONTENT_TYPE_ID, false, null),
@@ -64,7 +65,15 @@ public enum ScheduleUriEnum {
     MAPTILES_FLOOR(1001, "maptiles/*", ScheduleContract.MapTiles.CONTENT_TYPE_ID, true, null),
     SEARCH_TOPICS_SESSIONS(1400, "search_topics_sessions",
                            ScheduleContract.SearchTopicsSessions.CONTENT_TYPE_ID, false, null /*virtual table*/),
-    CARDS(1500, "cards", ScheduleContract.Cards.CONTENT_TYPE_ID, false, ScheduleDatabase.Tables.CARDS);
+    CARDS(1500, "cards", ScheduleContract.Cards.CONTENT_TYPE_ID, false, ScheduleDatabase.Tables.CARDS),
+    IMPORT(1600, "import", null, false, null),// delete only
+    IMPORT_SESSIONS(1601, "import/sessions", null, false, ScheduleDatabase.Tables.IMPORT_SESSIONS),
+    IMPORT_SPEAKERS(1602, "import/speakers", null, false, ScheduleDatabase.Tables.IMPORT_SPEAKERS),
+    IMPORT_SESSIONS_SPEAKERS(1603, "import/sessions_speakers", null, false,
+            ScheduleDatabase.Tables.IMPORT_SESSIONS_SPEAKERS),
+    IMPORT_SESSIONS_TAGS(1604, "import/sessions_tags", null, false,
+            ScheduleDatabase.Tables.IMPORT_SESSIONS_TAGS),
+    IMPORT_COMMIT(1605, "import/commit", null, false, null);// update only
     public int code;
 
     /**
@@ -39,7 +39,6 @@ import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.graphics.ColorUtils;
 import android.support.v7.content.res.AppCompatResources;
-import android.text.Html;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
@@ -56,10 +55,10 @@ import android.widget.TextView;
 import java.util.Calendar;
 import java.util.Formatter;
 import java.util.TimeZone;
-import java.util.regex.Pattern;
 
 import no.schedule.javazone.v3.Config;
 import no.schedule.javazone.v3.R;
+import no.schedule.javazone.v3.util.HtmlRenderCache;
 import no.schedule.javazone.v3.util.SettingsUtils;
 import no.schedule.javazone.v3.util.TimeUtils;
 
@@ -93,11 +92,6 @@ public class UIUtils {
   private static final int DAY_FLAGS = DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_NO_YEAR
       | DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_ABBREV_WEEKDAY;
 
-  /**
-   * Regex to search for HTML escape sequences. <p/> <p></p>Searches for any continuous string of
-   * characters starting with an ampersand and ending with a semicolon. (Example: &amp;amp;)
-   */
-  private static final Pattern REGEX_HTML_ESCAPE = Pattern.compile(".*&\\S;.*");
   public static final String MOCK_DATA_PREFERENCES = "mock_data";
   public static final String PREFS_MOCK_CURRENT_TIME = "mock_current_time";
   public static final String PREFS_MOCK_APP_START_TIME = "mock_app_start_time";
@@ -186,16 +180,17 @@ public class UIUtils {
 
   /**
    * Populate the given {@link TextView} with the requested text, formatting through {@link
-   * Html#fromHtml(String)} when applicable. Also sets {@link TextView#setMovementMethod} so
-   * inline links are handled.
+   * android.text.Html#fromHtml(String)} when applicable. Also sets {@link
+   * TextView#setMovementMethod} so inline links are handled. The formatted text comes from
+   * {@link HtmlRenderCache}.
    */
   public static void setTextMaybeHtml(TextView view, String text) {
     if (TextUtils.isEmpty(text)) {
       view.setText("");
       return;
     }
-    if ((text.contains("<") && text.contains(">")) || REGEX_HTML_ESCAPE.matcher(text).find()) {
-      view.setText(Html.fromHtml(text));
+    if (HtmlRenderCache.isHtml(text)) {
+      view.setText(HtmlRenderCache.renderMaybeHtml(text));
       view.setMovementMethod(LinkMovementMethod.getInstance());
     } else {
       view.setText(text);
@@ -17,14 +17,13 @@ package no.schedule.javazone.v3.ui.widget;
 import android.content.Context;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.AppCompatTextView;
-import android.text.Html;
 import android.text.Layout;
 import android.text.Spanned;
 import android.text.style.ClickableSpan;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 
-import org.apache.commons.lang3.StringEscapeUtils;
+import no.schedule.javazone.v3.util.HtmlRenderCache;
 
 public class HtmlTextView extends AppCompatTextView {
 
@@ -33,13 +32,7 @@ public class HtmlTextView extends AppCompatTextView {
     }
 
     public void setHtmlText(String text) {
-        if (text != null) {
-            setText(Html.fromHtml(StringEscapeUtils.
-                    unescapeJava(StringEscapeUtils.
-                            unescapeHtml4(text))));
-        } else {
-            setText("");
-        }
+        setText(HtmlRenderCache.renderEscapedHtml(text));
     }
 
     /**
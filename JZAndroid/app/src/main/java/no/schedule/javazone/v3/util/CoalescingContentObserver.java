@@ -0,0 +1,120 @@
+package no.schedule.javazone.v3.util;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A {@link ContentObserver} for a fixed set of URIs (and their descendants) that coalesces bursts
+ * of changes into a single callback.
+ * <p>
+ * The callback runs once no change has arrived for the quiet period, but never later than the
+ * maximum latency after the first change of the burst, so a long stream of writes still refreshes
+ * the UI at a bounded rate. It is told which URIs changed during the burst.
+ * <p>
+ * Changes are delivered and coalesced on the thread of the {@link Handler} passed in.
+ */
+public class CoalescingContentObserver extends ContentObserver {
+    public static final long DEFAULT_QUIET_PERIOD_MS = 300;
+    public static final long DEFAULT_MAX_LATENCY_MS = 2000;
+
+    public interface Callbacks {
+        /**
+         * @param changedUris the URIs notified since the last callback, in order of arrival
+         */
+        void onContentChanged(Set<Uri> changedUris);
+    }
+
+    private final Handler mHandler;
+    private final Uri[] mUris;
+    private final long mQuietPeriodMs;
+    private final long mMaxLatencyMs;
+    private Callbacks mCallbacks;
+
+    private final LinkedHashSet<Uri> mChangedUris = new LinkedHashSet<>();
+    // Uptime of the first change not yet delivered, or -1
+    private long mFirstChangeAt = -1;
+
+    private final Runnable mDeliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+
+    public CoalescingContentObserver(Handler handler, Callbacks callbacks, Uri... uris) {
+        this(handler, callbacks, DEFAULT_QUIET_PERIOD_MS, DEFAULT_MAX_LATENCY_MS, uris);
+    }
+
+    public CoalescingContentObserver(Handler handler, Callbacks callbacks, long quietPeriodMs,
+            long maxLatencyMs, Uri... uris) {
+        super(handler);
+        mHandler = handler;
+        mCallbacks = callbacks;
+        mQuietPeriodMs = quietPeriodMs;
+        mMaxLatencyMs = maxLatencyMs;
+        mUris = uris;
+    }
+
+    /**
+     * Starts observing all URIs given to the constructor, including their descendants.
+     */
+    public void register(ContentResolver resolver) {
+        for (Uri uri : mUris) {
+            resolver.registerContentObserver(uri, true, this);
+        }
+    }
+
+    /**
+     * Stops observing and drops any change not yet delivered.
+     */
+    public void unregister(ContentResolver resolver) {
+        resolver.unregisterContentObserver(this);
+        cancelPendingCallback();
+    }
+
+    public void setCallbacks(@Nullable Callbacks callbacks) {
+        mCallbacks = callbacks;
+    }
+
+    public void cancelPendingCallback() {
+        mHandler.removeCallbacks(mDeliverRunnable);
+        mChangedUris.clear();
+        mFirstChangeAt = -1;
+    }
+
+    @Override
+    public void onChange(boolean selfChange) {
+        onChange(selfChange, null);
+    }
+
+    @Override
+    public void onChange(boolean selfChange, @Nullable Uri uri) {
+        final long now = SystemClock.uptimeMillis();
+        if (mFirstChangeAt < 0) {
+            mFirstChangeAt = now;
+        }
+        // Notifications without a URI are attributed to the first observed URI
+        mChangedUris.add(uri != null ? uri : mUris[0]);
+
+        final long deliverAt = Math.min(now + mQuietPeriodMs, mFirstChangeAt + mMaxLatencyMs);
+        mHandler.removeCallbacks(mDeliverRunnable);
+        mHandler.postAtTime(mDeliverRunnable, deliverAt);
+    }
+
+    private void deliver() {
+        final Set<Uri> changed = Collections.unmodifiableSet(new LinkedHashSet<>(mChangedUris));
+        mChangedUris.clear();
+        mFirstChangeAt = -1;
+        if (mCallbacks != null && !changed.isEmpty()) {
+            mCallbacks.onContentChanged(changed);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package no.schedule.javazone.v3.util;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+
+/**
+ * A {@link CursorLoader} that also renders the HTML in some of the columns it loads into the
+ * {@link HtmlRenderCache}, on the loader's background thread, so that binding the text later
+ * doesn't parse it on the main thread.
+ */
+public class HtmlPrerenderingCursorLoader extends CursorLoader {
+    private final String[] mHtmlColumns;
+
+    public HtmlPrerenderingCursorLoader(Context context, Uri uri, String[] projection,
+            String selection, String[] selectionArgs, String sortOrder, String... htmlColumns) {
+        super(context, uri, projection, selection, selectionArgs, sortOrder);
+        mHtmlColumns = htmlColumns;
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        final Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+        final int[] indexes = new int[mHtmlColumns.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = cursor.getColumnIndex(mHtmlColumns[i]);
+        }
+        while (cursor.moveToNext()) {
+            for (int index : indexes) {
+                if (index >= 0) {
+                    HtmlRenderCache.renderMaybeHtml(cursor.getString(index));
+                }
+            }
+        }
+        cursor.moveToPosition(-1);
+        return cursor;
+    }
+}
@@ -0,0 +1,96 @@
+package no.schedule.javazone.v3.util;
+
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.util.LruCache;
+import android.text.Html;
+import android.text.SpannedString;
+import android.text.TextUtils;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Renders session abstracts, speaker bios and other HTML from the conference data into styled
+ * text, and caches the result keyed by the source text.
+ * <p>
+ * Parsing HTML is slow enough to show when rebinding views, so screens warm the cache from their
+ * loaders' background threads (see {@link HtmlPrerenderingCursorLoader}) and the views only look
+ * the result up. Rendered text is stored as immutable {@link SpannedString}s, which can be shared
+ * between views. All methods are thread safe.
+ */
+public class HtmlRenderCache {
+    // Any continuous string of characters starting with an ampersand and ending with a semicolon
+    private static final Pattern REGEX_HTML_ESCAPE = Pattern.compile(".*&\\S;.*");
+
+    // Size of each cache in characters of source and rendered text, about 1MB
+    private static final int MAX_SIZE_CHARS = 512 * 1024;
+
+    // One cache per rendering mode, so the source text itself is the key and a lookup doesn't
+    // copy it
+    private static final LruCache<String, CharSequence> sMaybeHtmlCache = newCache();
+    private static final LruCache<String, CharSequence> sEscapedHtmlCache = newCache();
+
+    private HtmlRenderCache() {
+    }
+
+    /**
+     * Returns {@code text} formatted through {@link Html#fromHtml(String)} if it looks like HTML,
+     * or {@code text} itself otherwise.
+     */
+    public static CharSequence renderMaybeHtml(@Nullable String text) {
+        if (TextUtils.isEmpty(text)) {
+            return "";
+        }
+        if (!isHtml(text)) {
+            return text;
+        }
+        CharSequence rendered = sMaybeHtmlCache.get(text);
+        if (rendered == null) {
+            rendered = new SpannedString(Html.fromHtml(text));
+            sMaybeHtmlCache.put(text, rendered);
+        }
+        return rendered;
+    }
+
+    /**
+     * Returns {@code text}, which has its markup HTML and Java escaped, unescaped and formatted
+     * through {@link Html#fromHtml(String)}.
+     */
+    public static CharSequence renderEscapedHtml(@Nullable String text) {
+        if (text == null) {
+            return "";
+        }
+        CharSequence rendered = sEscapedHtmlCache.get(text);
+        if (rendered == null) {
+            rendered = new SpannedString(Html.fromHtml(
+                    StringEscapeUtils.unescapeJava(StringEscapeUtils.unescapeHtml4(text))));
+            sEscapedHtmlCache.put(text, rendered);
+        }
+        return rendered;
+    }
+
+    /**
+     * Empties the caches, so that the next lookups render again.
+     */
+    @VisibleForTesting
+    public static void clear() {
+        sMaybeHtmlCache.evictAll();
+        sEscapedHtmlCache.evictAll();
+    }
+
+    public static boolean isHtml(String text) {
+        return (text.contains("<") && text.contains(">"))
+                || REGEX_HTML_ESCAPE.matcher(text).find();
+    }
+
+    private static LruCache<String, CharSequence> newCache() {
+        return new LruCache<String, CharSequence>(MAX_SIZE_CHARS) {
+            @Override
+            protected int sizeOf(String key, CharSequence value) {
+                return key.length() + value.length();
+            }
+        };
+    }
+}
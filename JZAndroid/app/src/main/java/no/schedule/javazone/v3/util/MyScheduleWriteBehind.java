@@ -0,0 +1,246 @@
+package no.schedule.javazone.v3.util;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.provider.ScheduleContract;
+
+import static no.schedule.javazone.v3.util.LogUtils.LOGD;
+import static no.schedule.javazone.v3.util.LogUtils.LOGE;
+import static no.schedule.javazone.v3.util.LogUtils.makeLogTag;
+
+/**
+ * Write-behind buffer for star toggles on {@link ScheduleContract.MySchedule}.
+ * <p>
+ * Toggles are recorded in memory and written shortly afterwards as a single
+ * {@link ContentResolver#applyBatch} on a background thread, so a burst of toggles costs one
+ * transaction and one round of change notifications instead of one of each per toggle. Only the
+ * last state of each session is written, so toggling a session many times in a row persists
+ * whatever it was left at.
+ * <p>
+ * Until a toggle has been written, {@link #getPendingStarred} reports it, so that screens
+ * reloading in the meantime can overlay it on what they read from the provider. Pending toggles
+ * are written right away once the app has no started activity left, see
+ * {@link #flushWhenAppStops}, so they aren't lost if the process is killed in the background.
+ */
+public class MyScheduleWriteBehind {
+    private static final String TAG = makeLogTag(MyScheduleWriteBehind.class);
+
+    private static final long FLUSH_DELAY_MS = 500;
+    private static final long RETRY_DELAY_MS = 30 * TimeUtils.SECOND;
+
+    private static MyScheduleWriteBehind sInstance;
+
+    private final ContentResolver mContentResolver;
+    private final long mFlushDelayMs;
+    private final long mRetryDelayMs;
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    // Keyed by account name, then session id; guarded by this
+    private Map<String, LinkedHashMap<String, ContentValues>> mPending = new HashMap<>();
+    // Values taken by the running flush, until they have been written; guarded by this
+    private Map<String, LinkedHashMap<String, ContentValues>> mInFlight = new HashMap<>();
+    private ScheduledFuture<?> mScheduledFlush;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public static synchronized MyScheduleWriteBehind getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MyScheduleWriteBehind(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private MyScheduleWriteBehind(Context context) {
+        this(context.getContentResolver(), FLUSH_DELAY_MS, RETRY_DELAY_MS);
+    }
+
+    @VisibleForTesting
+    MyScheduleWriteBehind(ContentResolver contentResolver, long flushDelayMs,
+            long retryDelayMs) {
+        mContentResolver = contentResolver;
+        mFlushDelayMs = flushDelayMs;
+        mRetryDelayMs = retryDelayMs;
+    }
+
+    /**
+     * Records the star state of a session, replacing any state not yet written for it.
+     */
+    public synchronized void setStarred(@Nullable String accountName, String sessionId,
+            boolean starred, long timestamp) {
+        final ContentValues values = new ContentValues();
+        values.put(ScheduleContract.MySchedule.SESSION_ID, sessionId);
+        values.put(ScheduleContract.MySchedule.MY_SCHEDULE_IN_SCHEDULE, starred ? 1 : 0);
+        values.put(ScheduleContract.MySchedule.MY_SCHEDULE_TIMESTAMP, timestamp);
+        LinkedHashMap<String, ContentValues> sessions = mPending.get(accountName);
+        if (sessions == null) {
+            sessions = new LinkedHashMap<>();
+            mPending.put(accountName, sessions);
+        }
+        sessions.put(sessionId, values);
+        scheduleFlush(mFlushDelayMs);
+    }
+
+    /**
+     * @return the star state of the session that hasn't been written to the provider yet, or
+     *         null if there is none
+     */
+    @Nullable
+    public synchronized Boolean getPendingStarred(@Nullable String accountName, String sessionId) {
+        ContentValues values = find(mPending, accountName, sessionId);
+        if (values == null) {
+            values = find(mInFlight, accountName, sessionId);
+        }
+        return values == null ? null
+                : values.getAsInteger(ScheduleContract.MySchedule.MY_SCHEDULE_IN_SCHEDULE) != 0;
+    }
+
+    /**
+     * Writes the pending toggles now instead of after the usual delay.
+     */
+    public synchronized void flushNow() {
+        if (mScheduledFlush != null && mScheduledFlush.cancel(false)) {
+            mScheduledFlush = null;
+        }
+        if (!mPending.isEmpty()) {
+            scheduleFlush(0);
+        }
+    }
+
+    /**
+     * Makes the pending toggles get written as soon as the last started activity of
+     * {@code application} is stopped, i.e. when the app goes to the background.
+     */
+    public void flushWhenAppStops(Application application) {
+        application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            // Only accessed on the main thread
+            private int mStartedActivities;
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+                mStartedActivities++;
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+                if (--mStartedActivities == 0) {
+                    flushNow();
+                }
+            }
+
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+            }
+        });
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (mScheduledFlush == null) {
+            mScheduledFlush = mExecutor.schedule(mFlushRunnable, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        final Map<String, LinkedHashMap<String, ContentValues>> batch;
+        synchronized (this) {
+            mScheduledFlush = null;
+            batch = mPending;
+            mInFlight = batch;
+            mPending = new HashMap<>();
+        }
+
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (Map.Entry<String, LinkedHashMap<String, ContentValues>> account : batch.entrySet()) {
+            final Uri uri = ScheduleContract.MySchedule.buildMyScheduleUri(account.getKey());
+            for (ContentValues values : account.getValue().values()) {
+                operations.add(ContentProviderOperation.newInsert(uri).withValues(values).build());
+            }
+        }
+        if (operations.isEmpty()) {
+            synchronized (this) {
+                mInFlight = new HashMap<>();
+            }
+            return;
+        }
+
+        LOGD(TAG, "Writing " + operations.size() + " star changes");
+        boolean written = false;
+        try {
+            mContentResolver.applyBatch(ScheduleContract.CONTENT_AUTHORITY, operations);
+            written = true;
+        } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+            // Runtime exceptions too, such as a SQLiteException from the provider; the
+            // in-flight toggles must not be left behind for getPendingStarred
+            LOGE(TAG, "Failed to write star changes, will retry", e);
+        }
+
+        synchronized (this) {
+            mInFlight = new HashMap<>();
+            if (!written) {
+                // Put the batch back, unless the session has been toggled again since
+                for (Map.Entry<String, LinkedHashMap<String, ContentValues>> account
+                        : batch.entrySet()) {
+                    LinkedHashMap<String, ContentValues> sessions = mPending.get(account.getKey());
+                    if (sessions == null) {
+                        mPending.put(account.getKey(), account.getValue());
+                        continue;
+                    }
+                    for (Map.Entry<String, ContentValues> session
+                            : account.getValue().entrySet()) {
+                        if (!sessions.containsKey(session.getKey())) {
+                            sessions.put(session.getKey(), session.getValue());
+                        }
+                    }
+                }
+                scheduleFlush(mRetryDelayMs);
+            }
+        }
+    }
+
+    @Nullable
+    private static ContentValues find(Map<String, LinkedHashMap<String, ContentValues>> map,
+            @Nullable String accountName, String sessionId) {
+        final LinkedHashMap<String, ContentValues> sessions = map.get(accountName);
+        return sessions == null ? null : sessions.get(sessionId);
+    }
+}
@@ -4,10 +4,6 @@ import android.content.ContentProvider;
 import android.net.Uri;
 import android.text.format.Time;
 
-import com.google.api.client.util.DateTime;
-
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.TimeZone;
 import java.util.regex.Pattern;
@@ -31,20 +27,11 @@ public class ParserUtils {
 
   /**
    * Parse the given string as a RFC 3339 timestamp, returning the value as
-   * milliseconds since the epoch.
+   * milliseconds since the epoch, or 0 if it can't be parsed. As before, only the wall-clock
+   * date and time are used, see {@link TimestampParser}.
    */
   public static long parseTime(String timestamp) {
-    DateTime dateTimeNew = new DateTime(timestamp);
-    SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
-    String datetimeString = dateTimeNew.toString();
-    long timeParsed = 0;
-    try {
-      timeParsed = simpleDateFormat.parse(datetimeString).getTime();
-    } catch (ParseException e) {
-      e.printStackTrace();
-    }
-
-    return timeParsed;
+    return TimeUtils.getTimestampParser().parse(timestamp, 0);
   }
 
   public static String joinStrings(String connector, ArrayList<String> strings, StringBuilder recycle) {
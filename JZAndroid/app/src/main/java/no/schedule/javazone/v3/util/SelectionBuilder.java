@@ -25,6 +25,7 @@ package no.schedule.javazone.v3.util;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
@@ -45,6 +46,7 @@ public class SelectionBuilder {
     private static final String TAG = makeLogTag(SelectionBuilder.class);
 
     private String mTable = null;
+    private ArrayList<String> mTableArgs = new ArrayList<>();
     private Map<String, String> mProjectionMap = new HashMap<>();
     private StringBuilder mSelection = new StringBuilder();
     private ArrayList<String> mSelectionArgs = new ArrayList<>();
@@ -56,6 +58,7 @@ public class SelectionBuilder {
      */
     public SelectionBuilder reset() {
         mTable = null;
+        mTableArgs.clear();
         mGroupBy = null;
         mHaving = null;
         mSelection.setLength(0);
@@ -102,23 +105,32 @@ public class SelectionBuilder {
 
     public SelectionBuilder table(String table) {
         mTable = table;
+        mTableArgs.clear();
         return this;
     }
 
     /**
-     * Replace positional params in table. Use for JOIN ON conditions.
+     * Set a table expression with positional params, for example in JOIN ON conditions. The
+     * arguments are bound ahead of the selection arguments rather than written into the SQL, so
+     * the statement is the same for every value and is compiled only once. Only supported by
+     * {@link #query}.
      */
-    public SelectionBuilder table(String table, String... tableParams) {
-        if (tableParams != null && tableParams.length > 0) {
-            String[] parts = table.split("[?]", tableParams.length+1);
-            StringBuilder sb = new StringBuilder(parts[0]);
-            for (int i=1; i<parts.length; i++) {
-                sb.append('"').append(tableParams[i-1]).append('"')
-                  .append(parts[i]);
+    public SelectionBuilder table(String table, String... tableArgs) {
+        int params = 0;
+        for (int i = 0; i < table.length(); i++) {
+            if (table.charAt(i) == '?') {
+                params++;
             }
-            mTable = sb.toString();
-        } else {
-            mTable = table;
+        }
+        final int args = tableArgs == null ? 0 : tableArgs.length;
+        if (params != args) {
+            throw new IllegalArgumentException("Table has " + params + " params but " + args
+                    + " arguments were given: " + table);
+        }
+        mTable = table;
+        mTableArgs.clear();
+        if (tableArgs != null) {
+            Collections.addAll(mTableArgs, tableArgs);
         }
         return this;
     }
@@ -129,6 +141,12 @@ public class SelectionBuilder {
         }
     }
 
+    private void assertNoTableArgs() {
+        if (!mTableArgs.isEmpty()) {
+            throw new IllegalStateException("Table arguments are only supported by query()");
+        }
+    }
+
     public SelectionBuilder mapToTable(String column, String table) {
         mProjectionMap.put(column, table + "." + column);
         return this;
@@ -157,6 +175,25 @@ public class SelectionBuilder {
         return mSelectionArgs.toArray(new String[mSelectionArgs.size()]);
     }
 
+    /**
+     * Return the table arguments followed by the selection arguments, in the order their params
+     * appear in a {@code SELECT}.
+     */
+    private String[] getQueryArgs() {
+        if (mTableArgs.isEmpty()) {
+            return getSelectionArgs();
+        }
+        final String[] args = new String[mTableArgs.size() + mSelectionArgs.size()];
+        int i = 0;
+        for (String arg : mTableArgs) {
+            args[i++] = arg;
+        }
+        for (String arg : mSelectionArgs) {
+            args[i++] = arg;
+        }
+        return args;
+    }
+
     private void mapColumns(String[] columns) {
         for (int i = 0; i < columns.length; i++) {
             final String target = mProjectionMap.get(columns[i]);
@@ -168,7 +205,8 @@ public class SelectionBuilder {
 
     @Override
     public String toString() {
-        return "SelectionBuilder[table=" + mTable + ", selection=" + getSelection()
+        return "SelectionBuilder[table=" + mTable + ", tableArgs=" + mTableArgs
+                + ", selection=" + getSelection()
                 + ", selectionArgs=" + Arrays.toString(getSelectionArgs())
                 + "projectionMap = " + mProjectionMap + " ]";
     }
@@ -189,15 +227,49 @@ public class SelectionBuilder {
         if (columns != null) mapColumns(columns);
         LOGV(TAG, "query(columns=" + Arrays.toString(columns)
                 + ", distinct=" + distinct + ") " + this);
-        return db.query(distinct, mTable, columns, getSelection(), getSelectionArgs(), mGroupBy,
+        return db.query(distinct, mTable, columns, getSelection(), getQueryArgs(), mGroupBy,
                 mHaving, orderBy, limit);
     }
 
+    /**
+     * Return the SQL {@link #query} compiles for the same arguments, without its arguments.
+     */
+    public String buildQuery(boolean distinct, String[] columns, String orderBy, String limit) {
+        assertTable();
+        if (columns != null) mapColumns(columns);
+        return SQLiteQueryBuilder.buildQueryString(distinct, mTable, columns, getSelection(),
+                mGroupBy, mHaving, orderBy, limit);
+    }
+
+    /**
+     * Return the {@code EXPLAIN QUERY PLAN} of the query {@link #query} executes for the same
+     * arguments, one step per line.
+     */
+    public String explainQueryPlan(SQLiteDatabase db, boolean distinct, String[] columns,
+            String orderBy, String limit) {
+        final String sql = buildQuery(distinct, columns, orderBy, limit);
+        final Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, getQueryArgs());
+        try {
+            final int detail = cursor.getColumnIndexOrThrow("detail");
+            final StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                if (plan.length() > 0) {
+                    plan.append('\n');
+                }
+                plan.append(cursor.getString(detail));
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * Execute update using the current internal state as {@code WHERE} clause.
      */
     public int update(SQLiteDatabase db, ContentValues values) {
         assertTable();
+        assertNoTableArgs();
         LOGV(TAG, "update() " + this);
         return db.update(mTable, values, getSelection(), getSelectionArgs());
     }
@@ -207,6 +279,7 @@ public class SelectionBuilder {
      */
     public int delete(SQLiteDatabase db) {
         assertTable();
+        assertNoTableArgs();
         LOGV(TAG, "delete() " + this);
         return db.delete(mTable, getSelection(), getSelectionArgs());
     }
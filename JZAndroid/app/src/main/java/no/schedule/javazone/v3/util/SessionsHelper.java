@@ -1,8 +1,5 @@
 package no.schedule.javazone.v3.util;
 
-import android.annotation.SuppressLint;
-import android.content.AsyncQueryHandler;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.net.Uri;
@@ -13,8 +10,10 @@ import android.support.v4.content.ContextCompat;
 import android.view.View;
 
 import java.util.Date;
+import java.util.List;
 
 import no.schedule.javazone.v3.R;
+import no.schedule.javazone.v3.model.ScheduleItem;
 import no.schedule.javazone.v3.provider.ScheduleContract;
 
 import static no.schedule.javazone.v3.util.LogUtils.LOGD;
@@ -37,19 +36,11 @@ public class SessionsHelper {
         LOGD(TAG, "setSessionStarred uri=" + sessionUri + " starred=" +
                 starred + " title=" + title);
         String sessionId = ScheduleContract.Sessions.getSessionId(sessionUri);
-        Uri myScheduleUri = ScheduleContract.MySchedule.buildMyScheduleUri(
-                AccountUtils.getActiveAccountName(mContext));
-
-        @SuppressLint("HandlerLeak") // this is short-lived
-                AsyncQueryHandler handler = new AsyncQueryHandler(mContext.getContentResolver()) {
-        };
-        final ContentValues values = new ContentValues();
-        values.put(ScheduleContract.MySchedule.SESSION_ID, sessionId);
-        values.put(ScheduleContract.MySchedule.MY_SCHEDULE_IN_SCHEDULE, starred ? 1 : 0);
         int offset = SyncUtils.getServerTimeOffset(mContext);
-        values.put(ScheduleContract.MySchedule.MY_SCHEDULE_TIMESTAMP, new Date().getTime() +
-                offset);
-        handler.startInsert(-1, null, myScheduleUri, values);
+        // Written together with other toggles made in quick succession, see MyScheduleWriteBehind
+        MyScheduleWriteBehind.getInstance(mContext).setStarred(
+                AccountUtils.getActiveAccountName(mContext), sessionId, starred,
+                new Date().getTime() + offset);
 
         // ANALYTICS EVENT: Add or remove a session from the schedule
         // Contains: Session title, whether it was added or removed (starred or unstarred)
@@ -65,6 +56,34 @@ public class SessionsHelper {
         // No need to manually setup calendar or notifications so they happen on sync
     }
 
+    /**
+     * Applies star toggles that haven't been written to the provider yet to {@code items}, so a
+     * reload right after a toggle doesn't show the old state.
+     */
+    public void applyPendingStarChanges(List<ScheduleItem> items) {
+        MyScheduleWriteBehind writeBehind = MyScheduleWriteBehind.getInstance(mContext);
+        String accountName = AccountUtils.getActiveAccountName(mContext);
+        for (ScheduleItem item : items) {
+            if (item.type != ScheduleItem.SESSION) {
+                continue;
+            }
+            Boolean starred = writeBehind.getPendingStarred(accountName, item.sessionId);
+            if (starred != null) {
+                item.inSchedule = starred;
+            }
+        }
+    }
+
+    /**
+     * @return the star state of the session including a toggle that hasn't been written to the
+     *         provider yet, given {@code inSchedule} as read from the provider
+     */
+    public boolean applyPendingStarChange(String sessionId, boolean inSchedule) {
+        Boolean starred = MyScheduleWriteBehind.getInstance(mContext).getPendingStarred(
+                AccountUtils.getActiveAccountName(mContext), sessionId);
+        return starred != null ? starred : inSchedule;
+    }
+
     public static void showBookmarkClickedHint(View view, boolean isBookmarked) {
         final SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(
                 view.getContext());
@@ -8,7 +8,6 @@ import android.text.TextUtils;
 import android.text.format.DateUtils;
 
 import java.text.DateFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Formatter;
@@ -35,38 +34,42 @@ public class TimeUtils {
   private static final int FORMAT_SHORT_DATETIME_FLAGS = DateUtils.FORMAT_ABBREV_ALL
       | DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_SHOW_TIME;
 
-  private static final SimpleDateFormat[] ACCEPTED_TIMESTAMP_FORMATS = {
-//      new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH),
-//      new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy", Locale.ENGLISH),
-//      new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH),
-//      new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z", Locale.ENGLISH),
-//      new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.ENGLISH),
-//      new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ENGLISH),
-//      new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH),
-//      new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss Z", Locale.ENGLISH),
-      new SimpleDateFormat("yyyy-MM-dd'T'HH:mm", Locale.ENGLISH)
-  };
+  // Parser for the device time zone of its last use, see getTimestampParser()
+  private static volatile TimestampParser sTimestampParser;
 
+  // SimpleDateFormat isn't thread safe, access is synchronized on the instance
   private static final SimpleDateFormat VALID_IFMODIFIEDSINCE_FORMAT =
       new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
 
-  public static Date parseTimestamp(String timestamp) {
-    for (SimpleDateFormat format : ACCEPTED_TIMESTAMP_FORMATS) {
-      try {
-        return format.parse(timestamp);
-      } catch (ParseException ex) {
-        LOGD(TAG, "Timestamp format error: " + ex.getMessage());
-        continue;
-      }
+  /**
+   * Returns the parser for the {@code yyyy-MM-dd'T'HH:mm} timestamps in the conference data, in
+   * the current device time zone. A new parser is made when the default time zone changed
+   * since the last call, e.g. after travelling. Safe to share between the import and UI threads.
+   */
+  public static TimestampParser getTimestampParser() {
+    final TimeZone timeZone = TimeZone.getDefault();
+    TimestampParser parser = sTimestampParser;
+    if (parser == null || !parser.getTimeZoneId().equals(timeZone.getID())) {
+      parser = new TimestampParser(timeZone);
+      sTimestampParser = parser;
     }
+    return parser;
+  }
 
-    // All attempts to parse have failed
-    return null;
+  public static Date parseTimestamp(String timestamp) {
+    long millis = getTimestampParser().parse(timestamp, Long.MIN_VALUE);
+    if (millis == Long.MIN_VALUE) {
+      LOGD(TAG, "Timestamp format error: " + timestamp);
+      return null;
+    }
+    return new Date(millis);
   }
 
   public static boolean isValidFormatForIfModifiedSinceHeader(String timestamp) {
     try {
-      return VALID_IFMODIFIEDSINCE_FORMAT.parse(timestamp) != null;
+      synchronized (VALID_IFMODIFIEDSINCE_FORMAT) {
+        return VALID_IFMODIFIEDSINCE_FORMAT.parse(timestamp) != null;
+      }
     } catch (Exception ex) {
       return false;
     }
@@ -76,8 +79,7 @@ public class TimeUtils {
     if (TextUtils.isEmpty(timestamp)) {
       return defaultValue;
     }
-    Date d = parseTimestamp(timestamp);
-    return d == null ? defaultValue : d.getTime();
+    return getTimestampParser().parse(timestamp, defaultValue);
   }
 
   /**
@@ -0,0 +1,162 @@
+package no.schedule.javazone.v3.io;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.schedule.javazone.v3.io.model.Session;
+import no.schedule.javazone.v3.io.model.Speaker;
+import no.schedule.javazone.v3.sync.SessionResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the import decisions the sessions and speakers handlers make with {@link ImportDiff}
+ * against the {@code all_sessions.json} fixture.
+ */
+public class ImportDiffTest {
+    private static final String FIXTURE = "/all_sessions.json";
+
+    @Test
+    public void firstImport_writesEverything() throws Exception {
+        List<Session> sessions = parseFixture();
+        Map<String, String> stored = new HashMap<>();
+
+        ImportDiff diff = diffSessions(sessions, null, stored);
+
+        assertEquals(sessions.size(), diff.getChangedCount());
+        assertEquals(sessions.size(), stored.size());
+        assertFalse(diff.isIncremental());
+        assertTrue(diff.getRemovedIds().isEmpty());
+    }
+
+    @Test
+    public void sameFixtureTwice_producesNoWrites() throws Exception {
+        Map<String, String> storedSessions = new HashMap<>();
+        Map<String, String> storedSpeakers = new HashMap<>();
+        List<Session> first = parseFixture();
+        diffSessions(first, null, storedSessions);
+        diffSpeakers(first, null, storedSpeakers);
+
+        // A fresh parse, as the second sync gets a new response body
+        List<Session> second = parseFixture();
+        ImportDiff sessionDiff = diffSessions(second, storedSessions, null);
+        ImportDiff speakerDiff = diffSpeakers(second, storedSpeakers, null);
+
+        assertEquals(0, sessionDiff.getChangedCount());
+        assertEquals(0, sessionDiff.getRemovedIds().size());
+        assertEquals(0, speakerDiff.getChangedCount());
+        assertEquals(0, speakerDiff.getRemovedIds().size());
+    }
+
+    @Test
+    public void changedSession_isTheOnlyWrite() throws Exception {
+        Map<String, String> stored = new HashMap<>();
+        diffSessions(parseFixture(), null, stored);
+
+        List<Session> second = parseFixture();
+        Session changed = second.get(3);
+        changed.room = changed.room + " (moved)";
+        ImportDiff diff = new ImportDiff(stored);
+        for (Session session : second) {
+            boolean write = diff.add(session.id, session.getImportHashCode());
+            assertEquals(session == changed, write);
+        }
+
+        assertEquals(1, diff.getChangedCount());
+        assertTrue(diff.isStored(changed.id));
+    }
+
+    @Test
+    public void missingSession_isRemoved() throws Exception {
+        Map<String, String> stored = new HashMap<>();
+        diffSessions(parseFixture(), null, stored);
+
+        List<Session> second = parseFixture();
+        Session removed = second.remove(0);
+        ImportDiff diff = diffSessions(second, stored, null);
+
+        assertEquals(0, diff.getChangedCount());
+        assertEquals(Collections.singletonList(removed.id), diff.getRemovedIds());
+    }
+
+    @Test
+    public void duplicateId_onlyFirstCounts() {
+        ImportDiff diff = new ImportDiff(null);
+
+        assertTrue(diff.add("a", "1"));
+        assertFalse(diff.add("a", "2"));
+        assertEquals(1, diff.getCount());
+        assertEquals(1, diff.getChangedCount());
+    }
+
+    @Test
+    public void duplicateSessionInFixture_keepsFirstOccurrence() throws Exception {
+        List<Session> sessions = parseFixture();
+        Session first = sessions.get(0);
+        Session duplicate = parseFixture().get(0);
+        duplicate.title = first.title + " (again)";
+        sessions.add(duplicate);
+        Map<String, String> stored = new HashMap<>();
+
+        ImportDiff diff = diffSessions(sessions, null, stored);
+
+        assertEquals(sessions.size() - 1, diff.getCount());
+        assertEquals(sessions.size() - 1, diff.getChangedCount());
+        assertEquals(first.getImportHashCode(), stored.get(first.id));
+    }
+
+    /**
+     * Diffs {@code sessions} the way SessionsHandler does, putting the hash codes it would store
+     * into {@code storeInto} if it isn't null.
+     */
+    private static ImportDiff diffSessions(List<Session> sessions, Map<String, String> stored,
+            Map<String, String> storeInto) {
+        ImportDiff diff = new ImportDiff(stored);
+        for (Session session : sessions) {
+            String hashCode = session.getImportHashCode();
+            if (diff.add(session.id, hashCode) && storeInto != null) {
+                storeInto.put(session.id, hashCode);
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Diffs the speakers of {@code sessions} the way SpeakersHandler does, including the
+     * assignment of content based speaker ids.
+     */
+    private static ImportDiff diffSpeakers(List<Session> sessions, Map<String, String> stored,
+            Map<String, String> storeInto) {
+        ImportDiff diff = new ImportDiff(stored);
+        for (Session session : sessions) {
+            for (Speaker speaker : session.speakers) {
+                speaker.id = speaker.getImportHashcode();
+                String hashCode = speaker.getImportHashcode();
+                if (diff.add(speaker.id, hashCode) && storeInto != null) {
+                    storeInto.put(speaker.id, hashCode);
+                }
+            }
+        }
+        return diff;
+    }
+
+    private static List<Session> parseFixture() throws Exception {
+        Reader reader = new InputStreamReader(
+                ImportDiffTest.class.getResourceAsStream(FIXTURE), "UTF-8");
+        try {
+            return new Gson().fromJson(reader, SessionResult.class).sessions;
+        } finally {
+            reader.close();
+        }
+    }
+}
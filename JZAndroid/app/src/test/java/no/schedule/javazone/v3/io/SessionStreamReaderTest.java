@@ -0,0 +1,149 @@
+package no.schedule.javazone.v3.io;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.util.Locale;
+
+import no.schedule.javazone.v3.io.model.Session;
+import no.schedule.javazone.v3.sync.SessionResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that streaming an {@code allSessions} response the way the import does keeps memory
+ * flat as the program grows, compared with parsing the whole {@link SessionResult}.
+ */
+public class SessionStreamReaderTest {
+    private static final int SESSIONS = 10000;
+    private static final int SAMPLE_EVERY = 1000;
+
+    private final Gson mGson = new Gson();
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("all_sessions", ".json");
+        writeSessions(mFile, SESSIONS);
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void read_visitsEverySessionInOrder() throws IOException {
+        final int[] visited = new int[1];
+        int count = new SessionStreamReader(mGson).read(open(), new SessionStreamReader.Listener() {
+            @Override
+            public void onSession(Session session) {
+                assertEquals(sessionId(visited[0]), session.id);
+                assertEquals(2, session.speakers.length);
+                ++visited[0];
+            }
+        });
+
+        assertEquals(SESSIONS, count);
+        assertEquals(SESSIONS, visited[0]);
+    }
+
+    @Test
+    public void read_keepsOnlyIdsAndHashCodes() throws IOException {
+        final long baseline = usedMemory();
+
+        // What the sessions handler keeps while streaming: the ids and hash codes
+        final ImportDiff diff = new ImportDiff(null);
+        final long[] streamingPeak = new long[1];
+        new SessionStreamReader(mGson).read(open(), new SessionStreamReader.Listener() {
+            @Override
+            public void onSession(Session session) {
+                diff.add(session.id, session.getImportHashCode());
+                if (diff.getCount() % SAMPLE_EVERY == 0) {
+                    streamingPeak[0] = Math.max(streamingPeak[0], usedMemory() - baseline);
+                }
+            }
+        });
+        assertEquals(SESSIONS, diff.getCount());
+
+        // What the import kept before: every parsed session
+        Reader reader = open();
+        SessionResult result;
+        try {
+            result = mGson.fromJson(reader, SessionResult.class);
+        } finally {
+            reader.close();
+        }
+        final long full = usedMemory() - baseline;
+        assertEquals(SESSIONS, result.sessions.size());
+
+        assertTrue("Streaming peaked at " + streamingPeak[0] / 1024 + "KB, the parsed program "
+                + "takes " + full / 1024 + "KB", streamingPeak[0] * 4 < full);
+    }
+
+    private Reader open() throws IOException {
+        return new InputStreamReader(new FileInputStream(mFile), "UTF-8");
+    }
+
+    private static long usedMemory() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String sessionId(int index) {
+        return String.format(Locale.US, "session-%05d", index);
+    }
+
+    private static void writeSessions(File file, int count) throws IOException {
+        final StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            description.append("What we learned running services in production, part ")
+                    .append(i).append(". ");
+        }
+
+        JsonWriter writer = new JsonWriter(
+                new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.beginObject().name("sessions").beginArray();
+            for (int i = 0; i < count; i++) {
+                writer.beginObject()
+                        .name("sessionId").value(sessionId(i))
+                        .name("title").value("Session " + i)
+                        .name("abstract").value(description.toString() + i)
+                        .name("intendedAudience").value("Developers who run things " + i)
+                        .name("level").value("intermediate")
+                        .name("room").value("Room " + (i % 8))
+                        .name("conferenceId").value("javazone_2018")
+                        .name("startTime").value("2018-09-12T09:00")
+                        .name("endTime").value("2018-09-12T09:40");
+                writer.name("keywords").beginArray().value("Java").value("Cloud").endArray();
+                writer.name("speakers").beginArray();
+                for (int s = 0; s < 2; s++) {
+                    writer.beginObject()
+                            .name("name").value("Speaker " + (i * 2 + s))
+                            .name("bio").value("Speaker " + (i * 2 + s) + " " + description)
+                            .endObject();
+                }
+                writer.endArray().endObject();
+            }
+            writer.endArray().endObject();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package no.schedule.javazone.v3.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the conflict flags {@link ScheduleConflictIndex} sets against comparing every pair of
+ * starred sessions, on random schedules and random edits of them.
+ */
+public class ScheduleConflictIndexTest {
+    private static final long MINUTE = 60 * 1000L;
+    private static final long DAY_START = 1536732000000L;
+    private static final long[] DURATIONS_MIN = {0, 5, 10, 15, 20, 40, 45, 60, 120, 480};
+    private static final int CONFLICT_FLAGS = ScheduleItem.FLAG_CONFLICTS_WITH_PREVIOUS
+            | ScheduleItem.FLAG_CONFLICTS_WITH_NEXT;
+
+    @Test
+    public void randomSchedules_matchPairwiseComparison() {
+        Random random = new Random(15);
+        for (int trial = 0; trial < 500; trial++) {
+            List<ScheduleItem> items = randomItems(random, 1 + random.nextInt(80));
+
+            ScheduleConflictIndex index = new ScheduleConflictIndex();
+            for (ScheduleItem item : items) {
+                index.update(item);
+            }
+
+            assertFlags("trial " + trial, items, index);
+        }
+    }
+
+    @Test
+    public void randomEdits_matchPairwiseComparison() {
+        Random random = new Random(150);
+        List<ScheduleItem> items = randomItems(random, 120);
+        ScheduleConflictIndex index = new ScheduleConflictIndex();
+        for (ScheduleItem item : items) {
+            index.update(item);
+        }
+
+        for (int step = 0; step < 2000; step++) {
+            ScheduleItem item = items.get(random.nextInt(items.size()));
+            if (random.nextBoolean()) {
+                // star or unstar
+                item.inSchedule = !item.inSchedule;
+            } else {
+                // move, as a re-import with a changed time slot does
+                setRandomSlot(random, item);
+            }
+            index.update(item);
+
+            assertFlags("step " + step, items, index);
+        }
+    }
+
+    @Test
+    public void clear_removesEverything() {
+        Random random = new Random(1500);
+        List<ScheduleItem> items = randomItems(random, 50);
+        ScheduleConflictIndex index = new ScheduleConflictIndex();
+        for (ScheduleItem item : items) {
+            index.update(item);
+        }
+
+        index.clear();
+
+        for (ScheduleItem item : items) {
+            List<String> before = new ArrayList<>();
+            List<String> after = new ArrayList<>();
+            index.findConflicts(item.sessionId, item.startTime, item.endTime, before, after);
+            assertEquals(0, before.size() + after.size());
+        }
+    }
+
+    private static void assertFlags(String message, List<ScheduleItem> items,
+            ScheduleConflictIndex index) {
+        int[] expected = pairwiseFlags(items);
+        for (int i = 0; i < items.size(); i++) {
+            ScheduleItem item = items.get(i);
+            item.flags |= CONFLICT_FLAGS;
+            index.updateFlags(item);
+            assertEquals(message + ", " + item.sessionId + " " + item.startTime + "-"
+                    + item.endTime, expected[i], item.flags & CONFLICT_FLAGS);
+        }
+    }
+
+    /**
+     * The conflict flags of each item, from comparing every pair of starred sessions ordered by
+     * start time and then id.
+     */
+    private static int[] pairwiseFlags(final List<ScheduleItem> items) {
+        List<Integer> starred = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            ScheduleItem item = items.get(i);
+            if (item.type == ScheduleItem.SESSION && item.inSchedule) {
+                starred.add(i);
+            }
+        }
+        Collections.sort(starred, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                ScheduleItem a = items.get(lhs);
+                ScheduleItem b = items.get(rhs);
+                if (a.startTime != b.startTime) {
+                    return a.startTime < b.startTime ? -1 : 1;
+                }
+                return a.sessionId.compareTo(b.sessionId);
+            }
+        });
+
+        int[] flags = new int[items.size()];
+        for (int i = 0; i < starred.size(); i++) {
+            for (int j = i + 1; j < starred.size(); j++) {
+                ScheduleItem first = items.get(starred.get(i));
+                ScheduleItem second = items.get(starred.get(j));
+                if (second.endTime > first.startTime + ScheduleItemHelper.ALLOWED_OVERLAP
+                        && second.startTime + ScheduleItemHelper.ALLOWED_OVERLAP
+                        < first.endTime) {
+                    flags[starred.get(i)] |= ScheduleItem.FLAG_CONFLICTS_WITH_NEXT;
+                    flags[starred.get(j)] |= ScheduleItem.FLAG_CONFLICTS_WITH_PREVIOUS;
+                }
+            }
+        }
+        return flags;
+    }
+
+    private static List<ScheduleItem> randomItems(Random random, int count) {
+        List<ScheduleItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ScheduleItem item = new ScheduleItem();
+            item.type = random.nextInt(10) == 0 ? ScheduleItem.BREAK : ScheduleItem.SESSION;
+            item.sessionId = "session-" + i;
+            item.inSchedule = random.nextInt(10) < 7;
+            setRandomSlot(random, item);
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static void setRandomSlot(Random random, ScheduleItem item) {
+        // Five minute steps, so slots often touch or overlap by exactly the allowed overlap
+        item.startTime = DAY_START + random.nextInt(10 * 12) * 5 * MINUTE;
+        item.endTime = item.startTime
+                + DURATIONS_MIN[random.nextInt(DURATIONS_MIN.length)] * MINUTE;
+    }
+}
@@ -0,0 +1,55 @@
+package no.schedule.javazone.v3.benchmark;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.io.model.Session;
+import no.schedule.javazone.v3.io.model.Speaker;
+import no.schedule.javazone.v3.sync.SessionResult;
+
+/**
+ * Measures the import hashes that decide which sessions and speakers are rewritten on sync.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImportHashBenchmark {
+  @Param({"500", "5000", "50000"})
+  public int sessionCount;
+
+  private List<Session> mSessions;
+
+  @Setup
+  public void setUp() {
+    mSessions = new Gson().fromJson(SessionFixtures.allSessionsJson(sessionCount),
+        SessionResult.class).sessions;
+  }
+
+  @Benchmark
+  public void sessionHashes(Blackhole blackhole) {
+    for (Session session : mSessions) {
+      blackhole.consume(session.getImportHashCode());
+    }
+  }
+
+  @Benchmark
+  public void speakerHashes(Blackhole blackhole) {
+    for (Session session : mSessions) {
+      for (Speaker speaker : session.speakers) {
+        blackhole.consume(speaker.getImportHashcode());
+      }
+    }
+  }
+}
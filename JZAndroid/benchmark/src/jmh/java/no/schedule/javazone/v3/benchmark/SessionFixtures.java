@@ -0,0 +1,98 @@
+package no.schedule.javazone.v3.benchmark;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic {@code allSessions} payloads shaped like the ones served by the sessions
+ * API, so that the benchmarks don't depend on network or on a particular conference program.
+ */
+final class SessionFixtures {
+  private static final String[] ROOMS = {"Room 1", "Room 2", "Room 3", "Room 4", "Room 5",
+      "Room 6", "Room 7", "Room 8", "Workshop A", "Workshop B", "Workshop C", "Workshop D"};
+  private static final String[] TAGS = {"Java", "Kotlin", "Architecture", "Cloud", "Security",
+      "Frontend", "Testing", "DevOps", "Data", "Machine learning"};
+  private static final String[] LEVELS = {"beginner", "intermediate", "advanced"};
+
+  private SessionFixtures() {
+  }
+
+  /**
+   * Returns an {@code allSessions} body with {@code sessionCount} sessions. The same count
+   * always produces the same payload.
+   */
+  static String allSessionsJson(int sessionCount) {
+    Random random = new Random(sessionCount);
+    StringWriter out = new StringWriter();
+    JsonWriter writer = new JsonWriter(out);
+    try {
+      writer.beginObject();
+      writer.name("sessions").beginArray();
+      for (int i = 0; i < sessionCount; i++) {
+        writeSession(writer, i, random);
+      }
+      writer.endArray();
+      writer.endObject();
+      writer.close();
+    } catch (IOException e) {
+      // StringWriter doesn't throw.
+      throw new IllegalStateException(e);
+    }
+    return out.toString();
+  }
+
+  private static void writeSession(JsonWriter writer, int index, Random random)
+      throws IOException {
+    int day = 12 + random.nextInt(2);
+    int hour = 9 + random.nextInt(9);
+    writer.beginObject();
+    writer.name("sessionId").value(String.format(Locale.US, "session-%06d", index));
+    writer.name("title").value("Session " + index + ": " + TAGS[random.nextInt(TAGS.length)]
+        + " in practice");
+    writer.name("abstract").value(repeat("This talk covers what we learned in production. ",
+        4 + random.nextInt(12)));
+    writer.name("intendedAudience").value("Developers who want to go deeper.");
+    writer.name("level").value(LEVELS[random.nextInt(LEVELS.length)]);
+    writer.name("length").value(random.nextBoolean() ? "60" : "20");
+    writer.name("language").value(random.nextBoolean() ? "en" : "no");
+    writer.name("format").value(random.nextInt(10) == 0 ? "workshop" : "presentation");
+    writer.name("room").value(ROOMS[random.nextInt(ROOMS.length)]);
+    writer.name("startTime").value(String.format(Locale.US, "2018-09-%02dT%02d:00", day, hour));
+    writer.name("endTime").value(String.format(Locale.US, "2018-09-%02dT%02d:00", day, hour + 1));
+    writer.name("startTimeZulu").value(
+        String.format(Locale.US, "2018-09-%02dT%02d:00:00Z", day, hour - 2));
+    writer.name("endTimeZulu").value(
+        String.format(Locale.US, "2018-09-%02dT%02d:00:00Z", day, hour - 1));
+    writer.name("keywords").beginArray();
+    int tagCount = 1 + random.nextInt(3);
+    for (int t = 0; t < tagCount; t++) {
+      writer.value(TAGS[random.nextInt(TAGS.length)]);
+    }
+    writer.endArray();
+    writer.name("speakers").beginArray();
+    int speakerCount = 1 + random.nextInt(2);
+    for (int s = 0; s < speakerCount; s++) {
+      int speaker = random.nextInt(Math.max(1, index));
+      writer.beginObject();
+      writer.name("name").value("Speaker " + speaker);
+      writer.name("bio").value(repeat("Speaker " + speaker + " writes software. ", 5));
+      writer.name("twitter").value("@speaker" + speaker);
+      writer.name("pictureUrl").value("https://example.com/speakers/" + speaker + ".jpg");
+      writer.endObject();
+    }
+    writer.endArray();
+    writer.endObject();
+  }
+
+  private static String repeat(String text, int times) {
+    StringBuilder sb = new StringBuilder(text.length() * times);
+    for (int i = 0; i < times; i++) {
+      sb.append(text);
+    }
+    return sb.toString();
+  }
+}
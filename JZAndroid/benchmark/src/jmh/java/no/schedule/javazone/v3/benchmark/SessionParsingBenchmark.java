@@ -0,0 +1,72 @@
+package no.schedule.javazone.v3.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.io.model.Session;
+import no.schedule.javazone.v3.sync.SessionResult;
+
+/**
+ * Compares materializing the whole {@code allSessions} response with Gson against reading it
+ * one session at a time with a {@link JsonReader}, as the import does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SessionParsingBenchmark {
+  @Param({"500", "5000", "50000"})
+  public int sessionCount;
+
+  private final Gson mGson = new Gson();
+  private String mJson;
+
+  @Setup
+  public void setUp() {
+    mJson = SessionFixtures.allSessionsJson(sessionCount);
+  }
+
+  @Benchmark
+  public void parseSessionResult(Blackhole blackhole) {
+    SessionResult result = mGson.fromJson(mJson, SessionResult.class);
+    for (Session session : result.sessions) {
+      blackhole.consume(session);
+    }
+  }
+
+  @Benchmark
+  public void parseStreaming(Blackhole blackhole) throws IOException {
+    JsonReader reader = new JsonReader(new StringReader(mJson));
+    try {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if ("sessions".equals(reader.nextName())) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            Session session = mGson.fromJson(reader, Session.class);
+            blackhole.consume(session);
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    } finally {
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package no.schedule.javazone.v3.benchmark;
+
+import com.google.api.client.util.DateTime;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import no.schedule.javazone.v3.io.model.Session;
+import no.schedule.javazone.v3.sync.SessionResult;
+import no.schedule.javazone.v3.util.TimestampParser;
+
+/**
+ * Compares {@link TimestampParser} with the two ways the app used to parse session and block
+ * timestamps: one shared {@link SimpleDateFormat} (TimeUtils.timestampToMillis) and a new
+ * {@link DateTime} plus {@link SimpleDateFormat} per call (ParserUtils.parseTime).
+ * <p>
+ * The setup fails if any of the three disagree on a fixture timestamp.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TimestampParsingBenchmark {
+  private static final String PATTERN = "yyyy-MM-dd'T'HH:mm";
+  // Conference day bounds as configured in gradle.properties
+  private static final String[] CONFERENCE_DAYS = {"2018-09-12T07:00:00-07:00",
+      "2018-09-12T22:00:00-07:00", "2018-09-13T08:00:00-07:00", "2018-09-13T22:00:00-07:00"};
+
+  @Param({"500", "5000", "50000"})
+  public int sessionCount;
+
+  private String[] mTimestamps;
+  private SimpleDateFormat mSharedFormat;
+  private TimestampParser mParser;
+
+  @Setup
+  public void setUp() throws ParseException {
+    List<Session> sessions = new Gson().fromJson(SessionFixtures.allSessionsJson(sessionCount),
+        SessionResult.class).sessions;
+    List<String> timestamps = new ArrayList<>();
+    for (Session session : sessions) {
+      timestamps.add(session.startTime);
+      timestamps.add(session.endTime);
+      timestamps.add(session.startTimeZulu);
+      timestamps.add(session.endTimeZulu);
+    }
+    for (String day : CONFERENCE_DAYS) {
+      timestamps.add(day);
+    }
+    mTimestamps = timestamps.toArray(new String[timestamps.size()]);
+    mSharedFormat = new SimpleDateFormat(PATTERN, Locale.ENGLISH);
+    mParser = new TimestampParser(TimeZone.getDefault());
+
+    for (String timestamp : mTimestamps) {
+      long expected = mSharedFormat.parse(timestamp).getTime();
+      long parsed = mParser.parse(timestamp, 0);
+      long viaDateTime = parseViaDateTime(timestamp);
+      if (parsed != expected || viaDateTime != expected) {
+        throw new IllegalStateException("Parsers disagree on " + timestamp + ": " + expected
+            + " / " + viaDateTime + " / " + parsed);
+      }
+    }
+  }
+
+  @Benchmark
+  public void sharedSimpleDateFormat(Blackhole blackhole) throws ParseException {
+    for (String timestamp : mTimestamps) {
+      blackhole.consume(mSharedFormat.parse(timestamp).getTime());
+    }
+  }
+
+  @Benchmark
+  public void dateTimeAndSimpleDateFormat(Blackhole blackhole) throws ParseException {
+    for (String timestamp : mTimestamps) {
+      blackhole.consume(parseViaDateTime(timestamp));
+    }
+  }
+
+  @Benchmark
+  public void timestampParser(Blackhole blackhole) {
+    for (String timestamp : mTimestamps) {
+      blackhole.consume(mParser.parse(timestamp, 0));
+    }
+  }
+
+  private static long parseViaDateTime(String timestamp) throws ParseException {
+    if (timestamp.length() == "yyyy-MM-ddTHH:mm".length()) {
+      // DateTime requires seconds; ParserUtils.parseTime was only ever given full timestamps
+      return new SimpleDateFormat(PATTERN).parse(timestamp).getTime();
+    }
+    return new SimpleDateFormat(PATTERN).parse(new DateTime(timestamp).toString()).getTime();
+  }
+}